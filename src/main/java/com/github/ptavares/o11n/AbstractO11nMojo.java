@@ -1,14 +1,43 @@
 package com.github.ptavares.o11n;
 
+import com.github.ptavares.o11n.coordination.FileLockRestartCoordinator;
+import com.github.ptavares.o11n.coordination.NoRestartCoordinator;
+import com.github.ptavares.o11n.coordination.RestartCoordinator;
+import com.github.ptavares.o11n.engine.DeployEngine;
+import com.github.ptavares.o11n.engine.RestartLogWatcher;
 import com.github.ptavares.o11n.enums.FileBundle;
 import com.github.ptavares.o11n.enums.PackageDeleteStrategy;
+import com.github.ptavares.o11n.enums.RestartRule;
+import com.github.ptavares.o11n.packages.PackageDeletion;
+import com.github.ptavares.o11n.repository.BundleResolver;
+import com.github.ptavares.o11n.rest.RestClient;
+import com.github.ptavares.o11n.rest.TlsContexts;
+import com.github.ptavares.o11n.rest.UploadThrottle;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.repository.RemoteRepository;
 
+import javax.net.ssl.SSLContext;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Abstract class for all o11n-maven plugin.
@@ -23,12 +52,60 @@ abstract class AbstractO11nMojo extends AbstractMojo {
     @Parameter(defaultValue = "${project}", readonly = true)
     private MavenProject project;
 
+    /**
+     * Maven repository system, resolving <code>bundleCoordinates</code>
+     */
+    @Component
+    private RepositorySystem repositorySystem;
+
+    /**
+     * Repository session of the build
+     */
+    @Parameter(defaultValue = "${repositorySystemSession}", readonly = true)
+    private RepositorySystemSession repositorySystemSession;
+
+    /**
+     * Remote repositories of the project
+     */
+    @Parameter(defaultValue = "${project.remoteProjectRepositories}", readonly = true)
+    private List<RemoteRepository> remoteRepositories;
+
     /**
      * vRO Server Host or IP
      */
     @Parameter(required = true, property = "o11nPlugin.serverHost", defaultValue = "localhost")
     private String serverHost;
 
+    /**
+     * Other nodes of the vRO cluster, comma separated Hosts or IPs, using the same ports and credentials
+     * as <code>serverHost</code>. When set, the plugin file is deployed with a rolling strategy :
+     * <code>serverHost</code> is deployed first as a canary node, then the other nodes by waves of
+     * <code>rolloutWaveSize</code> nodes. Each node is restarted if required and must be ready again
+     * before the next wave starts.
+     */
+    @Parameter(required = false, property = "o11nPlugin.clusterHosts")
+    private String clusterHosts;
+
+    /**
+     * Number of cluster nodes deployed and restarted at the same time after the canary node.
+     * Default value : <code>1</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.rolloutWaveSize", defaultValue = "1")
+    private int rolloutWaveSize;
+
+    /**
+     * Property to check, on each cluster node once deployed, that vRO reports the new plugin version
+     * before going on with the rollout.
+     * Default value : <code>true</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.rolloutSmokeCheck", defaultValue = "true")
+    private boolean rolloutSmokeCheck;
+
+    /**
+     * <code>serverHost</code> followed by <code>clusterHosts</code>
+     */
+    private List<String> serverHosts;
+
     /**
      * vRO Plugin Service REST API Port, usually 8281.
      * Check <code>http://{vcoHost}:{port}/vco/api/docs</code> for API docs
@@ -97,8 +174,26 @@ abstract class AbstractO11nMojo extends AbstractMojo {
      */
     private FileBundle bundle;
 
+    /**
+     * Property to deploy plugin files published in a Maven repository instead of the built one,
+     * as a comma separated list of <code>groupId:artifactId:version[:type]</code> coordinates, deployed in the list order.
+     * The type defaults to the <code>fileBundle</code> extension.
+     * All plugin files are resolved at once before the deploy : missing ones are downloaded concurrently,
+     * and the ones already in the local repository are deployed from there.
+     * Default value : <code>none</code>, the plugin file defined by <code>fileDirectoryPath</code> and <code>fileName</code> is deployed
+     */
+    @Parameter(required = false, property = "o11nPlugin.bundleCoordinates")
+    private String bundleCoordinates;
+
+    /**
+     * Artifacts of <code>bundleCoordinates</code>
+     */
+    private List<Artifact> bundleArtifacts;
+
     /**
      * Property for force vRO to reinstall the plugin.
+     * Also installs a plugin file whose content changed since the last deploy without a version change,
+     * which fails the build otherwise when <code>checkInstalledVersion</code> is set.
      * Default value : <code>false</code>
      */
     @Parameter(required = false, property = "o11nPlugin.overwrite", defaultValue = "false")
@@ -111,6 +206,60 @@ abstract class AbstractO11nMojo extends AbstractMojo {
     @Parameter(required = false, property = "o11nPlugin.restartService", defaultValue = "false")
     private boolean restartService;
 
+    /**
+     * Comma separated rules deciding if the vRO service must really be restarted after a plugin install.
+     * The service is restarted as soon as one rule matches. Possible rules :
+     * <ul>
+     * <li>ALWAYS : always restart.</li>
+     * <li>NEW_PLUGIN : a plugin of the plugin file was not installed before.</li>
+     * <li>VERSION_CHANGE : the installed plugin version changed, or is unknown.</li>
+     * <li>CONTENT_CHANGE : the plugin file differs from the last one deployed from this workspace on this server, or is unknown.</li>
+     * <li>PENDING_CHANGES : vRO Control Center reports changes waiting for a restart.</li>
+     * </ul>
+     * --------------------------------------------------------------------------------------------------
+     * <b>Note</b>:
+     * This option will be ignored if <code>restartService</code> is set to <code>false</code>.
+     * --------------------------------------------------------------------------------------------------
+     * Default value : <code>NEW_PLUGIN,VERSION_CHANGE,CONTENT_CHANGE,PENDING_CHANGES</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.restartRules", defaultValue = "NEW_PLUGIN,VERSION_CHANGE,CONTENT_CHANGE,PENDING_CHANGES")
+    private String restartRules;
+
+    /**
+     * {@link RestartRule} set for <code>restartRules</code> property
+     */
+    private Set<RestartRule> restartRuleSet;
+
+    /**
+     * Property to define how restarts of a vRO server are coordinated between builds :
+     * <ul>
+     * <li>file : builds of the same machine serialize restart windows of a server (restart and wait for restart)
+     * with a lock file of <code>restartLockDirectory</code>, and skip their restart if another build restarted
+     * the server after their install.</li>
+     * <li>none : no coordination.</li>
+     * <li>the full class name of a {@link RestartCoordinator} implementation, with a public no-arg constructor.</li>
+     * </ul>
+     * --------------------------------------------------------------------------------------------------
+     * <b>Note</b>:
+     * This option will be ignored if <code>restartService</code> is set to <code>false</code>.
+     * --------------------------------------------------------------------------------------------------
+     * Default value : <code>file</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.restartCoordination", defaultValue = "file")
+    private String restartCoordination;
+
+    /**
+     * Property to define the directory of restart lock files, shared by all builds of the machine.
+     * Default value : <code>${java.io.tmpdir}/o11n-locks</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.restartLockDirectory", defaultValue = "${java.io.tmpdir}/o11n-locks")
+    private String restartLockDirectory;
+
+    /**
+     * {@link RestartCoordinator} for <code>restartCoordination</code> property
+     */
+    private RestartCoordinator restartCoordinator;
+
     /**
      * Property to wait for vRO's service restart.
      * Set to <code>true</code>, this option will make this Mojo wait up to 300 seconds max (timeout)
@@ -123,6 +272,35 @@ abstract class AbstractO11nMojo extends AbstractMojo {
     @Parameter(required = false, property = "o11nPlugin.waitForRestart", defaultValue = "false")
     private boolean waitForRestart;
 
+    /**
+     * Property to watch the vRO server log from Control Center while waiting for restart :
+     * the wait is aborted as soon as a log line matches one of <code>restartFailurePatterns</code>,
+     * and the deploy fails with the matching log excerpt instead of waiting for the restart timeout.
+     * Default value : <code>true</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.restartLogWatch", defaultValue = "true")
+    private boolean restartLogWatch;
+
+    /**
+     * Property to define the Control Center REST API resource returning the vRO server log.
+     * Default value : <code>/server/log</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.restartLogResource", defaultValue = RestartLogWatcher.DEFAULT_LOG_RESOURCE)
+    private String restartLogResource;
+
+    /**
+     * Property to define the server log lines reporting a failed restart, as a comma separated list of Java regular expressions.
+     * Default value : <code>none</code>, plugin load errors, <code>Application startup failed</code>,
+     * <code>BeanCreationException</code> and <code>OutOfMemoryError</code> lines
+     */
+    @Parameter(required = false, property = "o11nPlugin.restartFailurePatterns")
+    private String restartFailurePatterns;
+
+    /**
+     * Compiled <code>restartFailurePatterns</code>
+     */
+    private List<Pattern> restartFailurePatternList;
+
     /**
      * Property to delete plugin package before installing the new one.
      * --------------------------------------------------------------------------------------------------
@@ -156,6 +334,10 @@ abstract class AbstractO11nMojo extends AbstractMojo {
 
     /**
      * The package name to be delete if property <code>deletePackage</code> is set to <code>true</code>.
+     * Several packages can be deleted concurrently with a comma separated list of <code>name[:strategy]</code> entries,
+     * where <code>name</code> may be a glob pattern (<code>*</code> and <code>?</code> wildcards) and <code>strategy</code>
+     * overrides <code>deletePackageStrategy</code> for this entry,
+     * e.g. <code>com.company.plugin,com.company.lib.*:deletePackageWithContent</code>.
      * -------------------------------------------------------------------------------------------------
      * <b>Note :</b>
      * this package name is the package name specified in the <code>pkg-name</code>
@@ -165,6 +347,269 @@ abstract class AbstractO11nMojo extends AbstractMojo {
     @Parameter(required = false, property = "o11nPlugin.packageName")
     private String packageName;
 
+    /**
+     * Packages to delete, parsed from <code>packageName</code>
+     */
+    private List<PackageDeletion> packageDeletions;
+
+    /**
+     * Property to define the max number of package deletions running at the same time on one vRO server.
+     * Default value : <code>4</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.deletePackageConcurrency", defaultValue = "4")
+    private int deletePackageConcurrency;
+
+    /**
+     * Property to validate the plugin file before uploading it : the zip central directory is read,
+     * every entry CRC is verified and the plugin descriptor must be present.
+     * Default value : <code>true</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.validateBundle", defaultValue = "true")
+    private boolean validateBundle;
+
+    /**
+     * Directory where the plugin keeps its local state between builds (bundle digests, deploy history, ...), shared by all
+     * projects of the machine so that it survives <code>mvn clean</code>.
+     * Default value : <code>${user.home}/.o11n/cache</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.cacheDirectory", defaultValue = "${user.home}/.o11n/cache")
+    private String cacheDirectory;
+
+    /**
+     * Property to compute the digest of large plugin files as a tree of SHA-256 digests, using all available cores.
+     * A tree digest is not comparable with a plain SHA-256 digest of the same file.
+     * Default value : <code>false</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.treeDigest", defaultValue = "false")
+    private boolean treeDigest;
+
+    /**
+     * Property to deploy only the vRO packages changed since the last deploy. The last deployed plugin file is kept
+     * in <code>cacheDirectory</code> : when the new plugin file only adds or changes <code>.package</code> entries,
+     * these packages are imported alone and the plugin is neither reinstalled nor restarted.
+     * Any other change falls back to a full install.
+     * Default value : <code>false</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.deltaDeploy", defaultValue = "false")
+    private boolean deltaDeploy;
+
+    /**
+     * Property to compare the plugin version in the plugin file with the one installed in vRO before installing it.
+     * If the same version is already installed and <code>overwrite</code> is <code>false</code>, nothing is done,
+     * unless the plugin file content changed since the last deploy on the server (see <code>treeDigest</code>) :
+     * the build then fails, as the new content would never be installed. Increase the plugin version or build number,
+     * or set <code>overwrite</code>.
+     * Default value : <code>true</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.checkInstalledVersion", defaultValue = "true")
+    private boolean checkInstalledVersion;
+
+    /**
+     * Property to fail the build when the plugin file version is lower than the installed one.
+     * --------------------------------------------------------------------------------------------------
+     * <b>Note</b>:
+     * This option will be ignored if <code>checkInstalledVersion</code> is set to <code>false</code>.
+     * --------------------------------------------------------------------------------------------------
+     * Default value : <code>false</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.failOnDowngrade", defaultValue = "false")
+    private boolean failOnDowngrade;
+
+    /**
+     * Property to define the ids of the vRO workflows to run after the deploy, separated by commas.
+     * Workflows are started concurrently without input parameters and the build fails if one of them does not complete.
+     * --------------------------------------------------------------------------------------------------
+     * <b>Note</b>:
+     * During a deploy, workflows are only run when the server is known to be ready,
+     * i.e. when it was not restarted or <code>waitForRestart</code> is set to <code>true</code>.
+     * --------------------------------------------------------------------------------------------------
+     * Default value : <code>none</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.smokeWorkflows")
+    private String smokeWorkflows;
+
+    /**
+     * <code>smokeWorkflows</code> as a list
+     */
+    private List<String> smokeWorkflowIds;
+
+    /**
+     * Property to define the overall timeout, in seconds, for all <code>smokeWorkflows</code> to end.
+     * Default value : <code>300</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.smokeTimeout", defaultValue = "300")
+    private int smokeTimeout;
+
+    /**
+     * Property to limit the bandwidth, in KB/s, used by all plugin file uploads of the build.
+     * The limit is shared by all uploads running at the same time, to all servers.
+     * Default value : <code>0</code> (no limit)
+     */
+    @Parameter(required = false, property = "o11nPlugin.uploadBandwidth", defaultValue = "0")
+    private int uploadBandwidth;
+
+    /**
+     * Property to limit the number of plugin file uploads running at the same time, to all servers.
+     * Default value : <code>0</code> (no limit)
+     */
+    @Parameter(required = false, property = "o11nPlugin.maxConcurrentUploads", defaultValue = "0")
+    private int maxConcurrentUploads;
+
+    /**
+     * Property to limit the number of plugin file uploads running at the same time on one vRO server,
+     * which would otherwise import them concurrently.
+     * Default value : <code>1</code> (<code>0</code> for no limit)
+     */
+    @Parameter(required = false, property = "o11nPlugin.maxUploadsPerHost", defaultValue = "1")
+    private int maxUploadsPerHost;
+
+    /**
+     * Property to define the max time, in seconds, to establish a connection to a vRO server API.
+     * Default value : <code>10</code> (<code>0</code> for infinite)
+     */
+    @Parameter(required = false, property = "o11nPlugin.connectTimeout", defaultValue = "10")
+    private int connectTimeout;
+
+    /**
+     * Property to define the max time, in seconds, without data while reading a vRO server API response.
+     * Default value : <code>60</code> (<code>0</code> for infinite)
+     */
+    @Parameter(required = false, property = "o11nPlugin.readTimeout", defaultValue = "60")
+    private int readTimeout;
+
+    /**
+     * Property to define the max time, in seconds, for vRO to answer a plugin file upload, i.e. to import the plugin.
+     * Default value : <code>600</code> (<code>0</code> for infinite)
+     */
+    @Parameter(required = false, property = "o11nPlugin.uploadTimeout", defaultValue = "600")
+    private int uploadTimeout;
+
+    /**
+     * Property to define the overall time budget, in seconds, of a deploy : package deletion, upload, restart and
+     * wait for restart. Each phase consumes it, timeouts of later phases are capped by the remaining time, and the
+     * build fails once it is consumed.
+     * Default value : <code>0</code> (no deadline)
+     */
+    @Parameter(required = false, property = "o11nPlugin.deployTimeout", defaultValue = "0")
+    private int deployTimeout;
+
+    /**
+     * Property to trace, in debug, headers and bodies of one vRO server API call out of <code>traceBodySampling</code>.
+     * Each call is traced on a single line with its id, method, URI, status, sizes, latency and retries : in info for uploads,
+     * deletes and restarts, in debug for the polling GET calls.
+     * Default value : <code>1</code> (<code>0</code> for none)
+     */
+    @Parameter(required = false, property = "o11nPlugin.traceBodySampling", defaultValue = "1")
+    private int traceBodySampling;
+
+    /**
+     * Property to define the max size, in characters, of traced bodies.
+     * Default value : <code>2048</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.traceBodyMaxSize", defaultValue = "2048")
+    private int traceBodyMaxSize;
+
+    /**
+     * Property to export deploy metrics (vRO server API calls latency by endpoint, connection pools, uploads
+     * and waits for restart) at the end of each execution, as <code>o11n-metrics.prom</code> (Prometheus text format)
+     * and <code>o11n-metrics.json</code> files.
+     * Default value : <code>true</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.exportMetrics", defaultValue = "true")
+    private boolean exportMetrics;
+
+    /**
+     * Property to define the directory of exported metrics files, e.g. the node exporter textfile collector directory.
+     * Default value : <code>${project.build.directory}/o11n</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.metricsDirectory", defaultValue = "${project.build.directory}/o11n")
+    private String metricsDirectory;
+
+    /**
+     * Property to define a truststore holding the certificates of vRO servers (or of their CA), e.g. self-signed ones.
+     * It is loaded once and its TLS context is shared by all calls, so that TLS sessions are resumed.
+     * Default value : <code>none</code> (JVM default truststore)
+     */
+    @Parameter(required = false, property = "o11nPlugin.trustStore")
+    private String trustStore;
+
+    /**
+     * Property to define the password of <code>trustStore</code>.
+     * Default value : <code>none</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.trustStorePassword")
+    private String trustStorePassword;
+
+    /**
+     * Property to define the type of <code>trustStore</code> : <code>JKS</code>, <code>PKCS12</code>...
+     * Default value : <code>none</code> (JVM default type)
+     */
+    @Parameter(required = false, property = "o11nPlugin.trustStoreType")
+    private String trustStoreType;
+
+    /**
+     * TLS context for <code>trustStore</code>
+     */
+    private SSLContext sslContext;
+
+    /**
+     * Property to send the deploy to a running deploy daemon (<code>java -jar o11n-maven-plugin-cli.jar daemon</code>),
+     * which keeps connections to vRO servers open, batches the deploys of concurrent builds by server
+     * and restarts each server once per batch. The build falls back to a direct deploy if no daemon is running.
+     * --------------------------------------------------------------------------------------------------
+     * <b>Note</b>:
+     * Only <code>overwrite</code>, <code>restartService</code> and <code>waitForRestart</code> are applied by the daemon, the plugin
+     * file being validated by the build before sending it. Each job is run with its own credentials and within <code>deployTimeout</code>.
+     * The daemon restarts after every install : the build warns and deploys directly when <code>restartRules</code> contain
+     * neither <code>ALWAYS</code> nor <code>VERSION_CHANGE</code>, or when <code>deletePackage</code>, <code>checkInstalledVersion</code>,
+     * <code>deltaDeploy</code> or <code>smokeWorkflows</code> is set : set <code>checkInstalledVersion</code> to <code>false</code>
+     * to deploy through the daemon.
+     * --------------------------------------------------------------------------------------------------
+     * Default value : <code>false</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.daemon", defaultValue = "false")
+    private boolean daemon;
+
+    /**
+     * Property to define the state directory of the deploy daemon.
+     * Default value : <code>${user.home}/.o11n/daemon</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.daemonDirectory", defaultValue = "${user.home}/.o11n/daemon")
+    private String daemonDirectory;
+
+    /**
+     * Property to spool the deploy when a vRO server can't be reached (connection refused, unknown host, connect timeout...),
+     * instead of failing the build. The plugin file, its digest, the server and the install options are kept in
+     * <code>spoolDirectory</code>, without any password, and deployed later by the <code>flush</code> goal.
+     * A server has at most one spooled deploy : spooling a newer plugin file for a server replaces the previous one.
+     * In a rolling deploy, unreachable nodes are spooled and the rollout goes on with the other nodes :
+     * an unreachable canary is replaced by the next reachable node, so that no wave starts before a canary succeeded.
+     * Default value : <code>false</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.spool", defaultValue = "false")
+    private boolean spool;
+
+    /**
+     * Property to define the directory of spooled deploys.
+     * Default value : <code>${user.home}/.o11n/spool</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.spoolDirectory", defaultValue = "${user.home}/.o11n/spool")
+    private String spoolDirectory;
+
+    /**
+     * Property to define how many spooled deploys the <code>flush</code> goal runs at the same time, on different servers.
+     * Default value : <code>4</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.flushConcurrency", defaultValue = "4")
+    private int flushConcurrency;
+
+    /**
+     * Property to define how long the <code>flush</code> goal retries spooled deploys on servers still unreachable, in seconds,
+     * with an increasing delay between attempts. <code>0</code> for a single attempt.
+     * Default value : <code>0</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.flushTimeout", defaultValue = "0")
+    private int flushTimeout;
 
     /**
      * Check all plugin params
@@ -178,8 +623,25 @@ abstract class AbstractO11nMojo extends AbstractMojo {
             fileName = project.getBuild().getFinalName();
             getLog().debug(String.format("%s not specified, get default value : %s", new Object[]{"fileName", fileName}));
         }
+        if (StringUtils.isEmpty(this.cacheDirectory)) {
+            cacheDirectory = System.getProperty("user.home") + File.separator + ".o11n" + File.separator + "cache";
+            getLog().debug(String.format("%s not specified, get default value : %s", new Object[]{"cacheDirectory", cacheDirectory}));
+        }
+        if (StringUtils.isEmpty(this.metricsDirectory)) {
+            metricsDirectory = project.getBuild().getDirectory() + File.separator + "o11n";
+            getLog().debug(String.format("%s not specified, get default value : %s", new Object[]{"metricsDirectory", metricsDirectory}));
+        }
+        if (StringUtils.isEmpty(this.daemonDirectory)) {
+            daemonDirectory = System.getProperty("user.home") + File.separator + ".o11n" + File.separator + "daemon";
+            getLog().debug(String.format("%s not specified, get default value : %s", new Object[]{"daemonDirectory", daemonDirectory}));
+        }
+        if (StringUtils.isEmpty(this.spoolDirectory)) {
+            spoolDirectory = System.getProperty("user.home") + File.separator + ".o11n" + File.separator + "spool";
+            getLog().debug(String.format("%s not specified, get default value : %s", new Object[]{"spoolDirectory", spoolDirectory}));
+        }
         if (StringUtils.isEmpty(this.fileBundle)) {
             fileBundle = FileBundle.DAR.name();
+            bundle = FileBundle.DAR;
             getLog().debug(String.format("%s not specified, get default value : %s", new Object[]{"fileBundle", fileBundle}));
         } else {
             try {
@@ -188,6 +650,19 @@ abstract class AbstractO11nMojo extends AbstractMojo {
                 logAndThrowFailureException(String.format("Error : 'fileBundle' unknown, authorized values are '%s'", Arrays.toString(FileBundle.values())));
             }
         }
+        bundleArtifacts = new ArrayList<>();
+        if (!StringUtils.isEmpty(bundleCoordinates)) {
+            for (String coordinates : StringUtils.split(bundleCoordinates, ", ")) {
+                try {
+                    Artifact artifact = BundleResolver.parse(coordinates, bundle);
+                    if (!bundleArtifacts.contains(artifact)) {
+                        bundleArtifacts.add(artifact);
+                    }
+                } catch (IllegalArgumentException e) {
+                    logAndThrowFailureException(String.format("Error : 'bundleCoordinates' entry '%s' is invalid : %s", coordinates, e.getMessage()));
+                }
+            }
+        }
         if (this.servicePort == null) {
             this.servicePort = 8281;
             getLog().debug(String.format("%s not specified, get default value : %s", new Object[]{"servicePort", servicePort}));
@@ -199,6 +674,103 @@ abstract class AbstractO11nMojo extends AbstractMojo {
         }
         ckeckPort("configPort", this.configPort);
 
+        if (StringUtils.isEmpty(this.restartRules)) {
+            restartRules = RestartRule.ALWAYS.name();
+            getLog().debug(String.format("%s not specified, get default value : %s", new Object[]{"restartRules", restartRules}));
+        }
+        restartRuleSet = EnumSet.noneOf(RestartRule.class);
+        for (String rule : StringUtils.split(restartRules, ", ")) {
+            try {
+                restartRuleSet.add(RestartRule.valueOf(rule.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                logAndThrowFailureException(String.format("Error : 'restartRules' unknown rule '%s', authorized values are '%s'", rule, Arrays.toString(RestartRule.values())));
+            }
+        }
+
+        if (StringUtils.isEmpty(this.restartLockDirectory)) {
+            restartLockDirectory = System.getProperty("java.io.tmpdir") + File.separator + "o11n-locks";
+            getLog().debug(String.format("%s not specified, get default value : %s", new Object[]{"restartLockDirectory", restartLockDirectory}));
+        }
+        if (StringUtils.isEmpty(this.restartCoordination) || "file".equalsIgnoreCase(restartCoordination)) {
+            restartCoordinator = new FileLockRestartCoordinator(Paths.get(restartLockDirectory));
+        } else if ("none".equalsIgnoreCase(restartCoordination)) {
+            restartCoordinator = new NoRestartCoordinator();
+        } else {
+            try {
+                restartCoordinator = (RestartCoordinator) Class.forName(restartCoordination, true, getClass().getClassLoader()).newInstance();
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                logAndThrowFailureException(String.format("Error : 'restartCoordination' must be 'file', 'none' or the class name of a %s implementation : %s",
+                        RestartCoordinator.class.getName(), e));
+            }
+        }
+
+        serverHosts = new ArrayList<>();
+        serverHosts.add(serverHost);
+        if (!StringUtils.isEmpty(clusterHosts)) {
+            for (String host : StringUtils.split(clusterHosts, ", ")) {
+                if (!serverHosts.contains(host)) {
+                    serverHosts.add(host);
+                }
+            }
+        }
+        if (rolloutWaveSize < 1) {
+            logAndThrowFailureException("Error : 'rolloutWaveSize' must be greater than 0");
+        }
+
+        smokeWorkflowIds = new ArrayList<>();
+        if (!StringUtils.isEmpty(smokeWorkflows)) {
+            for (String workflowId : StringUtils.split(smokeWorkflows, ", ")) {
+                if (!smokeWorkflowIds.contains(workflowId)) {
+                    smokeWorkflowIds.add(workflowId);
+                }
+            }
+        }
+        if (smokeTimeout < 1) {
+            logAndThrowFailureException("Error : 'smokeTimeout' must be greater than 0");
+        }
+        if (uploadBandwidth < 0 || maxConcurrentUploads < 0 || maxUploadsPerHost < 0) {
+            logAndThrowFailureException("Error : 'uploadBandwidth', 'maxConcurrentUploads' and 'maxUploadsPerHost' can't be negative");
+        }
+        if (traceBodySampling < 0 || traceBodyMaxSize < 0) {
+            logAndThrowFailureException("Error : 'traceBodySampling' and 'traceBodyMaxSize' can't be negative");
+        }
+        try {
+            sslContext = TlsContexts.get(StringUtils.isEmpty(trustStore) ? null : new File(trustStore), trustStorePassword,
+                    StringUtils.isEmpty(trustStoreType) ? null : trustStoreType);
+        } catch (IOException | GeneralSecurityException e) {
+            logAndThrowFailureException(String.format("Error : unable to load 'trustStore' '%s' : %s", trustStore, e.getMessage()));
+        }
+        if (flushConcurrency < 1) {
+            logAndThrowFailureException("Error : 'flushConcurrency' must be greater than 0");
+        }
+        if (flushTimeout < 0) {
+            logAndThrowFailureException("Error : 'flushTimeout' can't be negative");
+        }
+        if (connectTimeout < 0 || readTimeout < 0 || uploadTimeout < 0 || deployTimeout < 0) {
+            logAndThrowFailureException("Error : 'connectTimeout', 'readTimeout', 'uploadTimeout' and 'deployTimeout' can't be negative");
+        }
+
+        if (StringUtils.isEmpty(this.restartLogResource)) {
+            restartLogResource = RestartLogWatcher.DEFAULT_LOG_RESOURCE;
+            getLog().debug(String.format("%s not specified, get default value : %s", new Object[]{"restartLogResource", restartLogResource}));
+        }
+        if (StringUtils.isEmpty(this.restartFailurePatterns)) {
+            restartFailurePatternList = RestartLogWatcher.DEFAULT_FAILURE_PATTERNS;
+            getLog().debug(String.format("%s not specified, get default value : %s", new Object[]{"restartFailurePatterns", restartFailurePatternList}));
+        } else {
+            restartFailurePatternList = new ArrayList<>();
+            for (String pattern : StringUtils.split(restartFailurePatterns, ",")) {
+                if (StringUtils.isBlank(pattern)) {
+                    continue;
+                }
+                try {
+                    restartFailurePatternList.add(Pattern.compile(pattern.trim()));
+                } catch (PatternSyntaxException e) {
+                    logAndThrowFailureException(String.format("Error : 'restartFailurePatterns' entry '%s' is not a valid regular expression : %s", pattern.trim(), e.getDescription()));
+                }
+            }
+        }
+
         // Don't need to wait for pending changes if restart is not enable
         if (waitForRestart && !restartService) {
             waitForRestart = false;
@@ -220,10 +792,30 @@ abstract class AbstractO11nMojo extends AbstractMojo {
         }
         if (deletePackage && !StringUtils.isEmpty(deletePackageStrategy)) {
             try {
-                deleteStrategy = PackageDeleteStrategy.valueOf(deletePackageStrategy.toUpperCase());
+                deleteStrategy = PackageDeleteStrategy.fromValue(deletePackageStrategy);
             } catch (IllegalArgumentException e) {
                 logAndThrowFailureException(String.format("Error : 'deletePackageStrategy' unknown, authorized values are '%s'", Arrays.toString(PackageDeleteStrategy.values())));
             }
+        } else if (deletePackage) {
+            deleteStrategy = PackageDeleteStrategy.DELETE_PACKAGE_KEEPING_SHARED;
+            getLog().debug(String.format("%s not specified, get default value : %s", new Object[]{"deletePackageStrategy", deleteStrategy}));
+        }
+        packageDeletions = new ArrayList<>();
+        if (deletePackage) {
+            for (String entry : StringUtils.split(packageName, ",")) {
+                if (StringUtils.isBlank(entry)) {
+                    continue;
+                }
+                try {
+                    packageDeletions.add(PackageDeletion.parse(entry, deleteStrategy));
+                } catch (IllegalArgumentException e) {
+                    logAndThrowFailureException(String.format("Error : 'packageName' entry '%s' has an unknown strategy, authorized values are '%s'",
+                            entry.trim(), Arrays.toString(PackageDeleteStrategy.values())));
+                }
+            }
+            if (deletePackageConcurrency < 1) {
+                logAndThrowFailureException("Error : 'deletePackageConcurrency' must be greater than 0");
+            }
         }
     }
 
@@ -240,6 +832,71 @@ abstract class AbstractO11nMojo extends AbstractMojo {
         }
     }
 
+    /**
+     * Create a {@link RestClient} to a vRO server, configured with upload limits and timeouts.
+     * The client must be closed once no more calls are needed.
+     *
+     * @param host vRO Server Host or IP
+     * @return the client
+     */
+    protected RestClient newRestClient(String host) {
+        return newRestClient(host, servicePort, configPort);
+    }
+
+    /**
+     * Create a {@link RestClient} to a vRO server with its own ports, configured with upload limits and timeouts.
+     * The client must be closed once no more calls are needed.
+     *
+     * @param host        vRO Server Host or IP
+     * @param servicePort vRO Plugin Service REST API Port
+     * @param configPort  vRO Config Service REST API Port
+     * @return the client
+     */
+    protected RestClient newRestClient(String host, Integer servicePort, Integer configPort) {
+        RestClient restClient = new RestClient(getLog(), sslContext);
+        restClient.configureBaseUrl(host, servicePort, configPort);
+        restClient.setUploadThrottle(getUploadThrottle());
+        restClient.setTimeouts((int) TimeUnit.SECONDS.toMillis(connectTimeout), (int) TimeUnit.SECONDS.toMillis(readTimeout),
+                (int) TimeUnit.SECONDS.toMillis(uploadTimeout));
+        restClient.setTracing(traceBodySampling, traceBodyMaxSize);
+        return restClient;
+    }
+
+    /**
+     * Resolve the plugin files of <code>bundleCoordinates</code> from the Maven repositories
+     *
+     * @return the plugin files, in <code>bundleCoordinates</code> order
+     * @throws MojoFailureException if a plugin file can't be resolved
+     */
+    protected List<Path> resolveBundles() throws MojoFailureException {
+        if (repositorySystem == null || repositorySystemSession == null) {
+            logAndThrowFailureException("Error : 'bundleCoordinates' requires Maven 3.1 or later");
+        }
+        return new BundleResolver(getLog(), repositorySystem, repositorySystemSession, remoteRepositories).resolve(bundleArtifacts);
+    }
+
+    /**
+     * Create the {@link DeployEngine} of a server, with the configured credentials
+     *
+     * @param restClient RestClient of the server
+     * @return the engine
+     */
+    protected DeployEngine newDeployEngine(RestClient restClient) {
+        DeployEngine engine = new DeployEngine(getLog(), restClient, serviceUser, servicePassword, configUser, configPassword);
+        engine.setRestartWatch(restartLogWatch ? restartLogResource : null, restartFailurePatternList);
+        return engine;
+    }
+
+    /**
+     * Hide a secret in logs
+     *
+     * @param secret the secret
+     * @return <code>null</code> if not set, a mask otherwise
+     */
+    protected static String redact(String secret) {
+        return secret == null ? null : "******";
+    }
+
     /**
      * Log and throw {@link MojoFailureException}
      *
@@ -259,6 +916,22 @@ abstract class AbstractO11nMojo extends AbstractMojo {
         return serverHost;
     }
 
+    public String getClusterHosts() {
+        return clusterHosts;
+    }
+
+    public List<String> getServerHosts() {
+        return serverHosts;
+    }
+
+    public int getRolloutWaveSize() {
+        return rolloutWaveSize;
+    }
+
+    public boolean isRolloutSmokeCheck() {
+        return rolloutSmokeCheck;
+    }
+
     public Integer getServicePort() {
         return servicePort;
     }
@@ -299,6 +972,14 @@ abstract class AbstractO11nMojo extends AbstractMojo {
         return bundle;
     }
 
+    public String getBundleCoordinates() {
+        return bundleCoordinates;
+    }
+
+    public List<Artifact> getBundleArtifacts() {
+        return bundleArtifacts;
+    }
+
     public boolean isOverwrite() {
         return overwrite;
     }
@@ -307,10 +988,26 @@ abstract class AbstractO11nMojo extends AbstractMojo {
         return restartService;
     }
 
+    public Set<RestartRule> getRestartRules() {
+        return restartRuleSet;
+    }
+
     public boolean isWaitForRestart() {
         return waitForRestart;
     }
 
+    public boolean isRestartLogWatch() {
+        return restartLogWatch;
+    }
+
+    public String getRestartLogResource() {
+        return restartLogResource;
+    }
+
+    public String getRestartFailurePatterns() {
+        return restartFailurePatterns;
+    }
+
     public boolean isDeletePackage() {
         return deletePackage;
     }
@@ -326,4 +1023,147 @@ abstract class AbstractO11nMojo extends AbstractMojo {
     public String getPackageName() {
         return packageName;
     }
+
+    public boolean isValidateBundle() {
+        return validateBundle;
+    }
+
+    public String getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    public boolean isTreeDigest() {
+        return treeDigest;
+    }
+
+    public boolean isDeltaDeploy() {
+        return deltaDeploy;
+    }
+
+    public boolean isCheckInstalledVersion() {
+        return checkInstalledVersion;
+    }
+
+    public boolean isFailOnDowngrade() {
+        return failOnDowngrade;
+    }
+
+    public String getSmokeWorkflows() {
+        return smokeWorkflows;
+    }
+
+    public List<String> getSmokeWorkflowIds() {
+        return smokeWorkflowIds;
+    }
+
+    public int getSmokeTimeout() {
+        return smokeTimeout;
+    }
+
+    public int getUploadBandwidth() {
+        return uploadBandwidth;
+    }
+
+    public int getMaxConcurrentUploads() {
+        return maxConcurrentUploads;
+    }
+
+    public int getMaxUploadsPerHost() {
+        return maxUploadsPerHost;
+    }
+
+    /**
+     * @return upload limits, shared with other builds of the JVM using the same limits
+     */
+    public UploadThrottle getUploadThrottle() {
+        return UploadThrottle.shared(uploadBandwidth, maxConcurrentUploads, maxUploadsPerHost);
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public int getUploadTimeout() {
+        return uploadTimeout;
+    }
+
+    public int getDeployTimeout() {
+        return deployTimeout;
+    }
+
+    public String getRestartCoordination() {
+        return restartCoordination;
+    }
+
+    public String getRestartLockDirectory() {
+        return restartLockDirectory;
+    }
+
+    public RestartCoordinator getRestartCoordinator() {
+        return restartCoordinator;
+    }
+
+    public int getTraceBodySampling() {
+        return traceBodySampling;
+    }
+
+    public int getTraceBodyMaxSize() {
+        return traceBodyMaxSize;
+    }
+
+    public boolean isExportMetrics() {
+        return exportMetrics;
+    }
+
+    public String getMetricsDirectory() {
+        return metricsDirectory;
+    }
+
+    public List<PackageDeletion> getPackageDeletions() {
+        return packageDeletions;
+    }
+
+    public int getDeletePackageConcurrency() {
+        return deletePackageConcurrency;
+    }
+
+    public boolean isDaemon() {
+        return daemon;
+    }
+
+    public String getDaemonDirectory() {
+        return daemonDirectory;
+    }
+
+    public boolean isSpool() {
+        return spool;
+    }
+
+    public String getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    public int getFlushConcurrency() {
+        return flushConcurrency;
+    }
+
+    public int getFlushTimeout() {
+        return flushTimeout;
+    }
+
+    public String getTrustStore() {
+        return trustStore;
+    }
+
+    public String getTrustStorePassword() {
+        return trustStorePassword;
+    }
+
+    public String getTrustStoreType() {
+        return trustStoreType;
+    }
 }
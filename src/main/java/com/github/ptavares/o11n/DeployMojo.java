@@ -1,17 +1,60 @@
 package com.github.ptavares.o11n;
 
+import com.github.ptavares.o11n.bundle.BundleArchive;
+import com.github.ptavares.o11n.bundle.BundleDelta;
+import com.github.ptavares.o11n.bundle.BundleEntry;
+import com.github.ptavares.o11n.bundle.BundleMetadata;
+import com.github.ptavares.o11n.bundle.BundleMetadataReader;
+import com.github.ptavares.o11n.bundle.BundleValidator;
+import com.github.ptavares.o11n.bundle.DigestService;
+import com.github.ptavares.o11n.coordination.RestartLease;
+import com.github.ptavares.o11n.daemon.DaemonClient;
+import com.github.ptavares.o11n.daemon.DeployJob;
+import com.github.ptavares.o11n.daemon.JobResult;
+import com.github.ptavares.o11n.engine.DeployEngine;
+import com.github.ptavares.o11n.enums.FileBundle;
+import com.github.ptavares.o11n.enums.RestartRule;
+import com.github.ptavares.o11n.metrics.MetricsExporter;
+import com.github.ptavares.o11n.metrics.MetricsRegistry;
+import com.github.ptavares.o11n.packages.PackageUninstaller;
+import com.github.ptavares.o11n.report.DeployReport;
+import com.github.ptavares.o11n.rest.Deadline;
+import com.github.ptavares.o11n.rest.InstalledPlugin;
 import com.github.ptavares.o11n.rest.RestClient;
 import com.github.ptavares.o11n.rest.RestRequest;
 import com.github.ptavares.o11n.rest.RestResponse;
+import com.github.ptavares.o11n.rest.ServerUnreachableException;
+import com.github.ptavares.o11n.spool.DeploySpool;
+import com.github.ptavares.o11n.spool.SpoolEntry;
+import com.github.ptavares.o11n.state.DeployHistory;
+import com.github.ptavares.o11n.workflow.WorkflowResult;
+import com.github.ptavares.o11n.workflow.WorkflowRunner;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Mojo which deploys a created vRO plug-in to the configured vRO Server.
@@ -23,232 +66,1198 @@ import java.nio.file.Paths;
 public class DeployMojo extends AbstractO11nMojo {
 
     /**
-     * RestClient to use for WebServices calls
+     * Max servers probed at the same time by a deploy plan
      */
-    private RestClient restClient;
+    private static final int MAX_PLAN_PROBES = 16;
+
+    /**
+     * Max time to wait for the restart window of a server, held by other builds, in milliseconds
+     */
+    private static final long RESTART_LOCK_TIMEOUT = 2 * DeployEngine.RESTART_TIMEOUT;
+
+    /**
+     * vRO servers to deploy to, with their RestClient to use for WebServices calls
+     */
+    private List<DeployTarget> targets;
+
+    /**
+     * Digest of the plugin file to install
+     */
+    private String pluginDigest;
+
+    /**
+     * Plugins contained in the plugin file to install
+     */
+    private List<BundleMetadata> pluginMetadata = Collections.emptyList();
+
+    /**
+     * Report of this execution
+     */
+    private DeployReport report;
+
+    /**
+     * What was deployed by previous executions
+     */
+    private DeployHistory history;
+
+    /**
+     * Time budget of the current deploy
+     */
+    private Deadline deadline = Deadline.NONE;
+
+    /**
+     * Metrics of the current deploy
+     */
+    private MetricsRegistry metrics;
 
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         // first check all params
         checkParams();
         // Log params
+        logParams();
+
+        // First of all, check if files exist
+        List<Path> pluginFiles = getPluginFiles();
+
+        try {
+            for (Path pluginFile : pluginFiles) {
+                deployFile(pluginFile);
+            }
+        } finally {
+            closeRestClient();
+        }
+    }
+
+    /**
+     * Log all params in debug mode
+     */
+    protected void logParams() {
         if (getLog().isDebugEnabled()) {
             getLog().debug("Starting o11n-deploy with params :");
             getLog().debug(" - serverHost : " + getServerHost());
             getLog().debug(" - servicePort : " + getServicePort());
             getLog().debug(" - configPort : " + getConfigPort());
             getLog().debug(" - serviceUser : " + getServiceUser());
-            getLog().debug(" - servicePassword : " + getServicePassword());
+            getLog().debug(" - servicePassword : " + redact(getServicePassword()));
             getLog().debug(" - configUser : " + getConfigUser());
-            getLog().debug(" - configPassword : " + getConfigPassword());
+            getLog().debug(" - configPassword : " + redact(getConfigPassword()));
             getLog().debug(" - fileBundle : " + getFileBundle());
+            getLog().debug(" - bundleCoordinates : " + getBundleCoordinates());
             getLog().debug(" - overwrite : " + isOverwrite());
             getLog().debug(" - restartService : " + isRestartService());
             getLog().debug(" - waitForRestart : " + isWaitForRestart());
+            getLog().debug(" - restartLogWatch : " + isRestartLogWatch());
+            getLog().debug(" - restartLogResource : " + getRestartLogResource());
+            getLog().debug(" - restartFailurePatterns : " + getRestartFailurePatterns());
             getLog().debug(" - deletePackage : " + isDeletePackage());
             getLog().debug(" - packageName : " + getPackageName());
             getLog().debug(" - deletePackageStrategy : " + getDeletePackageStrategy());
+            getLog().debug(" - deletePackageConcurrency : " + getDeletePackageConcurrency());
             getLog().debug(" - fileDirectoryPath : " + getFileDirectoryPath());
             getLog().debug(" - fileName : " + getFileName());
+            getLog().debug(" - validateBundle : " + isValidateBundle());
+            getLog().debug(" - cacheDirectory : " + getCacheDirectory());
+            getLog().debug(" - treeDigest : " + isTreeDigest());
+            getLog().debug(" - deltaDeploy : " + isDeltaDeploy());
+            getLog().debug(" - checkInstalledVersion : " + isCheckInstalledVersion());
+            getLog().debug(" - failOnDowngrade : " + isFailOnDowngrade());
+            getLog().debug(" - restartRules : " + getRestartRules());
+            getLog().debug(" - clusterHosts : " + getClusterHosts());
+            getLog().debug(" - rolloutWaveSize : " + getRolloutWaveSize());
+            getLog().debug(" - rolloutSmokeCheck : " + isRolloutSmokeCheck());
+            getLog().debug(" - smokeWorkflows : " + getSmokeWorkflows());
+            getLog().debug(" - smokeTimeout : " + getSmokeTimeout());
+            getLog().debug(" - uploadBandwidth : " + getUploadBandwidth());
+            getLog().debug(" - maxConcurrentUploads : " + getMaxConcurrentUploads());
+            getLog().debug(" - maxUploadsPerHost : " + getMaxUploadsPerHost());
+            getLog().debug(" - connectTimeout : " + getConnectTimeout());
+            getLog().debug(" - readTimeout : " + getReadTimeout());
+            getLog().debug(" - uploadTimeout : " + getUploadTimeout());
+            getLog().debug(" - deployTimeout : " + getDeployTimeout());
+            getLog().debug(" - restartCoordination : " + getRestartCoordination());
+            getLog().debug(" - restartLockDirectory : " + getRestartLockDirectory());
+            getLog().debug(" - traceBodySampling : " + getTraceBodySampling());
+            getLog().debug(" - traceBodyMaxSize : " + getTraceBodyMaxSize());
+            getLog().debug(" - trustStore : " + getTrustStore());
+            getLog().debug(" - trustStorePassword : " + redact(getTrustStorePassword()));
+            getLog().debug(" - trustStoreType : " + getTrustStoreType());
+            getLog().debug(" - exportMetrics : " + isExportMetrics());
+            getLog().debug(" - metricsDirectory : " + getMetricsDirectory());
+            getLog().debug(" - daemon : " + isDaemon());
+            getLog().debug(" - daemonDirectory : " + getDaemonDirectory());
+            getLog().debug(" - spool : " + isSpool());
+            getLog().debug(" - spoolDirectory : " + getSpoolDirectory());
+        }
+    }
+
+    /**
+     * @return the path of the plugin file to install
+     */
+    protected Path getPluginFile() {
+        return Paths.get(getFileDirectoryPath() + File.separator + getFileName() + getBundle().getFileSuffix());
+    }
+
+    /**
+     * @return the paths of the plugin files to install : the ones of <code>bundleCoordinates</code> if defined, else the built one
+     * @throws MojoFailureException if a plugin file can't be resolved or doesn't exist
+     */
+    protected List<Path> getPluginFiles() throws MojoFailureException {
+        if (!getBundleArtifacts().isEmpty()) {
+            return resolveBundles();
+        }
+        Path pluginFile = getPluginFile();
+        if (!Files.isRegularFile(pluginFile)) {
+            // No plugin file find
+            throw new MojoFailureException("Plugin file '" + pluginFile + "' not found.");
         }
+        return Collections.singletonList(pluginFile);
+    }
 
-        // First of all, check if file exist
-        Path pluginFile = Paths.get(getFileDirectoryPath() + File.separator + getFileName() + getBundle().getFileSuffix());
+    /**
+     * Deploy the plugin file and write the deploy report.
+     * The {@link com.github.ptavares.o11n.rest.RestClient} is kept open for next calls, see {@link #closeRestClient()}.
+     *
+     * @param pluginFile Path to plugin file
+     * @throws MojoFailureException if a step fails
+     */
+    protected void deployFile(Path pluginFile) throws MojoFailureException {
+        this.report = new DeployReport();
+        this.deadline = Deadline.after(TimeUnit.SECONDS.toMillis(getDeployTimeout()));
+        this.metrics = new MetricsRegistry();
+        this.history = new DeployHistory(getLog(), Paths.get(getCacheDirectory()));
+        this.report.put("server", StringUtils.join(getServerHosts(), ','))
+                .put("plugin.file", pluginFile);
+        try {
+            if (!isDaemon() || !deployWithDaemon(pluginFile)) {
+                deploy(pluginFile);
+            }
+            this.report.put("result", "SUCCESS");
+        } catch (MojoFailureException e) {
+            this.report.put("result", "FAILURE");
+            throw e;
+        } finally {
+            this.report.write(getLog(), Paths.get(getCacheDirectory()));
+            if (isExportMetrics()) {
+                new MetricsExporter(getLog()).export(this.metrics, Paths.get(getMetricsDirectory()));
+            }
+        }
+    }
 
-        if (Files.exists(pluginFile) && Files.isRegularFile(pluginFile)) {
-            // Init RestClient
-            this.restClient = new RestClient(getLog());
-            this.restClient.configureBaseUrl(getServerHost(), getServicePort(), getConfigPort());
+    /**
+     * Compute and log what a deploy of the plugin file would do on each server, and how long it would take.
+     * Servers are probed concurrently with read-only calls : nothing is installed, deleted or restarted.
+     *
+     * @param pluginFile Path to plugin file
+     * @throws MojoFailureException if the plugin file is invalid
+     */
+    protected void planFile(Path pluginFile) throws MojoFailureException {
+        this.report = new DeployReport();
+        this.deadline = Deadline.NONE;
+        this.metrics = new MetricsRegistry();
+        this.history = new DeployHistory(getLog(), Paths.get(getCacheDirectory()));
+        prepare(pluginFile);
 
-            // 1. Delete package if is enable
-            if (isDeletePackage() && uninstallPackage()) {
-                getLog().info("Successfully delete package plugin");
+        List<DeployPlan> plans = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.targets.size(), MAX_PLAN_PROBES));
+        try {
+            List<Future<DeployPlan>> futures = new ArrayList<>();
+            for (final DeployTarget target : this.targets) {
+                futures.add(executor.submit(() -> plan(target, pluginFile)));
+            }
+            for (Future<DeployPlan> future : futures) {
+                plans.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            logAndThrowFailureException("Unable to plan deploy : " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logAndThrowFailureException("Deploy plan interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        getLog().info("---------------");
+        getLog().info("- Deploy plan -");
+        getLog().info("---------------");
+        long bytes = 0;
+        boolean partial = false;
+        for (DeployPlan plan : plans) {
+            getLog().info(plan.toString());
+            bytes += plan.getBytes();
+            partial |= plan.isEstimatePartial();
+        }
+        // Canary alone, then waves of concurrent nodes : each wave lasts as long as its slowest node
+        long total = plans.get(0).getEstimatedMillis();
+        for (int i = 1; i < plans.size(); i += getRolloutWaveSize()) {
+            long wave = 0;
+            for (DeployPlan plan : plans.subList(i, Math.min(i + getRolloutWaveSize(), plans.size()))) {
+                wave = Math.max(wave, plan.getEstimatedMillis());
+            }
+            total += wave;
+        }
+        getLog().info(String.format("Estimated deploy on %d server(s) : %d KB to upload, %s%d s%s", plans.size(), bytes / 1024,
+                partial ? "more than " : "~", total / 1000, partial ? " (no timing recorded for some steps yet)" : ""));
+    }
+
+    /**
+     * Compute the deploy plan of one server, as {@link #deploy(DeployTarget, Path, boolean)} would run it
+     *
+     * @param target     the server
+     * @param pluginFile Path to plugin file
+     * @return the plan
+     * @throws IOException if the plugin file can't be read
+     */
+    private DeployPlan plan(DeployTarget target, Path pluginFile) throws IOException {
+        target.reset();
+        DeployPlan plan = new DeployPlan(target);
+        try {
+            if (isDeltaDeploy()) {
+                BundleArchive current = BundleArchive.open(pluginFile);
+                BundleDelta delta = packagesDelta(target, current);
+                if (delta != null) {
+                    long bytes = 0;
+                    for (BundleEntry entry : delta.getChanged()) {
+                        bytes += entry.getSize();
+                    }
+                    plan.setInstall("DELTA", delta.getChanged().size() + " changed package(s)");
+                    plan.setRestart("NOT_REQUIRED", null);
+                    estimate(plan, target, bytes);
+                    return plan;
+                }
+            }
+            if (isCheckInstalledVersion() && !checkInstalledVersion(target)) {
+                plan.setInstall("SKIP", "already installed");
+                return plan;
+            }
+            plan.setInstall("INSTALL", !isCheckInstalledVersion() ? "installed version not checked"
+                    : target.isNewPlugin() ? "new plugin" : target.isVersionChanged() ? "version changed" : "overwrite");
+            if (isDeletePackage()) {
+                plan.setDeletions(new PackageUninstaller(getLog(), target.getRestClient(), getServiceUser(), getServicePassword(),
+                        getDeletePackageConcurrency()).resolveInstalled(getPackageDeletions()));
+            }
+            if (!isRestartService()) {
+                plan.setRestart("DISABLED", null);
             } else {
-                logAndThrowFailureException(String.format("Failed to delete package '%s'", getPackageName()));
+                String restartReason = restartReason(target);
+                plan.setRestart(restartReason == null ? "NOT_REQUIRED" : "REQUIRED", restartReason);
             }
-            //2. Upload plugin
-            if (installPlugin(pluginFile)) {
-                getLog().info(String.format("Successfully install plugin '%s'", getFileName() + getBundle().getFileSuffix()));
-                //3. Wait for restart
-                if (isRestartService() && restartService()) {
-                    getLog().info("Successfully restart requested vRO service");
-                    if (isWaitForRestart() && waitForRestart()) {
-                        getLog().info("Successfully restart vRO service");
-                    } else {
-                        logAndThrowFailureException("Failed to restart vRO service");
+            estimate(plan, target, Files.size(pluginFile));
+        } catch (MojoFailureException e) {
+            plan.setInstall("FAIL", e.getMessage());
+        }
+        return plan;
+    }
+
+    /**
+     * Estimate durations of a plan from the timings of the previous deploys on the server
+     */
+    private void estimate(DeployPlan plan, DeployTarget target, long bytes) {
+        plan.setBytes(bytes);
+        long rate = NumberUtils.toLong(history.get(target.getName(), DeployHistory.UPLOAD_RATE), -1);
+        if (rate > 0) {
+            plan.setUploadMillis(bytes * 1000 / rate);
+        }
+        plan.setRestartMillis(NumberUtils.toLong(history.get(target.getName(), DeployHistory.RESTART_DURATION), -1));
+    }
+
+    /**
+     * Send the deploy to the deploy daemon, one job per server
+     *
+     * @param pluginFile Path to plugin file
+     * @return <code>true</code> if the daemon deployed the plugin file, <code>false</code> if no daemon is running
+     * or if an option not supported by the daemon is set
+     * @throws MojoFailureException if the plugin file is invalid or a job fails
+     */
+    private boolean deployWithDaemon(Path pluginFile) throws MojoFailureException {
+        List<String> unsupported = new ArrayList<>();
+        if (isDeletePackage()) {
+            unsupported.add("deletePackage");
+        }
+        if (isCheckInstalledVersion()) {
+            unsupported.add("checkInstalledVersion");
+        }
+        if (isDeltaDeploy()) {
+            unsupported.add("deltaDeploy");
+        }
+        if (!getSmokeWorkflowIds().isEmpty()) {
+            unsupported.add("smokeWorkflows");
+        }
+        // The daemon always restarts after an install, as the rules do when the installed version is not checked
+        if (isRestartService() && !getRestartRules().contains(RestartRule.ALWAYS)
+                && !getRestartRules().contains(RestartRule.VERSION_CHANGE)) {
+            unsupported.add("restartRules");
+        }
+        if (!unsupported.isEmpty()) {
+            getLog().warn(String.format("Option(s) %s not supported by the deploy daemon, deploying directly", unsupported));
+            return false;
+        }
+        // The daemon only installs : the plugin file is validated before sending it
+        if (isValidateBundle()) {
+            validateBundle(pluginFile);
+        }
+
+        List<DeployJob> jobs = new ArrayList<>();
+        for (String host : getServerHosts()) {
+            jobs.add(new DeployJob().setServerHost(host)
+                    .setServicePort(getServicePort())
+                    .setConfigPort(getConfigPort())
+                    .setServiceAuthentication(getServiceUser(), getServicePassword())
+                    .setConfigAuthentication(getConfigUser(), getConfigPassword())
+                    .setPluginFile(pluginFile.toAbsolutePath().toString())
+                    .setBundle(getBundle())
+                    .setOverwrite(isOverwrite())
+                    .setRestartService(isRestartService())
+                    .setWaitForRestart(isWaitForRestart())
+                    .setTimeout(TimeUnit.SECONDS.toMillis(getDeployTimeout())));
+        }
+        List<JobResult> results = null;
+        try {
+            results = DaemonClient.submit(Paths.get(getDaemonDirectory()), jobs, (int) TimeUnit.SECONDS.toMillis(getDeployTimeout()));
+        } catch (IOException e) {
+            logAndThrowFailureException(String.format("Deploy daemon failed : %s", e.getMessage()));
+        }
+        if (results == null) {
+            getLog().warn(String.format("No deploy daemon running in '%s', deploying directly", getDaemonDirectory()));
+            return false;
+        }
+
+        this.report.put("daemon", "true");
+        List<String> failures = new ArrayList<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            String prefix = jobs.size() == 1 ? "" : "node." + jobs.get(i).getServerHost() + ".";
+            JobResult result = results.get(i);
+            this.report.put(prefix + "install", result.getInstall())
+                    .put(prefix + "restart", result.getRestart())
+                    .put(prefix + "daemon.batchSize", result.getBatchSize());
+            if (result.isSuccess()) {
+                getLog().info(String.format("Deploy daemon installed plugin '%s' on '%s' (batch of %d job(s), restart %s)",
+                        getFileName() + getBundle().getFileSuffix(), jobs.get(i).getServerHost(), result.getBatchSize(), result.getRestart()));
+            } else {
+                failures.add(jobs.get(i).getServerHost() + " (" + result.getMessage() + ")");
+            }
+        }
+        if (!failures.isEmpty()) {
+            logAndThrowFailureException(String.format("Deploy daemon failed on %s", failures));
+        }
+        return true;
+    }
+
+    /**
+     * Close the {@link com.github.ptavares.o11n.rest.RestClient} of each server and their connections
+     */
+    protected void closeRestClient() {
+        if (this.targets != null) {
+            for (DeployTarget target : this.targets) {
+                try {
+                    target.close();
+                } catch (IOException e) {
+                    getLog().debug("Error while closing RestClient", e);
+                }
+            }
+            this.targets = null;
+        }
+    }
+
+    /**
+     * Deploy the plugin file, on one server or on all cluster nodes
+     *
+     * @param pluginFile Path to plugin file
+     * @throws MojoFailureException if a step fails
+     */
+    private void deploy(Path pluginFile) throws MojoFailureException {
+        prepare(pluginFile);
+
+        if (this.targets.size() == 1) {
+            DeployTarget target = this.targets.get(0);
+            try {
+                deploy(target, pluginFile, isWaitForRestart());
+            } catch (ServerUnreachableException e) {
+                if (!isSpool()) {
+                    throw e;
+                }
+                spool(target, pluginFile, "", e);
+            }
+        } else {
+            rollingDeploy(pluginFile);
+        }
+    }
+
+    /**
+     * Read the plugin file and init the servers
+     *
+     * @param pluginFile Path to plugin file
+     * @throws MojoFailureException if the plugin file is invalid
+     */
+    private void prepare(Path pluginFile) throws MojoFailureException {
+        // 0. Check plugin file before sending it
+        BundleArchive archive = isValidateBundle() ? validateBundle(pluginFile) : null;
+        this.pluginDigest = digest(pluginFile);
+        this.pluginMetadata = readMetadata(pluginFile, archive);
+        this.report.put("plugin.digest", pluginDigest);
+        for (BundleMetadata plugin : pluginMetadata) {
+            this.report.put("plugin." + plugin.getName() + ".version", plugin.getFullVersion());
+        }
+
+        // Init RestClients, reused between deploys
+        if (this.targets == null) {
+            this.targets = new ArrayList<>();
+            for (String host : getServerHosts()) {
+                this.targets.add(new DeployTarget(host, getServicePort(), getConfigPort(), newDeployEngine(newRestClient(host))));
+            }
+        }
+        for (DeployTarget target : this.targets) {
+            target.getRestClient().setDeadline(this.deadline);
+            target.getRestClient().setMetrics(this.metrics);
+        }
+    }
+
+    /**
+     * Deploy the plugin file on all cluster nodes : first on a canary node alone, then by waves of
+     * <code>rolloutWaveSize</code> nodes deployed concurrently. Each node must be ready again before its wave ends,
+     * and the rollout is aborted at the end of the first wave with a failed node.
+     * With <code>spool</code>, unreachable nodes are spooled : an unreachable canary is replaced by the next node.
+     *
+     * @param pluginFile Path to plugin file
+     * @throws MojoFailureException if a node deploy fails
+     */
+    private void rollingDeploy(final Path pluginFile) throws MojoFailureException {
+        getLog().info(String.format("Rolling deploy on %d nodes : canary '%s', then waves of up to %d node(s)",
+                this.targets.size(), this.targets.get(0), getRolloutWaveSize()));
+
+        // Wave 0 : the canary alone. With spool, an unreachable canary is spooled and the next node is promoted canary,
+        // so that no wave starts before the plugin file was validated on a node
+        int canary = 0;
+        while (true) {
+            DeployTarget target = this.targets.get(canary);
+            getLog().info(String.format("Rollout wave 0 : [%s]", target));
+            try {
+                deploy(target, pluginFile, true);
+                this.report.put("node." + target + ".result", "SUCCESS");
+                break;
+            } catch (ServerUnreachableException e) {
+                if (!isSpool()) {
+                    abortRollout(target, canary, 0, e.getMessage());
+                }
+                spool(target, pluginFile, "node." + target + ".", e);
+                this.report.put("node." + target + ".result", "SPOOLED");
+                if (++canary == this.targets.size()) {
+                    getLog().warn("No node reachable, rollout spooled on all nodes");
+                    return;
+                }
+                getLog().info(String.format("Canary '%s' unreachable, promoting '%s' to canary", target, this.targets.get(canary)));
+            } catch (MojoFailureException e) {
+                abortRollout(target, canary, 0, e.getMessage());
+            }
+        }
+
+        List<List<DeployTarget>> waves = new ArrayList<>();
+        for (int i = canary + 1; i < this.targets.size(); i += getRolloutWaveSize()) {
+            waves.add(this.targets.subList(i, Math.min(i + getRolloutWaveSize(), this.targets.size())));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(getRolloutWaveSize());
+        try {
+            for (int i = 0; i < waves.size(); i++) {
+                List<DeployTarget> wave = waves.get(i);
+                getLog().info(String.format("Rollout wave %d/%d : %s", i + 1, waves.size(), wave));
+                Map<DeployTarget, Future<Void>> futures = new LinkedHashMap<>();
+                for (final DeployTarget target : wave) {
+                    futures.put(target, executor.submit(() -> {
+                        deploy(target, pluginFile, true);
+                        return null;
+                    }));
+                }
+                List<String> failures = new ArrayList<>();
+                for (Map.Entry<DeployTarget, Future<Void>> future : futures.entrySet()) {
+                    try {
+                        future.getValue().get();
+                        this.report.put("node." + future.getKey() + ".result", "SUCCESS");
+                    } catch (ExecutionException e) {
+                        if (isSpool() && e.getCause() instanceof ServerUnreachableException) {
+                            // Deployed by the flush goal once reachable, the rollout goes on with other nodes
+                            spool(future.getKey(), pluginFile, "node." + future.getKey() + ".", (ServerUnreachableException) e.getCause());
+                            this.report.put("node." + future.getKey() + ".result", "SPOOLED");
+                        } else {
+                            this.report.put("node." + future.getKey() + ".result", "FAILURE");
+                            failures.add(future.getKey() + " (" + e.getCause().getMessage() + ")");
+                        }
                     }
-                } else {
-                    logAndThrowFailureException("Failed to request restart vRO service");
                 }
+                if (!failures.isEmpty()) {
+                    for (int j = i + 1; j < waves.size(); j++) {
+                        for (DeployTarget target : waves.get(j)) {
+                            this.report.put("node." + target + ".result", "ABORTED");
+                        }
+                    }
+                    logAndThrowFailureException(String.format("Rollout aborted at wave %d, failed node(s) : %s", i + 1, failures));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logAndThrowFailureException("Rollout interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Abort the rollout on a failed node : following nodes are not deployed
+     *
+     * @param target the failed node
+     * @param index  index of the failed node in the targets
+     * @param wave   wave of the failed node
+     * @param error  the failure
+     * @throws MojoFailureException always
+     */
+    private void abortRollout(DeployTarget target, int index, int wave, String error) throws MojoFailureException {
+        this.report.put("node." + target + ".result", "FAILURE");
+        for (DeployTarget next : this.targets.subList(index + 1, this.targets.size())) {
+            this.report.put("node." + next + ".result", "ABORTED");
+        }
+        logAndThrowFailureException(String.format("Rollout aborted at wave %d, failed node(s) : [%s (%s)]", wave, target, error));
+    }
+
+    /**
+     * Spool the deploy on an unreachable server, to be run by the <code>flush</code> goal
+     *
+     * @param target     the server
+     * @param pluginFile Path to plugin file
+     * @param prefix     report keys prefix
+     * @param cause      the connection error
+     * @throws MojoFailureException if the deploy can't be spooled
+     */
+    private void spool(DeployTarget target, Path pluginFile, String prefix, ServerUnreachableException cause) throws MojoFailureException {
+        getLog().warn(String.format("vRO server '%s' unreachable (%s), spooling deploy in '%s'", target, cause.getMessage(), getSpoolDirectory()));
+        SpoolEntry entry = new SpoolEntry().setServerHost(target.getServerHost())
+                .setServicePort(target.getServicePort())
+                .setConfigPort(target.getConfigPort())
+                .setDigest(this.pluginDigest)
+                .setBundle(getBundle())
+                .setOverwrite(isOverwrite())
+                .setRestartService(isRestartService())
+                .setWaitForRestart(isWaitForRestart());
+        try {
+            new DeploySpool(getLog(), Paths.get(getSpoolDirectory())).add(entry, pluginFile);
+        } catch (IOException e) {
+            logAndThrowFailureException(String.format("Unable to spool deploy on '%s' : %s", target, e.getMessage()));
+        }
+        this.report.put(prefix + "install", "SPOOLED");
+    }
+
+    /**
+     * Deploy the plugin file on one server
+     *
+     * @param target     the server
+     * @param pluginFile Path to plugin file
+     * @param waitReady  <code>true</code> to wait for the server to be ready again, and smoke check it
+     * @throws MojoFailureException if a step fails
+     */
+    private void deploy(DeployTarget target, Path pluginFile, boolean waitReady) throws MojoFailureException {
+        target.reset();
+        String prefix = this.targets.size() == 1 ? "" : "node." + target + ".";
+        this.deadline.check(String.format("deploy on '%s'", target));
+
+        // Import only the packages changed since the last deploy, if nothing else changed
+        if (isDeltaDeploy() && deltaDeploy(target, pluginFile, prefix)) {
+            recordDeploy(target);
+            cacheDeployed(pluginFile);
+            return;
+        }
+
+        // Compare with the plugin version installed in vRO
+        if (isCheckInstalledVersion() && !checkInstalledVersion(target)) {
+            getLog().info(String.format("Plugin '%s' is already installed in vRO Server '%s', skipping install. Set 'overwrite' to force it.",
+                    getFileName() + getBundle().getFileSuffix(), target));
+            this.report.put(prefix + "install", "SKIPPED")
+                    .put(prefix + "restart", "SKIPPED");
+            return;
+        }
+
+        // 1. Delete package if is enable
+        if (isDeletePackage()) {
+            this.deadline.check("package deletion");
+            List<String> failed = uninstallPackages(target, prefix);
+            if (failed.isEmpty()) {
+                getLog().info("Successfully delete package plugin");
+            } else {
+                logAndThrowFailureException(String.format("Failed to delete package(s) %s", failed));
+            }
+        }
+        //2. Upload plugin
+        this.deadline.check("plugin upload");
+        long uploadStart = System.nanoTime();
+        if (target.getEngine().installPlugin(pluginFile, getBundle(), isOverwrite())) {
+            long installTime = System.currentTimeMillis();
+            recordUploadRate(target, pluginFile, System.nanoTime() - uploadStart);
+            getLog().info(String.format("Successfully install plugin '%s' on '%s'", getFileName() + getBundle().getFileSuffix(), target));
+            this.report.put(prefix + "install", "DONE");
+            String restartReason = isRestartService() ? restartReason(target) : null;
+            boolean ready = true;
+            //3. Restart service if is enable and required
+            if (!isRestartService()) {
+                this.report.put(prefix + "restart", "DISABLED");
+            } else if (restartReason == null) {
+                getLog().info(String.format("Restart of vRO service on '%s' not required by rules %s, skipping restart", target, getRestartRules()));
+                this.report.put(prefix + "restart", "NOT_REQUIRED");
             } else {
-                logAndThrowFailureException(String.format("Failed to install plugin '%s'", getFileName() + getBundle().getFileSuffix()));
+                getLog().info(String.format("Restart of vRO service on '%s' required : %s", target, restartReason));
+                this.report.put(prefix + "restart", "REQUIRED")
+                        .put(prefix + "restart.reason", restartReason);
+                this.deadline.check("service restart");
+                ready = restartInWindow(target, installTime, waitReady, prefix);
+            }
+            //5. Check the installed plugin version
+            if (waitReady && isRolloutSmokeCheck() && this.targets.size() > 1) {
+                if (smokeCheck(target)) {
+                    this.report.put(prefix + "smokeCheck", "SUCCESS");
+                } else {
+                    this.report.put(prefix + "smokeCheck", "FAILURE");
+                    logAndThrowFailureException(String.format("Smoke check failed on '%s'", target));
+                }
+            }
+            //6. Run smoke workflows, once the server is ready
+            if (!getSmokeWorkflowIds().isEmpty()) {
+                if (ready) {
+                    runSmokeWorkflows(target.getRestClient(), prefix);
+                } else {
+                    getLog().warn(String.format("vRO service on '%s' is restarting and 'waitForRestart' is disabled, skipping smoke workflows", target));
+                    this.report.put(prefix + "smoke", "SKIPPED");
+                }
+            }
+            // Only record a complete deploy, so that a failed restart is retried next time
+            recordDeploy(target);
+            if (isDeltaDeploy()) {
+                cacheDeployed(pluginFile);
             }
         } else {
-            // No plugin file find
-            throw new MojoFailureException("Plugin file '" + pluginFile + "' not found.");
+            logAndThrowFailureException(String.format("Failed to install plugin '%s' on '%s'", getFileName() + getBundle().getFileSuffix(), target));
+        }
+    }
+
+    /**
+     * Compare the plugin file with the last one deployed on the server and, if only packages were added or changed,
+     * import these packages instead of installing the whole plugin file
+     *
+     * @param target     the server
+     * @param pluginFile Path to plugin file
+     * @param prefix     report keys prefix
+     * @return <code>true</code> if the changes were deployed, <code>false</code> if a full install is required
+     * @throws MojoFailureException if a package import fails
+     */
+    private boolean deltaDeploy(DeployTarget target, Path pluginFile, String prefix) throws MojoFailureException {
+        BundleArchive current;
+        try {
+            current = BundleArchive.open(pluginFile);
+        } catch (IOException e) {
+            getLog().warn(String.format("Unable to read plugin file '%s' : %s. Full install required.", pluginFile, e.getMessage()));
+            return false;
         }
+        BundleDelta delta = packagesDelta(target, current);
+        if (delta == null) {
+            return false;
+        }
+
+        if (delta.isEmpty()) {
+            getLog().info(String.format("Plugin file unchanged since last deploy on '%s', nothing to import", target));
+        } else {
+            getLog().info(String.format("Importing %d changed package(s) on '%s' instead of installing plugin file",
+                    delta.getChanged().size(), target));
+        }
+        for (BundleEntry entry : delta.getChanged()) {
+            this.deadline.check("package import");
+            String name = StringUtils.removeEnd(StringUtils.substringAfterLast("/" + entry.getName(), "/"), BundleDelta.PACKAGE_SUFFIX);
+            if (importPackage(target, current, entry, name)) {
+                this.report.put(prefix + "package." + name + ".import", "DONE");
+            } else {
+                this.report.put(prefix + "package." + name + ".import", "FAILURE");
+                logAndThrowFailureException(String.format("Failed to import package '%s' on '%s'", name, target));
+            }
+        }
+        this.report.put(prefix + "install", "DELTA")
+                .put(prefix + "restart", "NOT_REQUIRED");
+        // Imported packages are loaded without restart : the server stays ready
+        if (!getSmokeWorkflowIds().isEmpty()) {
+            runSmokeWorkflows(target.getRestClient(), prefix);
+        }
+        return true;
+    }
 
+    /**
+     * Compare the plugin file with the last one deployed on the server
+     *
+     * @param target  the server
+     * @param current the plugin file
+     * @return the changes if they are limited to packages, <code>null</code> if a full install is required
+     */
+    private BundleDelta packagesDelta(DeployTarget target, BundleArchive current) {
+        String lastDigest = history.get(target.getName(), DeployHistory.LAST_DIGEST);
+        Path previousFile = lastDigest == null ? null : deployedFile(lastDigest);
+        if (previousFile == null || !Files.isRegularFile(previousFile)) {
+            getLog().info(String.format("No previous plugin file cached for '%s', full install required", target));
+            return null;
+        }
+        BundleDelta delta;
+        try {
+            delta = BundleDelta.compare(BundleArchive.open(previousFile), current);
+        } catch (IOException e) {
+            getLog().warn(String.format("Unable to compare plugin file with the last one deployed on '%s' : %s. Full install required.", target, e.getMessage()));
+            return null;
+        }
+        getLog().debug(String.format("Changes since last deploy on '%s' : %s", target, delta));
+        if (!delta.isPackagesOnly()) {
+            getLog().info(String.format("Plugin file changes since last deploy on '%s' are not limited to packages, full install required", target));
+            return null;
+        }
+        return delta;
     }
 
     /**
-     * Uninstall plugin package
+     * Import one package of the plugin file in vRO Server
      *
+     * @param target  the server
+     * @param archive the plugin file
+     * @param entry   the package entry
+     * @param name    the package name
      * @return <code>true</code> if success, <code>false</code> otherwise
+     * @throws MojoFailureException In case of error
      */
-    private boolean uninstallPackage() throws MojoFailureException {
-
-        getLog().info("----------------------------");
-        getLog().info("- Delete package requested - ");
-        getLog().info("----------------------------");
-
-        getLog().info(String.format("Deleting plug-in package '%s'...", getPackageName()));
-
-        // Prepare Request
-        RestRequest restRequest = new RestRequest();
-        restRequest.setHttpAuthentication(getServiceUser(), getServicePassword())
-                // Need to set package name with tailing dot (.) character
-                .setResource("/packages/" + getPackageName() + ".")
-                .addQueryParam("option", getDeleteStrategy().getLabel())
-                .setMethod(RestRequest.Method.Delete);
-        // Execute Request
-        RestResponse response = this.restClient.executeServiceRequest(restRequest);
-        // Analyse status code
-        switch (response.getStatusCode()) {
-            case 200:
-                getLog().debug("HTTP 200. Package deleted successfully.");
-                return true;
-            case 204:
-                getLog().debug("HTTP 204. No package found in vRO Server");
-                return true;
-            case 401:
-                getLog().warn("HTTP 401. Authentication is required to delete a package from vRO Server.");
-                return false;
-            case 403:
-                getLog().warn("HTTP 403. The provided user is not authorized to delete a package from vRO Server.");
-                return false;
-            case 404:
-                getLog().warn("HTTP 404. Package not found on vRO Server. Skipping package deletion.");
-                return true;
-            default:
-                getLog().warn("Unknown status code HTTP " + response.getStatusCode() + " returned from vRO Server. Please check if the package has been deleted. Got no idea !");
-                return false;
-        }
-    }
-
-    /**
-     * Install plugin file
+    private boolean importPackage(DeployTarget target, BundleArchive archive, BundleEntry entry, String name) throws MojoFailureException {
+        getLog().info(String.format("Importing package '%s' on '%s'...", name, target));
+        Path packageFile = null;
+        try {
+            packageFile = Files.createTempFile("o11n-" + name + "-", BundleDelta.PACKAGE_SUFFIX);
+            Files.write(packageFile, archive.read(entry));
+
+            // Prepare Request
+            RestRequest restRequest = new RestRequest();
+            restRequest.setHttpAuthentication(getServiceUser(), getServicePassword())
+                    .setResource("/packages")
+                    .addQueryParam("overwrite", "true")
+                    .setMethod(RestRequest.Method.Post)
+                    .addPackageFile(packageFile.toFile());
+            // Execute Request
+            RestResponse response = target.getRestClient().executeServiceRequest(restRequest);
+            // Analyse status code
+            switch (response.getStatusCode()) {
+                case 200:
+                case 201:
+                case 202:
+                case 204:
+                    getLog().debug(String.format("HTTP %d. Package '%s' successfully imported in vRO Server.", response.getStatusCode(), name));
+                    return true;
+                case 401:
+                    getLog().warn("HTTP 401. Authentication is required to import a package into vRO Server.");
+                    return false;
+                case 403:
+                    getLog().warn("HTTP 403. The provided user is not authorized to import a package into vRO Server.");
+                    return false;
+                default:
+                    getLog().warn(String.format("Unknown status code HTTP %d returned from vRO Server. Please check if the package '%s' has been imported.",
+                            response.getStatusCode(), name));
+                    return false;
+            }
+        } catch (IOException e) {
+            logAndThrowFailureException(String.format("Unable to extract package '%s' from plugin file : %s", name, e.getMessage()));
+            return false;
+        } finally {
+            if (packageFile != null) {
+                try {
+                    Files.deleteIfExists(packageFile);
+                } catch (IOException e) {
+                    getLog().debug("Unable to delete " + packageFile, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param digest digest of a deployed plugin file
+     * @return path of the cached copy of this plugin file
+     */
+    private Path deployedFile(String digest) {
+        return deployedFile(digest, getBundle());
+    }
+
+    /**
+     * @param digest digest of a deployed plugin file
+     * @param bundle plugin file type
+     * @return path of the cached copy of this plugin file
+     */
+    private Path deployedFile(String digest, FileBundle bundle) {
+        return Paths.get(getCacheDirectory(), "deployed", digest.replaceAll("[^A-Za-z0-9._-]", "_") + bundle.getFileSuffix());
+    }
+
+    /**
+     * Keep a copy of the deployed plugin file, to compute the delta of the next deploy.
+     * Copies no longer deployed on any server of the history, by this build or another one, are removed.
      *
      * @param pluginFile Path to plugin file
-     * @return <code>true</code> if success, <code>false</code> otherwise
      */
-    private boolean installPlugin(Path pluginFile) throws MojoFailureException {
-
-        getLog().info("------------------");
-        getLog().info("- Install Plugin -");
-        getLog().info("------------------");
-
-        getLog().info(String.format("Installing plugin file '%s'...", getFileName() + getBundle().getFileSuffix()));
-
-        // Prepare Request
-        RestRequest restRequest = new RestRequest();
-        restRequest.setHttpAuthentication(getServiceUser(), getServicePassword())
-                .setResource("/plugins/")
-                .setMethod(RestRequest.Method.Post)
-                .addPluginFile(pluginFile.toFile(), getBundle(), isOverwrite());
-        // Execute Request
-        RestResponse response = this.restClient.executeServiceRequest(restRequest);
-        // Analyse status code
-        switch (response.getStatusCode()) {
-            case 201:
-                getLog().debug("HTTP 201. Plugin successfully installed in vRO Server.");
-                return true;
-            case 204:
-                getLog().debug("HTTP 204. Plugin successfully installed in vRO Server.");
-                return true;
-            case 401:
-                getLog().warn("HTTP 401. Authentication is required to upload a plugin into vRO Server.");
-                return false;
-            case 403:
-                getLog().warn("HTTP 403. The provided user is not authorized to upload a plugin into vRO Server.");
-                return false;
-            case 404:
-                getLog().warn("HTTP 404. Requested resource not found. Please check vRO Server URL configuration and ensure that vRO Server is reachable from the machine running this Maven Mojo.");
-                return false;
-            default:
-                getLog().warn("Unknown status code HTTP " + response.getStatusCode() + " returned from vRO Server. Please check if the plugin has been uploaded. Got no idea !");
-                return false;
-
-        }
-    }
-
-    /**
-     * Restart vRO Server
+    private synchronized void cacheDeployed(Path pluginFile) {
+        Path cached = deployedFile(pluginDigest);
+        try {
+            Files.createDirectories(cached.getParent());
+            if (!Files.isRegularFile(cached)) {
+                Path tmp = Files.createTempFile(cached.getParent(), "deployed-", ".tmp");
+                Files.copy(pluginFile, tmp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmp, cached, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Set<Path> deployed = new HashSet<>();
+            for (String digest : history.values(DeployHistory.LAST_DIGEST)) {
+                for (FileBundle bundle : FileBundle.values()) {
+                    deployed.add(deployedFile(digest, bundle).getFileName());
+                }
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(cached.getParent())) {
+                for (Path file : files) {
+                    // Temp files are copies in progress of other builds
+                    if (!deployed.contains(file.getFileName()) && !file.getFileName().toString().endsWith(".tmp")) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            getLog().warn(String.format("Unable to cache deployed plugin file in '%s' : %s", cached.getParent(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Run <code>smokeWorkflows</code> concurrently on one server and report their outcome
      *
-     * @return <code>true</code> if success, <code>false</code> otherwise
+     * @param restClient RestClient of the server
+     * @param prefix     report keys prefix
+     * @throws MojoFailureException if a workflow does not complete
+     */
+    private void runSmokeWorkflows(RestClient restClient, String prefix) throws MojoFailureException {
+        getLog().info(String.format("Running %d smoke workflow(s)", getSmokeWorkflowIds().size()));
+        List<WorkflowResult> results = new WorkflowRunner(getLog(), restClient, getServiceUser(), getServicePassword())
+                .run(getSmokeWorkflowIds(), this.deadline.cap(TimeUnit.SECONDS.toMillis(getSmokeTimeout())));
+        for (WorkflowResult result : results) {
+            this.report.put(prefix + "smoke." + result.getWorkflowId() + ".state", result.getState())
+                    .put(prefix + "smoke." + result.getWorkflowId() + ".latencyMs", result.getLatency());
+        }
+        boolean success = WorkflowRunner.logResults(getLog(), results);
+        this.report.put(prefix + "smoke", success ? "SUCCESS" : "FAILURE");
+        if (!success) {
+            logAndThrowFailureException("Smoke workflows failed");
+        }
+    }
+
+    /**
+     * Restart the server and wait for it within its restart window, shared with other builds.
+     * The restart is skipped if another build restarted the server after the install.
+     *
+     * @param target      the server
+     * @param installTime end of the plugin install, in milliseconds
+     * @param waitReady   <code>true</code> to wait for the server to be ready again
+     * @param prefix      report keys prefix
+     * @return <code>true</code> if the server is known to be ready
+     * @throws MojoFailureException if the restart fails
+     */
+    private boolean restartInWindow(DeployTarget target, long installTime, boolean waitReady, String prefix) throws MojoFailureException {
+        getLog().info(String.format("Waiting for restart window of vRO service on '%s'...", target));
+        try (RestartLease lease = getRestartCoordinator().acquire(target.getName(), this.deadline.cap(RESTART_LOCK_TIMEOUT))) {
+            long restartTime = lease.getLastRestart();
+            if (restartTime > installTime) {
+                // Restart requested by another build after this install : the plugin is loaded by this restart too
+                getLog().info(String.format("vRO service on '%s' was restarted by another build after this install, skipping restart", target));
+                this.report.put(prefix + "restart", "COALESCED");
+            } else {
+                this.deadline.check("service restart");
+                if (waitReady) {
+                    target.getEngine().prepareRestartWatch();
+                }
+                restartTime = System.currentTimeMillis();
+                if (target.getEngine().restartService()) {
+                    getLog().info("Successfully restart requested vRO service");
+                    lease.recordRestart(restartTime);
+                } else {
+                    logAndThrowFailureException(String.format("Failed to request restart vRO service on '%s'", target));
+                }
+            }
+            //4. Wait for restart
+            if (waitReady) {
+                long waitStart = System.nanoTime();
+                boolean restarted = waitForRestart(target, restartTime);
+                this.metrics.recordRestartWait(target.getServerHost(), TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - waitStart));
+                if (restarted) {
+                    getLog().info(String.format("Successfully restart vRO service on '%s'", target));
+                    this.history.put(target.getName(), DeployHistory.RESTART_DURATION, String.valueOf(System.currentTimeMillis() - restartTime));
+                } else if (target.getEngine().getRestartFailure() != null) {
+                    logAndThrowFailureException(String.format("Failed to restart vRO service on '%s', server log reports :%n%s",
+                            target, target.getEngine().getRestartFailure()));
+                } else {
+                    logAndThrowFailureException(String.format("Failed to restart vRO service on '%s'", target));
+                }
+            }
+        } catch (IOException e) {
+            logAndThrowFailureException(String.format("Unable to coordinate restart of vRO service on '%s' : %s", target, e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logAndThrowFailureException(String.format("Interrupted while waiting for restart window of vRO service on '%s'", target));
+        }
+        return waitReady;
+    }
+
+    /**
+     * Evaluate <code>restartRules</code> against the installed plugin file
+     *
+     * @param target the server
+     * @return the reason of the restart, <code>null</code> if no restart is required
+     * @throws MojoFailureException In case of error
+     */
+    private String restartReason(DeployTarget target) throws MojoFailureException {
+        return restartReason(getRestartRules(), target, isCheckInstalledVersion(),
+                history.get(target.getName(), DeployHistory.LAST_DIGEST), pluginDigest);
+    }
+
+    /**
+     * Evaluate restart rules, in {@link RestartRule} order : the first rule requiring a restart gives the reason
+     *
+     * @param rules          restart rules
+     * @param target         the server, with the state of the install
+     * @param versionChecked <code>true</code> if installed plugin versions were checked
+     * @param lastDigest     digest of the last plugin file deployed on the server, <code>null</code> if unknown
+     * @param pluginDigest   digest of the installed plugin file
+     * @return the reason of the restart, <code>null</code> if no restart is required
+     * @throws MojoFailureException In case of error
+     */
+    static String restartReason(Set<RestartRule> rules, DeployTarget target, boolean versionChecked, String lastDigest,
+                                String pluginDigest) throws MojoFailureException {
+        for (RestartRule rule : rules) {
+            switch (rule) {
+                case ALWAYS:
+                    return "restart rule ALWAYS";
+                case NEW_PLUGIN:
+                    if (target.isNewPlugin()) {
+                        return "new plugin installed";
+                    }
+                    break;
+                case VERSION_CHANGE:
+                    if (target.isVersionChanged()) {
+                        return versionChecked ? "plugin version changed" : "installed plugin version unknown ('checkInstalledVersion' disabled)";
+                    }
+                    break;
+                case CONTENT_CHANGE:
+                    if (lastDigest == null) {
+                        return "no previous deploy of this plugin file recorded for this server";
+                    }
+                    if (!lastDigest.equals(pluginDigest)) {
+                        return "plugin file content changed since last deploy";
+                    }
+                    break;
+                case PENDING_CHANGES:
+                    if (target.getEngine().getServerStatus().hasPendingChanges()) {
+                        return "vRO service reports pending changes";
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Record the installed plugin file in deploy history
+     *
+     * @param target the server
      */
-    private boolean restartService() throws MojoFailureException {
+    private void recordDeploy(DeployTarget target) {
+        history.put(target.getName(), DeployHistory.LAST_DIGEST, pluginDigest);
+        history.put(target.getName(), DeployHistory.LAST_DEPLOY_TIME, String.valueOf(System.currentTimeMillis()));
+        if (!pluginMetadata.isEmpty()) {
+            history.put(target.getName(), DeployHistory.LAST_VERSION, pluginMetadata.get(0).getFullVersion());
+        }
+        history.save();
+    }
+
+    /**
+     * Record the upload rate of the server in deploy history, for deploy plans
+     *
+     * @param target      the server
+     * @param pluginFile  Path to plugin file
+     * @param uploadNanos upload and install duration, in nanoseconds
+     */
+    private void recordUploadRate(DeployTarget target, Path pluginFile, long uploadNanos) {
+        try {
+            long rate = Files.size(pluginFile) * TimeUnit.SECONDS.toNanos(1) / Math.max(1, uploadNanos);
+            history.put(target.getName(), DeployHistory.UPLOAD_RATE, String.valueOf(rate));
+        } catch (IOException e) {
+            getLog().debug("Unable to read plugin file size", e);
+        }
+    }
 
-        getLog().info("-------------------");
-        getLog().info("- Restart Service -");
-        getLog().info("-------------------");
+    /**
+     * Validate plugin file : zip structure, entries CRC and plugin descriptor
+     *
+     * @param pluginFile Path to plugin file
+     * @return the validated plugin file
+     * @throws MojoFailureException if the plugin file is invalid
+     */
+    private BundleArchive validateBundle(Path pluginFile) throws MojoFailureException {
+        getLog().info(String.format("Validating plugin file '%s'...", getFileName() + getBundle().getFileSuffix()));
+        return new BundleValidator(getLog()).validate(pluginFile, getBundle());
+    }
 
-        getLog().info(String.format("Restarting vRO service on host '%s'...", getServerHost()));
+    /**
+     * Read plugin name, version and build number from the plugin file descriptor
+     *
+     * @param pluginFile Path to plugin file
+     * @param archive    the plugin file, if already opened
+     * @return metadata of the plugins in plugin file, empty if they can't be read
+     */
+    private List<BundleMetadata> readMetadata(Path pluginFile, BundleArchive archive) {
+        try {
+            List<BundleMetadata> metadata = new BundleMetadataReader().read(archive != null ? archive : BundleArchive.open(pluginFile), getBundle());
+            for (BundleMetadata plugin : metadata) {
+                getLog().info(String.format("Plugin file contains plugin '%s' version %s", plugin.getName(), plugin.getFullVersion()));
+            }
+            return metadata;
+        } catch (IOException e) {
+            getLog().warn(String.format("Unable to read plugin information from '%s' : %s", pluginFile, e.getMessage()));
+            return Collections.emptyList();
+        }
+    }
 
-        // Prepare Request
-        RestRequest restRequest = new RestRequest();
-        restRequest.setHttpAuthentication(getConfigUser(), getConfigPassword())
-                .setResource("/server/status/restart")
-                .setMethod(RestRequest.Method.Post);
+    /**
+     * Compare plugins of the plugin file with the ones installed in vRO Server
+     *
+     * @param target the server
+     * @return <code>true</code> if the plugin file must be installed, <code>false</code> if it is already installed
+     * @throws MojoFailureException if a downgrade is detected and <code>failOnDowngrade</code> is set
+     *                              or if the plugin file content changed without version change
+     */
+    private boolean checkInstalledVersion(DeployTarget target) throws MojoFailureException {
+        if (pluginMetadata.isEmpty()) {
+            return true;
+        }
 
-        // Execute Request
-        RestResponse response = this.restClient.executeConfigRequest(restRequest);
-        // Extract current status here.
-        String currentStatus = response.getResponseBody();
-        // Analyse status code
-        switch (response.getStatusCode()) {
-            case 200:
-            case 201:
-                getLog().debug(String.format("vRO service status : %s", currentStatus));
-                return true;
-            case 401:
-                getLog().warn("HTTP 401. Authentication is required to restart the vRO service.");
-                return false;
-            case 403:
-                getLog().warn("HTTP 403. The provided user is not authorized to restart the vRO service.");
-                return false;
-            case 404:
-                getLog().warn("HTTP 404. The requested resource was not found. Please check vRO Server URL configuration and ensure that vRO Server is reachable from the machine running this Maven Mojo.");
-                return false;
-            default:
-                getLog().warn("Unknown status code HTTP " + response.getStatusCode() + " returned from vRO Server. Please verify if the vRO service has been restarted. Got no idea !");
-                return false;
+        Map<String, InstalledPlugin> installed = target.getEngine().getInstalledPlugins();
+        if (installed == null) {
+            getLog().warn("Unable to get installed plugins from vRO Server. Skipping version check.");
+            return true;
+        }
+        target.setNewPlugin(false);
+        target.setVersionChanged(false);
+        for (BundleMetadata plugin : pluginMetadata) {
+            InstalledPlugin current = installed.get(plugin.getName());
+            if (current == null) {
+                getLog().info(String.format("Plugin '%s' is not installed in vRO Server '%s'", plugin.getName(), target));
+                target.setNewPlugin(true);
+                continue;
+            }
+            int comparison = BundleMetadata.compareVersions(plugin.getFullVersion(), current.getFullVersion());
+            if (comparison < 0) {
+                String msg = String.format("Plugin '%s' downgrade : installed version %s, plugin file version %s",
+                        plugin.getName(), current.getFullVersion(), plugin.getFullVersion());
+                if (isFailOnDowngrade()) {
+                    logAndThrowFailureException(msg);
+                }
+                getLog().warn(msg);
+                target.setVersionChanged(true);
+            } else if (comparison > 0) {
+                getLog().info(String.format("Plugin '%s' upgrade : installed version %s, plugin file version %s",
+                        plugin.getName(), current.getFullVersion(), plugin.getFullVersion()));
+                target.setVersionChanged(true);
+            } else {
+                getLog().info(String.format("Plugin '%s' version %s is already installed", plugin.getName(), current.getFullVersion()));
+            }
+        }
+        if (target.isNewPlugin() || target.isVersionChanged() || isOverwrite()) {
+            return true;
         }
+        // Same version, but the plugin file was rebuilt with another content : it would never be deployed
+        String lastDigest = history.get(target.getName(), DeployHistory.LAST_DIGEST);
+        if (lastDigest != null && pluginDigest != null && !lastDigest.equals(pluginDigest)) {
+            logAndThrowFailureException(String.format("Plugin file content changed since the last deploy on '%s' but its version did not : "
+                    + "increase the plugin version or build number, or set overwrite to install it", target));
+        }
+        return false;
     }
 
     /**
-     * Wait vRO Server
+     * Smoke check of a node after deploy : the plugins of the plugin file must be reported by vRO with their new version
      *
+     * @param target the server
      * @return <code>true</code> if success, <code>false</code> otherwise
+     * @throws MojoFailureException In case of error
      */
-    private boolean waitForRestart() {
+    private boolean smokeCheck(DeployTarget target) throws MojoFailureException {
+        Map<String, InstalledPlugin> installed = target.getEngine().getInstalledPlugins();
+        if (installed == null) {
+            getLog().warn(String.format("Smoke check : unable to get installed plugins from '%s'", target));
+            return false;
+        }
+        boolean success = true;
+        for (BundleMetadata plugin : pluginMetadata) {
+            InstalledPlugin current = installed.get(plugin.getName());
+            if (current == null || BundleMetadata.compareVersions(plugin.getFullVersion(), current.getFullVersion()) != 0) {
+                getLog().warn(String.format("Smoke check : plugin '%s' version %s expected on '%s', found %s", plugin.getName(),
+                        plugin.getFullVersion(), target, current == null ? "none" : current.getFullVersion()));
+                success = false;
+            }
+        }
+        return success;
+    }
 
-        getLog().info("----------------------------");
-        getLog().info("- Wait for restart Service -");
-        getLog().info("----------------------------");
+    /**
+     * Compute plugin file digest, reusing the cached value if the file has not changed
+     *
+     * @param pluginFile Path to plugin file
+     * @return the plugin file digest
+     * @throws MojoFailureException if the plugin file can't be read
+     */
+    protected String digest(Path pluginFile) throws MojoFailureException {
+        String digest = null;
+        try {
+            digest = new DigestService(getLog(), Paths.get(getCacheDirectory()), isTreeDigest()).digest(pluginFile);
+            getLog().info(String.format("Plugin file digest : %s", digest));
+        } catch (IOException e) {
+            logAndThrowFailureException(String.format("Unable to compute digest of plugin file '%s' : %s", pluginFile, e.getMessage()));
+        }
+        return digest;
+    }
 
-        getLog().info(String.format("Waiting fot restart of vRO service on host '%s'...", getServerHost()));
+    /**
+     * Uninstall plugin packages, concurrently
+     *
+     * @param target the server
+     * @param prefix report keys prefix
+     * @return the packages which could not be deleted
+     */
+    private List<String> uninstallPackages(DeployTarget target, String prefix) throws MojoFailureException {
 
-        for (int i = 0; i < 10; ++i) {
-            try {
-                Thread.sleep(30000);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+        Map<String, PackageUninstaller.Outcome> outcomes = target.getEngine().uninstallPackages(getPackageDeletions(), getDeletePackageConcurrency());
+        List<String> failed = new ArrayList<>();
+        int deleted = 0;
+        for (Map.Entry<String, PackageUninstaller.Outcome> outcome : outcomes.entrySet()) {
+            this.report.put(prefix + "package." + outcome.getKey() + ".delete", outcome.getValue());
+            if (outcome.getValue() == PackageUninstaller.Outcome.FAILED) {
+                failed.add(outcome.getKey());
+            } else if (outcome.getValue() == PackageUninstaller.Outcome.DELETED) {
+                deleted++;
             }
         }
+        getLog().info(String.format("Packages on '%s' : %d deleted, %d not found, %d failed", target, deleted,
+                outcomes.size() - deleted - failed.size(), failed.size()));
+        return failed;
+    }
 
-        getLog().warn("Timeout. Unable to get the vRO configuration server. Please check your vRO server.");
-
-        return true;
+    /**
+     * Wait vRO Server, within the deploy deadline
+     *
+     * @param target      the server
+     * @param restartTime time the restart was requested, in milliseconds
+     * @return <code>true</code> if success, <code>false</code> otherwise
+     */
+    private boolean waitForRestart(DeployTarget target, long restartTime) {
+        long timeout = this.deadline.cap(DeployEngine.RESTART_TIMEOUT);
+        boolean restarted = target.getEngine().waitForRestart(restartTime, timeout);
+        if (!restarted && timeout < DeployEngine.RESTART_TIMEOUT) {
+            getLog().warn(String.format("Deploy deadline exceeded while waiting for restart of vRO service on '%s'.", target));
+        }
+        return restarted;
     }
 
 }
@@ -0,0 +1,144 @@
+package com.github.ptavares.o11n;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a deploy would do on one vRO server, and how long it would take, computed from read-only calls
+ * and the timings of previous deploys.
+ *
+ * @author Patrick Tavares
+ */
+class DeployPlan {
+
+    /**
+     * The server
+     */
+    private final DeployTarget target;
+
+    /**
+     * Install action : <code>INSTALL</code>, <code>DELTA</code>, <code>SKIP</code> or <code>FAIL</code>
+     */
+    private String install;
+
+    /**
+     * Reason of the install action
+     */
+    private String installReason;
+
+    /**
+     * Installed packages which would be deleted
+     */
+    private List<String> deletions = Collections.emptyList();
+
+    /**
+     * Restart action : <code>DISABLED</code>, <code>NOT_REQUIRED</code>, <code>REQUIRED</code> or <code>SKIPPED</code>
+     */
+    private String restart = "SKIPPED";
+
+    /**
+     * Reason of the restart
+     */
+    private String restartReason;
+
+    /**
+     * Bytes to upload
+     */
+    private long bytes;
+
+    /**
+     * Estimated upload and install duration, in milliseconds, <code>-1</code> if unknown
+     */
+    private long uploadMillis = -1;
+
+    /**
+     * Estimated restart duration, in milliseconds, <code>-1</code> if unknown
+     */
+    private long restartMillis = -1;
+
+    DeployPlan(DeployTarget target) {
+        this.target = target;
+    }
+
+    DeployTarget getTarget() {
+        return target;
+    }
+
+    String getInstall() {
+        return install;
+    }
+
+    void setInstall(String install, String installReason) {
+        this.install = install;
+        this.installReason = installReason;
+    }
+
+    List<String> getDeletions() {
+        return deletions;
+    }
+
+    void setDeletions(List<String> deletions) {
+        this.deletions = deletions;
+    }
+
+    String getRestart() {
+        return restart;
+    }
+
+    void setRestart(String restart, String restartReason) {
+        this.restart = restart;
+        this.restartReason = restartReason;
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    void setUploadMillis(long uploadMillis) {
+        this.uploadMillis = uploadMillis;
+    }
+
+    void setRestartMillis(long restartMillis) {
+        this.restartMillis = restartMillis;
+    }
+
+    /**
+     * @return <code>true</code> if a part of the estimated duration is unknown
+     */
+    boolean isEstimatePartial() {
+        return (bytes > 0 && uploadMillis < 0) || ("REQUIRED".equals(restart) && restartMillis < 0);
+    }
+
+    /**
+     * @return estimated duration, in milliseconds, unknown parts excluded
+     */
+    long getEstimatedMillis() {
+        return Math.max(0, uploadMillis) + ("REQUIRED".equals(restart) ? Math.max(0, restartMillis) : 0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder plan = new StringBuilder("'" + target + "' : install " + install);
+        if (installReason != null) {
+            plan.append(" (").append(installReason).append(')');
+        }
+        if (!deletions.isEmpty()) {
+            plan.append(", delete packages ").append(deletions);
+        }
+        plan.append(", restart ").append(restart);
+        if (restartReason != null) {
+            plan.append(" (").append(restartReason).append(')');
+        }
+        if (bytes > 0) {
+            plan.append(", upload ").append(bytes / 1024).append(" KB in ").append(uploadMillis < 0 ? "unknown time" : "~" + uploadMillis / 1000 + " s");
+        }
+        if ("REQUIRED".equals(restart)) {
+            plan.append(", restart in ").append(restartMillis < 0 ? "unknown time" : "~" + restartMillis / 1000 + " s");
+        }
+        return plan.toString();
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.ptavares.o11n;
+
+import com.github.ptavares.o11n.engine.DeployEngine;
+import com.github.ptavares.o11n.rest.RestClient;
+import com.github.ptavares.o11n.state.DeployHistory;
+
+import java.io.IOException;
+
+/**
+ * One vRO server to deploy to, with its {@link DeployEngine} and the state of the current deploy on this server.
+ *
+ * @author Patrick Tavares
+ */
+class DeployTarget {
+
+    /**
+     * vRO Server Host or IP
+     */
+    private final String serverHost;
+
+    /**
+     * vRO Plugin Service REST API Port
+     */
+    private final Integer servicePort;
+
+    /**
+     * vRO Config Service REST API Port
+     */
+    private final Integer configPort;
+
+    /**
+     * Deploy operations on this server
+     */
+    private final DeployEngine engine;
+
+    /**
+     * <code>true</code> if at least one plugin of the plugin file is not installed yet on this server
+     */
+    private boolean newPlugin;
+
+    /**
+     * <code>true</code> if at least one plugin of the plugin file is installed with another version on this server.
+     * Stays <code>true</code> when installed versions are unknown.
+     */
+    private boolean versionChanged = true;
+
+    /**
+     * Constructor
+     *
+     * @param serverHost  vRO Server Host or IP
+     * @param servicePort vRO Plugin Service REST API Port
+     * @param configPort  vRO Config Service REST API Port
+     * @param engine      deploy operations on this server
+     */
+    DeployTarget(String serverHost, Integer servicePort, Integer configPort, DeployEngine engine) {
+        this.serverHost = serverHost;
+        this.servicePort = servicePort;
+        this.configPort = configPort;
+        this.engine = engine;
+    }
+
+    /**
+     * Reset the deploy state, before a new deploy
+     */
+    void reset() {
+        this.newPlugin = false;
+        this.versionChanged = true;
+    }
+
+    /**
+     * @return the name of this target in {@link DeployHistory}
+     */
+    String getName() {
+        return DeployHistory.target(serverHost, servicePort);
+    }
+
+    String getServerHost() {
+        return serverHost;
+    }
+
+    Integer getServicePort() {
+        return servicePort;
+    }
+
+    Integer getConfigPort() {
+        return configPort;
+    }
+
+    DeployEngine getEngine() {
+        return engine;
+    }
+
+    RestClient getRestClient() {
+        return engine.getRestClient();
+    }
+
+    boolean isNewPlugin() {
+        return newPlugin;
+    }
+
+    void setNewPlugin(boolean newPlugin) {
+        this.newPlugin = newPlugin;
+    }
+
+    boolean isVersionChanged() {
+        return versionChanged;
+    }
+
+    void setVersionChanged(boolean versionChanged) {
+        this.versionChanged = versionChanged;
+    }
+
+    /**
+     * Close the {@link RestClient} of this target
+     *
+     * @throws IOException In case of error
+     */
+    void close() throws IOException {
+        engine.getRestClient().close();
+    }
+
+    @Override
+    public String toString() {
+        return serverHost;
+    }
+}
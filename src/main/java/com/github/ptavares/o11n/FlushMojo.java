@@ -0,0 +1,192 @@
+package com.github.ptavares.o11n;
+
+import com.github.ptavares.o11n.engine.DeployEngine;
+import com.github.ptavares.o11n.rest.RestClient;
+import com.github.ptavares.o11n.rest.ServerUnreachableException;
+import com.github.ptavares.o11n.spool.DeploySpool;
+import com.github.ptavares.o11n.spool.SpoolEntry;
+import com.github.ptavares.o11n.state.DeployHistory;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mojo which deploys the plugin files spooled by the deploy goal when their vRO server was unreachable.
+ * <p>
+ * Spooled deploys run concurrently, up to <code>flushConcurrency</code> servers at the same time. A server still unreachable
+ * is retried with an increasing delay until <code>flushTimeout</code>, and its deploy stays spooled if it never answers.
+ * Credentials are the ones of the plugin configuration.
+ *
+ * @author Patrick Tavares
+ */
+@Mojo(name = "flush")
+public class FlushMojo extends AbstractO11nMojo {
+
+    /**
+     * Delay before the first retry on an unreachable server, in milliseconds, doubled on each retry
+     */
+    private static final long INITIAL_BACKOFF = 5000;
+
+    /**
+     * Max delay between two attempts on an unreachable server, in milliseconds
+     */
+    private static final long MAX_BACKOFF = 60000;
+
+    /**
+     * Max time to wait for the restart window of a server, in milliseconds
+     */
+    private static final long RESTART_LOCK_TIMEOUT = 2 * DeployEngine.RESTART_TIMEOUT;
+
+    /**
+     * Outcome of a spooled deploy attempt
+     */
+    private enum Outcome {
+        DONE, UNREACHABLE, FAILURE
+    }
+
+    private DeploySpool spool;
+
+    private DeployHistory history;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        // first check all params
+        checkParams();
+        if (getLog().isDebugEnabled()) {
+            getLog().debug("Starting o11n-flush with params :");
+            getLog().debug(" - spoolDirectory : " + getSpoolDirectory());
+            getLog().debug(" - flushConcurrency : " + getFlushConcurrency());
+            getLog().debug(" - flushTimeout : " + getFlushTimeout());
+            getLog().debug(" - serviceUser : " + getServiceUser());
+            getLog().debug(" - configUser : " + getConfigUser());
+        }
+
+        spool = new DeploySpool(getLog(), Paths.get(getSpoolDirectory()));
+        history = new DeployHistory(getLog(), Paths.get(getCacheDirectory()));
+        List<SpoolEntry> entries = null;
+        try {
+            entries = spool.list();
+        } catch (IOException e) {
+            logAndThrowFailureException(String.format("Unable to read spool '%s' : %s", getSpoolDirectory(), e.getMessage()));
+        }
+        if (entries.isEmpty()) {
+            getLog().info(String.format("No spooled deploy in '%s'", getSpoolDirectory()));
+            return;
+        }
+        getLog().info(String.format("Flushing %d spooled deploy(s) from '%s'", entries.size(), getSpoolDirectory()));
+
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(getFlushTimeout());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(entries.size(), getFlushConcurrency()));
+        List<String> pending = new ArrayList<>();
+        try {
+            Map<SpoolEntry, Future<Outcome>> futures = new LinkedHashMap<>();
+            for (final SpoolEntry entry : entries) {
+                futures.put(entry, executor.submit(() -> flush(entry, deadline)));
+            }
+            for (Map.Entry<SpoolEntry, Future<Outcome>> future : futures.entrySet()) {
+                Outcome outcome = future.getValue().get();
+                if (outcome != Outcome.DONE) {
+                    pending.add(future.getKey().getServerHost() + " (" + future.getKey().getLastError() + ")");
+                }
+            }
+        } catch (ExecutionException e) {
+            logAndThrowFailureException("Unable to flush spooled deploys : " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logAndThrowFailureException("Flush interrupted");
+        } finally {
+            executor.shutdownNow();
+            history.save();
+        }
+        if (!pending.isEmpty()) {
+            logAndThrowFailureException(String.format("Spooled deploy(s) still pending on %s", pending));
+        }
+    }
+
+    /**
+     * Run a spooled deploy, retrying while its server is unreachable, and update the spool
+     *
+     * @param entry    the spooled deploy
+     * @param deadline time to stop retrying, in milliseconds
+     * @return the outcome of the last attempt
+     * @throws IOException           if the spool can't be written
+     * @throws InterruptedException if interrupted while waiting to retry
+     */
+    private Outcome flush(SpoolEntry entry, long deadline) throws IOException, InterruptedException {
+        long backoff = INITIAL_BACKOFF;
+        while (true) {
+            Outcome outcome;
+            String error = null;
+            try {
+                outcome = deploy(entry);
+            } catch (ServerUnreachableException e) {
+                outcome = Outcome.UNREACHABLE;
+                error = e.getMessage();
+            } catch (MojoFailureException e) {
+                outcome = Outcome.FAILURE;
+                error = e.getMessage();
+            }
+            if (outcome == Outcome.DONE) {
+                if (!spool.remove(entry)) {
+                    getLog().info(String.format("A newer plugin file was spooled for '%s' meanwhile, keeping it", entry.getServerHost()));
+                }
+                return outcome;
+            }
+            spool.update(entry.recordFailure(error));
+            if (outcome == Outcome.FAILURE || System.currentTimeMillis() + backoff > deadline) {
+                getLog().warn(String.format("Spooled deploy on '%s' failed after %d attempt(s) : %s", entry.getServerHost(), entry.getAttempts(), error));
+                return outcome;
+            }
+            getLog().info(String.format("vRO server '%s' still unreachable, retrying in %d s", entry.getServerHost(), TimeUnit.MILLISECONDS.toSeconds(backoff)));
+            Thread.sleep(backoff);
+            backoff = Math.min(2 * backoff, MAX_BACKOFF);
+        }
+    }
+
+    /**
+     * Install the spooled plugin file, then restart the server once in its restart window if requested
+     *
+     * @param entry the spooled deploy
+     * @return {@link Outcome#DONE}
+     * @throws MojoFailureException In case of error, {@link ServerUnreachableException} if the server can't be reached
+     */
+    private Outcome deploy(SpoolEntry entry) throws MojoFailureException {
+        Path pluginFile = Paths.get(entry.getPluginFile());
+        if (!Files.isRegularFile(pluginFile)) {
+            throw new MojoFailureException("Spooled plugin file '" + pluginFile + "' not found.");
+        }
+        String target = DeployHistory.target(entry.getServerHost(), entry.getServicePort());
+        try (RestClient restClient = newRestClient(entry.getServerHost(), entry.getServicePort(), entry.getConfigPort())) {
+            DeployEngine engine = newDeployEngine(restClient);
+            if (!engine.installPlugin(pluginFile, entry.getBundle(), entry.isOverwrite())) {
+                throw new MojoFailureException(String.format("Failed to install spooled plugin file on '%s'", entry.getServerHost()));
+            }
+            long installTime = System.currentTimeMillis();
+            getLog().info(String.format("Successfully install spooled plugin file on '%s', spooled at %tc", entry.getServerHost(), entry.getSpoolTime()));
+            history.put(target, DeployHistory.LAST_DIGEST, entry.getDigest());
+            history.put(target, DeployHistory.LAST_DEPLOY_TIME, String.valueOf(installTime));
+
+            if (entry.isRestartService()) {
+                engine.restartInWindow(getRestartCoordinator(), target, RESTART_LOCK_TIMEOUT, installTime,
+                        entry.isWaitForRestart() ? DeployEngine.RESTART_TIMEOUT : 0);
+            }
+        } catch (IOException e) {
+            throw new MojoFailureException(String.format("Unable to deploy spooled plugin file on '%s' : %s", entry.getServerHost(), e.getMessage()));
+        }
+        return Outcome.DONE;
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.ptavares.o11n;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Mojo which prints what the deploy goal would do on each configured vRO Server : install, packages deletion and restart,
+ * with the bytes to upload and the estimated duration from the timings of previous deploys.
+ * <p>
+ * Servers are probed concurrently with read-only calls, nothing is installed, deleted or restarted.
+ *
+ * @author Patrick Tavares
+ */
+@Mojo(name = "plan")
+public class PlanMojo extends DeployMojo {
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        // first check all params
+        checkParams();
+        // Log params
+        logParams();
+
+        List<Path> pluginFiles = getPluginFiles();
+        try {
+            for (Path pluginFile : pluginFiles) {
+                planFile(pluginFile);
+            }
+        } finally {
+            closeRestClient();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.ptavares.o11n;
+
+import com.github.ptavares.o11n.rest.RestClient;
+import com.github.ptavares.o11n.workflow.WorkflowResult;
+import com.github.ptavares.o11n.workflow.WorkflowRunner;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mojo which runs the configured <code>smokeWorkflows</code> on each configured vRO Server,
+ * and fails if one of them does not complete before <code>smokeTimeout</code>.
+ *
+ * @author Patrick Tavares
+ */
+@Mojo(name = "smoke")
+public class SmokeMojo extends AbstractO11nMojo {
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        // first check all params
+        checkParams();
+        if (getLog().isDebugEnabled()) {
+            getLog().debug("Starting o11n-smoke with params :");
+            getLog().debug(" - serverHost : " + getServerHost());
+            getLog().debug(" - clusterHosts : " + getClusterHosts());
+            getLog().debug(" - servicePort : " + getServicePort());
+            getLog().debug(" - serviceUser : " + getServiceUser());
+            getLog().debug(" - smokeWorkflows : " + getSmokeWorkflows());
+            getLog().debug(" - smokeTimeout : " + getSmokeTimeout());
+        }
+        if (getSmokeWorkflowIds().isEmpty()) {
+            logAndThrowFailureException(String.format("Error : '%s' param was not defined", "smokeWorkflows"));
+        }
+
+        boolean success = true;
+        for (String host : getServerHosts()) {
+            try (RestClient restClient = newRestClient(host)) {
+                getLog().info(String.format("Running %d smoke workflow(s) on '%s'", getSmokeWorkflowIds().size(), host));
+                List<WorkflowResult> results = new WorkflowRunner(getLog(), restClient, getServiceUser(), getServicePassword())
+                        .run(getSmokeWorkflowIds(), TimeUnit.SECONDS.toMillis(getSmokeTimeout()));
+                success &= WorkflowRunner.logResults(getLog(), results);
+            } catch (IOException e) {
+                getLog().debug("Error while closing RestClient", e);
+            }
+        }
+        if (!success) {
+            logAndThrowFailureException("Smoke workflows failed");
+        }
+    }
+}
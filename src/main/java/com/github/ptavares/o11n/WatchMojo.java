@@ -0,0 +1,168 @@
+package com.github.ptavares.o11n;
+
+import com.github.ptavares.o11n.state.DeployHistory;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mojo which watches the plugin file directory and deploys the plugin file to the configured vRO Server
+ * each time it is rebuilt, until the build is interrupted (Ctrl+C).
+ * <p>
+ * The same {@link com.github.ptavares.o11n.rest.RestClient} and its connections are reused for all deploys.
+ * Plugin files with the same content as the last deployed one are skipped.
+ *
+ * @author Patrick Tavares
+ */
+@Mojo(name = "watch")
+public class WatchMojo extends DeployMojo {
+
+    /**
+     * Quiet period, in milliseconds, the plugin file must stay unchanged before it is deployed.
+     * Avoids deploying a plugin file which is still being written by another build.
+     * Default value : <code>1500</code>
+     */
+    @Parameter(required = false, property = "o11nPlugin.watchDebounce", defaultValue = "1500")
+    private long watchDebounce;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        // first check all params
+        checkParams();
+        // Log params
+        logParams();
+        getLog().debug(" - watchDebounce : " + watchDebounce);
+
+        Path pluginFile = getPluginFile().toAbsolutePath();
+        Path directory = pluginFile.getParent();
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            register(watchService, directory);
+            getLog().info(String.format("Watching '%s' for changes, press Ctrl+C to stop", pluginFile));
+
+            // Deploy current plugin file, if any
+            if (Files.isRegularFile(pluginFile)) {
+                deployIfChanged(pluginFile);
+            }
+            while (!Thread.currentThread().isInterrupted()) {
+                if (waitForChange(watchService, pluginFile)) {
+                    deployIfChanged(pluginFile);
+                }
+            }
+        } catch (IOException e) {
+            logAndThrowFailureException(String.format("Unable to watch directory '%s' : %s", directory, e.getMessage()));
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+            getLog().info("Watch interrupted");
+        } finally {
+            closeRestClient();
+        }
+    }
+
+    /**
+     * Block until the plugin file is created or modified, then until it stays unchanged during <code>watchDebounce</code>.
+     *
+     * @param watchService the directory watch service
+     * @param pluginFile   the plugin file
+     * @return <code>true</code> if the plugin file changed and is ready to be deployed
+     * @throws IOException          if the directory can't be watched again once deleted
+     * @throws InterruptedException if the watch is interrupted
+     */
+    private boolean waitForChange(WatchService watchService, Path pluginFile) throws IOException, InterruptedException {
+        if (!pollEvents(watchService, watchService.take(), pluginFile)) {
+            return false;
+        }
+        // Debounce : wait for a quiet period without any event on the plugin file
+        long lastSize = -1;
+        while (true) {
+            WatchKey key = watchService.poll(watchDebounce, TimeUnit.MILLISECONDS);
+            if (key != null) {
+                pollEvents(watchService, key, pluginFile);
+                continue;
+            }
+            long size = size(pluginFile);
+            if (size > 0 && size == lastSize) {
+                return true;
+            }
+            if (size < 0) {
+                // deleted after being modified (ie. mvn clean)
+                return false;
+            }
+            lastSize = size;
+        }
+    }
+
+    /**
+     * Consume the events of a key. If the watched directory was deleted, it is re-created and watched again.
+     *
+     * @return <code>true</code> if one of the events is about the plugin file
+     * @throws IOException if the directory can't be watched again once deleted
+     */
+    private boolean pollEvents(WatchService watchService, WatchKey key, Path pluginFile) throws IOException {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            // OVERFLOW events have no context : consider the plugin file may have changed
+            changed |= event.context() == null || pluginFile.getFileName().equals(event.context());
+        }
+        if (!key.reset()) {
+            // Directory deleted (ie. mvn clean) : the key is invalid and would never receive events again
+            getLog().warn(String.format("Watched directory '%s' was deleted, watching it again", pluginFile.getParent()));
+            register(watchService, pluginFile.getParent());
+            // The plugin file may have been rebuilt before the directory was watched again
+            changed |= Files.isRegularFile(pluginFile);
+        }
+        return changed;
+    }
+
+    /**
+     * Create the directory if needed and watch its plugin file changes
+     */
+    private static void register(WatchService watchService, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.isRegularFile(file) ? Files.size(file) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Deploy the plugin file, unless it was already deployed. Failures are logged and the watch goes on.
+     *
+     * @param pluginFile the plugin file
+     */
+    private void deployIfChanged(Path pluginFile) {
+        long start = System.nanoTime();
+        try {
+            String digest = digest(pluginFile);
+            String lastDigest = new DeployHistory(getLog(), Paths.get(getCacheDirectory()))
+                    .get(DeployHistory.target(getServerHost(), getServicePort()), DeployHistory.LAST_DIGEST);
+            if (digest.equals(lastDigest)) {
+                getLog().info(String.format("Plugin file '%s' unchanged since last deploy, skipping", pluginFile.getFileName()));
+                return;
+            }
+            deployFile(pluginFile);
+            getLog().info(String.format("Plugin file '%s' deployed in %d ms", pluginFile.getFileName(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        } catch (MojoFailureException e) {
+            getLog().error(String.format("Deploy of '%s' failed, waiting for next change : %s", pluginFile.getFileName(), e.getMessage()));
+        }
+    }
+}
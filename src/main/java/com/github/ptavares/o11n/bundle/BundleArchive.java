@@ -0,0 +1,465 @@
+package com.github.ptavares.o11n.bundle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only view of a bundle zip file (.dar or .vmoapp).
+ * <p>
+ * Only the central directory is parsed when the archive is opened, with positional reads of the file : entry data is
+ * read lazily, and each call opens and closes its own channel, except entry verification which reads through the channel
+ * of its verify pass, see {@link #openChannel()}. No file handle nor memory mapping outlives a call or a pass,
+ * so that the bundle file can be replaced or deleted meanwhile, even on Windows.
+ * Instances are safe to share between threads.
+ *
+ * @author Patrick Tavares
+ */
+public class BundleArchive {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+    /**
+     * Size of the buffers used to inflate entries
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Max uncompressed size of an entry read in memory
+     */
+    static final int MAX_READ_SIZE = 256 * 1024 * 1024;
+
+    /**
+     * Extra byte sometimes required by a nowrap {@link Inflater} at the end of the data
+     */
+    private static final byte[] DUMMY_INPUT = new byte[1];
+
+    /**
+     * Bundle file, <code>null</code> for an in-memory archive
+     */
+    private final Path file;
+
+    /**
+     * Content of an in-memory archive, <code>null</code> for a bundle file
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Archive size in bytes
+     */
+    private final long size;
+
+    /**
+     * Entries, indexed by name, in central directory order
+     */
+    private final Map<String, BundleEntry> entries;
+
+    private BundleArchive(Path file, ByteBuffer buffer, long size) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        this.size = size;
+        this.entries = Collections.unmodifiableMap(readCentralDirectory());
+    }
+
+    /**
+     * Read the central directory of a bundle file
+     *
+     * @param file the bundle file
+     * @return the opened {@link BundleArchive}
+     * @throws IOException if the file can't be read or is not a valid zip archive
+     */
+    public static BundleArchive open(Path file) throws IOException {
+        return new BundleArchive(file, null, Files.size(file));
+    }
+
+    /**
+     * Read the central directory of an in-memory archive (ie. a .dar nested in a .vmoapp)
+     *
+     * @param content the archive content
+     * @return the opened {@link BundleArchive}
+     * @throws IOException if the content is not a valid zip archive
+     */
+    public static BundleArchive wrap(ByteBuffer content) throws IOException {
+        return new BundleArchive(null, content.slice(), content.remaining());
+    }
+
+    /**
+     * @return all entries of this archive, in central directory order
+     */
+    public List<BundleEntry> getEntries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * @param name the entry name
+     * @return the entry, <code>null</code> if not found
+     */
+    public BundleEntry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * @return the archive size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the raw (possibly compressed) data of an entry, without any copy for an in-memory archive
+     *
+     * @param entry the entry
+     * @return a read-only buffer over the entry data
+     * @throws IOException if the local file header is corrupted, or the entry is too large to be read in memory
+     */
+    public ByteBuffer getRawData(BundleEntry entry) throws IOException {
+        if (entry.getCompressedSize() > Integer.MAX_VALUE) {
+            throw new IOException(String.format("Entry '%s' is too large to be read in memory", entry.getName()));
+        }
+        try (FileChannel channel = openChannel()) {
+            long start = dataOffset(channel, entry);
+            ByteBuffer data;
+            if (channel == null) {
+                data = buffer.duplicate();
+                data.limit((int) (start + entry.getCompressedSize())).position((int) start);
+                data = data.slice();
+            } else {
+                data = ByteBuffer.allocate((int) entry.getCompressedSize());
+                read(channel, start, data);
+                data.flip();
+            }
+            return data.asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * Read and uncompress the whole content of an entry. Use only for small entries (descriptors, nested bundles).
+     * <p>
+     * The size stored in the archive is not trusted for allocation : the content buffer grows with the data actually
+     * uncompressed, up to this size and {@link #MAX_READ_SIZE}.
+     *
+     * @param entry the entry
+     * @return the uncompressed content
+     * @throws IOException if the entry can't be read, is corrupted, or is larger than {@link #MAX_READ_SIZE}
+     */
+    public byte[] read(BundleEntry entry) throws IOException {
+        if (entry.getSize() > MAX_READ_SIZE) {
+            throw new IOException(String.format("Entry '%s' is too large to be read in memory", entry.getName()));
+        }
+        int size = (int) entry.getSize();
+        byte[] content;
+        try (FileChannel channel = openChannel()) {
+            EntryData data = new EntryData(channel, entry);
+            if (entry.getMethod() == BundleEntry.STORED) {
+                // Stored data is in the archive bounds, checked by EntryData
+                if (entry.getCompressedSize() != size) {
+                    throw new IOException(String.format("Size mismatch for stored entry '%s'", entry.getName()));
+                }
+                content = new byte[size];
+                data.read(content, 0, size);
+            } else if (entry.getMethod() == BundleEntry.DEFLATED) {
+                content = new byte[Math.min(size, BUFFER_SIZE)];
+                Inflater inflater = new Inflater(true);
+                try {
+                    byte[] input = new byte[(int) Math.min(BUFFER_SIZE, entry.getCompressedSize() + 1)];
+                    boolean dummy = false;
+                    int written = 0;
+                    while (written < size && !inflater.finished()) {
+                        if (written == content.length) {
+                            content = Arrays.copyOf(content, (int) Math.min(size, 2L * content.length));
+                        }
+                        if (inflater.needsInput() && feed(inflater, data, input) < 0) {
+                            if (dummy) {
+                                throw new IOException(String.format("Truncated data for entry '%s'", entry.getName()));
+                            }
+                            // nowrap inflater may need one extra dummy byte to finish
+                            inflater.setInput(DUMMY_INPUT);
+                            dummy = true;
+                        }
+                        int length = inflater.inflate(content, written, content.length - written);
+                        if (length == 0 && inflater.needsDictionary()) {
+                            throw new IOException(String.format("Corrupted data for entry '%s'", entry.getName()));
+                        }
+                        written += length;
+                    }
+                    if (written != size) {
+                        throw new IOException(String.format("Size mismatch for entry '%s' : expected %d bytes, got %d", entry.getName(), size, written));
+                    }
+                } catch (DataFormatException e) {
+                    throw new IOException(String.format("Corrupted data for entry '%s'", entry.getName()), e);
+                } finally {
+                    inflater.end();
+                }
+            } else {
+                throw new IOException(String.format("Unsupported compression method %d for entry '%s'", entry.getMethod(), entry.getName()));
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        if (crc.getValue() != entry.getCrc()) {
+            throw new IOException(String.format("CRC mismatch for entry '%s'", entry.getName()));
+        }
+        return content;
+    }
+
+    /**
+     * Check that the content of an entry matches the CRC-32 and size stored in the central directory.
+     * The channel and buffers are supplied by the caller, so that one pass can verify many entries without opening
+     * the file again, and one thread without allocating.
+     *
+     * @param channel  channel of the verify pass, see {@link #openChannel()}, may be shared by threads
+     * @param entry    the entry to verify
+     * @param inflater inflater to use, reset before use
+     * @param input    input buffer
+     * @param output   output buffer
+     * @param crc      CRC to use, reset before use
+     * @throws IOException if the entry is corrupted
+     */
+    void verify(FileChannel channel, BundleEntry entry, Inflater inflater, byte[] input, byte[] output, CRC32 crc) throws IOException {
+        crc.reset();
+        long uncompressed = 0;
+        EntryData data = new EntryData(channel, entry);
+        if (entry.getMethod() == BundleEntry.STORED) {
+            int length;
+            while ((length = data.read(input, 0, input.length)) > 0) {
+                crc.update(input, 0, length);
+                uncompressed += length;
+            }
+        } else {
+            inflater.reset();
+            boolean dummy = false;
+            try {
+                while (!inflater.finished()) {
+                    if (inflater.needsInput() && feed(inflater, data, input) < 0) {
+                        if (dummy) {
+                            throw new IOException(String.format("Truncated data for entry '%s'", entry.getName()));
+                        }
+                        inflater.setInput(DUMMY_INPUT);
+                        dummy = true;
+                    }
+                    int length = inflater.inflate(output);
+                    if (length == 0 && inflater.needsDictionary()) {
+                        throw new IOException(String.format("Corrupted data for entry '%s'", entry.getName()));
+                    }
+                    crc.update(output, 0, length);
+                    uncompressed += length;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(String.format("Corrupted data for entry '%s'", entry.getName()), e);
+            }
+        }
+        if (uncompressed != entry.getSize()) {
+            throw new IOException(String.format("Size mismatch for entry '%s' : expected %d bytes, got %d", entry.getName(), entry.getSize(), uncompressed));
+        }
+        if (crc.getValue() != entry.getCrc()) {
+            throw new IOException(String.format("CRC mismatch for entry '%s'", entry.getName()));
+        }
+    }
+
+    /**
+     * Feed the inflater with the next chunk of data
+     *
+     * @return number of bytes given to the inflater, <code>-1</code> if there is no more data
+     */
+    private static int feed(Inflater inflater, EntryData data, byte[] input) throws IOException {
+        int length = data.read(input, 0, input.length);
+        if (length <= 0) {
+            return -1;
+        }
+        inflater.setInput(input, 0, length);
+        return length;
+    }
+
+    /**
+     * Open a channel on the bundle file. Only positional reads are done, so the channel may be shared by threads.
+     *
+     * @return a channel on the bundle file, to close by the caller, <code>null</code> for an in-memory archive
+     * @throws IOException if the file can't be opened
+     */
+    FileChannel openChannel() throws IOException {
+        return file == null ? null : FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    /**
+     * Fill <code>target</code> with the archive bytes at <code>position</code>
+     *
+     * @param channel channel on the bundle file, <code>null</code> for an in-memory archive
+     */
+    private void read(FileChannel channel, long position, ByteBuffer target) throws IOException {
+        if (position < 0 || position + target.remaining() > size) {
+            throw new IOException("Read out of archive bounds, the file is probably truncated");
+        }
+        if (channel == null) {
+            ByteBuffer source = buffer.duplicate();
+            source.limit((int) position + target.remaining()).position((int) position);
+            target.put(source);
+            return;
+        }
+        while (target.hasRemaining()) {
+            int length = channel.read(target, position);
+            if (length < 0) {
+                throw new IOException("Unexpected end of file, the file was truncated while read");
+            }
+            position += length;
+        }
+    }
+
+    /**
+     * Check the local file header of an entry
+     *
+     * @return position of the entry data
+     */
+    private long dataOffset(FileChannel channel, BundleEntry entry) throws IOException {
+        long offset = entry.getLocalHeaderOffset();
+        if (offset + LOCAL_HEADER_SIZE > size) {
+            throw new IOException(String.format("Bad local file header for entry '%s'", entry.getName()));
+        }
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        read(channel, offset, header);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new IOException(String.format("Bad local file header for entry '%s'", entry.getName()));
+        }
+        int nameLength = header.getShort(26) & 0xFFFF;
+        int extraLength = header.getShort(28) & 0xFFFF;
+        long start = offset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+        if (start + entry.getCompressedSize() > size) {
+            throw new IOException(String.format("Truncated data for entry '%s'", entry.getName()));
+        }
+        return start;
+    }
+
+    /**
+     * Locate and parse the central directory. Every header field is checked against the central directory bounds,
+     * so that a corrupted archive is reported as an {@link IOException}.
+     */
+    private Map<String, BundleEntry> readCentralDirectory() throws IOException {
+        if (size < END_OF_CENTRAL_DIRECTORY_SIZE) {
+            throw new IOException("File is too small to be a zip archive");
+        }
+        try (FileChannel channel = openChannel()) {
+            ByteBuffer tail = ByteBuffer.allocate((int) Math.min(size, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            long tailOffset = size - tail.capacity();
+            read(channel, tailOffset, tail);
+            int eocd = findEndOfCentralDirectory(tail);
+            int count = tail.getShort(eocd + 10) & 0xFFFF;
+            long directorySize = tail.getInt(eocd + 12) & ZIP64_MAGIC;
+            long offset = tail.getInt(eocd + 16) & ZIP64_MAGIC;
+            if (count == 0xFFFF || directorySize == ZIP64_MAGIC || offset == ZIP64_MAGIC) {
+                throw new IOException("ZIP64 archives are not supported");
+            }
+            if (offset + directorySize > tailOffset + eocd) {
+                throw new IOException("Central directory is out of archive bounds, the file is probably truncated");
+            }
+            if ((long) count * CENTRAL_HEADER_SIZE > directorySize) {
+                throw new IOException(String.format("Central directory is too small for %d entries", count));
+            }
+
+            ByteBuffer directory = ByteBuffer.allocate((int) directorySize).order(ByteOrder.LITTLE_ENDIAN);
+            read(channel, offset, directory);
+            Map<String, BundleEntry> result = new LinkedHashMap<>(count * 2);
+            int position = 0;
+            byte[] nameBytes = new byte[256];
+            for (int i = 0; i < count; i++) {
+                if (position + CENTRAL_HEADER_SIZE > directory.limit() || directory.getInt(position) != CENTRAL_HEADER_SIGNATURE) {
+                    throw new IOException(String.format("Bad central directory header for entry #%d", i));
+                }
+                int flags = directory.getShort(position + 8) & 0xFFFF;
+                int method = directory.getShort(position + 10) & 0xFFFF;
+                long crc = directory.getInt(position + 16) & ZIP64_MAGIC;
+                long compressedSize = directory.getInt(position + 20) & ZIP64_MAGIC;
+                long uncompressedSize = directory.getInt(position + 24) & ZIP64_MAGIC;
+                int nameLength = directory.getShort(position + 28) & 0xFFFF;
+                int extraLength = directory.getShort(position + 30) & 0xFFFF;
+                int commentLength = directory.getShort(position + 32) & 0xFFFF;
+                long localHeaderOffset = directory.getInt(position + 42) & ZIP64_MAGIC;
+                if (compressedSize == ZIP64_MAGIC || uncompressedSize == ZIP64_MAGIC || localHeaderOffset == ZIP64_MAGIC) {
+                    throw new IOException("ZIP64 archives are not supported");
+                }
+                int next = position + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+                if (next > directory.limit()) {
+                    throw new IOException(String.format("Bad central directory header for entry #%d : name, extra field or comment out of bounds", i));
+                }
+                if (localHeaderOffset + LOCAL_HEADER_SIZE > offset) {
+                    throw new IOException(String.format("Bad local file header offset for entry #%d", i));
+                }
+                if (nameBytes.length < nameLength) {
+                    nameBytes = new byte[nameLength];
+                }
+                directory.position(position + CENTRAL_HEADER_SIZE);
+                directory.get(nameBytes, 0, nameLength);
+                String name = new String(nameBytes, 0, nameLength, StandardCharsets.UTF_8);
+                result.put(name, new BundleEntry(name, method, flags, crc, compressedSize, uncompressedSize, localHeaderOffset));
+                position = next;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Scan backwards for the end of central directory record
+     *
+     * @param tail the end of the archive, up to the max comment size
+     * @return position of the record in <code>tail</code>
+     */
+    private static int findEndOfCentralDirectory(ByteBuffer tail) throws IOException {
+        for (int position = tail.limit() - END_OF_CENTRAL_DIRECTORY_SIZE; position >= 0; position--) {
+            if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                return position;
+            }
+        }
+        throw new IOException("End of central directory not found, the file is truncated or is not a zip archive");
+    }
+
+    /**
+     * Sequential reader of the raw data of an entry
+     */
+    private final class EntryData {
+
+        private final FileChannel channel;
+
+        private long position;
+
+        private final long end;
+
+        EntryData(FileChannel channel, BundleEntry entry) throws IOException {
+            this.channel = channel;
+            this.position = dataOffset(channel, entry);
+            this.end = position + entry.getCompressedSize();
+        }
+
+        /**
+         * @return number of bytes read, <code>-1</code> if there is no more data
+         */
+        int read(byte[] target, int offset, int length) throws IOException {
+            int count = (int) Math.min(length, end - position);
+            if (count <= 0) {
+                return -1;
+            }
+            BundleArchive.this.read(channel, position, ByteBuffer.wrap(target, offset, count));
+            position += count;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.ptavares.o11n.bundle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Difference between two builds of a plugin file, from their zip central directories (names, sizes and CRC),
+ * without reading entries content.
+ *
+ * @author Patrick Tavares
+ */
+public class BundleDelta {
+
+    /**
+     * Suffix of vRO package entries, which can be imported alone
+     */
+    public static final String PACKAGE_SUFFIX = ".package";
+
+    /**
+     * Entries added or changed in the new build
+     */
+    private final List<BundleEntry> changed = new ArrayList<>();
+
+    /**
+     * Entries removed from the new build
+     */
+    private final List<BundleEntry> removed = new ArrayList<>();
+
+    /**
+     * Compare two builds
+     *
+     * @param previous previous build
+     * @param current  new build
+     * @return the difference
+     */
+    public static BundleDelta compare(BundleArchive previous, BundleArchive current) {
+        BundleDelta delta = new BundleDelta();
+        for (BundleEntry entry : current.getEntries()) {
+            BundleEntry before = previous.getEntry(entry.getName());
+            if (!entry.isDirectory() && (before == null || before.getCrc() != entry.getCrc() || before.getSize() != entry.getSize())) {
+                delta.changed.add(entry);
+            }
+        }
+        for (BundleEntry entry : previous.getEntries()) {
+            if (!entry.isDirectory() && current.getEntry(entry.getName()) == null) {
+                delta.removed.add(entry);
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * @return entries added or changed in the new build
+     */
+    public List<BundleEntry> getChanged() {
+        return changed;
+    }
+
+    /**
+     * @return entries removed from the new build
+     */
+    public List<BundleEntry> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return <code>true</code> if both builds have the same entries
+     */
+    public boolean isEmpty() {
+        return changed.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * @return <code>true</code> if the new build only adds or changes vRO packages : importing them is enough,
+     * the plugin itself doesn't need to be reinstalled
+     */
+    public boolean isPackagesOnly() {
+        if (!removed.isEmpty()) {
+            return false;
+        }
+        for (BundleEntry entry : changed) {
+            if (!entry.getName().endsWith(PACKAGE_SUFFIX)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "BundleDelta{" +
+                "changed=" + changed.size() +
+                ", removed=" + removed.size() +
+                '}';
+    }
+}
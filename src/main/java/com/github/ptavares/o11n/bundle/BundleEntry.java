@@ -0,0 +1,154 @@
+package com.github.ptavares.o11n.bundle;
+
+/**
+ * Store one entry of a bundle zip central directory
+ *
+ * @author Patrick Tavares
+ */
+public class BundleEntry {
+
+    /**
+     * Compression method : stored
+     */
+    public static final int STORED = 0;
+
+    /**
+     * Compression method : deflated
+     */
+    public static final int DEFLATED = 8;
+
+    /**
+     * Entry name
+     */
+    private final String name;
+
+    /**
+     * Compression method
+     */
+    private final int method;
+
+    /**
+     * General purpose bit flag
+     */
+    private final int flags;
+
+    /**
+     * CRC-32 of the uncompressed data
+     */
+    private final long crc;
+
+    /**
+     * Compressed size
+     */
+    private final long compressedSize;
+
+    /**
+     * Uncompressed size
+     */
+    private final long size;
+
+    /**
+     * Offset of the local file header in the archive
+     */
+    private final long localHeaderOffset;
+
+    /**
+     * Default constructor
+     *
+     * @param name              entry name
+     * @param method            compression method
+     * @param flags             general purpose bit flag
+     * @param crc               CRC-32 of the uncompressed data
+     * @param compressedSize    compressed size
+     * @param size              uncompressed size
+     * @param localHeaderOffset offset of the local file header
+     */
+    public BundleEntry(String name, int method, int flags, long crc, long compressedSize, long size, long localHeaderOffset) {
+        this.name = name;
+        this.method = method;
+        this.flags = flags;
+        this.crc = crc;
+        this.compressedSize = compressedSize;
+        this.size = size;
+        this.localHeaderOffset = localHeaderOffset;
+    }
+
+    /**
+     * Getter for <code>name</code>
+     *
+     * @return the entry name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter for <code>method</code>
+     *
+     * @return the compression method
+     */
+    public int getMethod() {
+        return method;
+    }
+
+    /**
+     * Getter for <code>crc</code>
+     *
+     * @return the CRC-32 of the uncompressed data
+     */
+    public long getCrc() {
+        return crc;
+    }
+
+    /**
+     * Getter for <code>compressedSize</code>
+     *
+     * @return the compressed size
+     */
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    /**
+     * Getter for <code>size</code>
+     *
+     * @return the uncompressed size
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Getter for <code>localHeaderOffset</code>
+     *
+     * @return the offset of the local file header
+     */
+    public long getLocalHeaderOffset() {
+        return localHeaderOffset;
+    }
+
+    /**
+     * @return <code>true</code> if this entry is a directory
+     */
+    public boolean isDirectory() {
+        return name.endsWith("/");
+    }
+
+    /**
+     * @return <code>true</code> if this entry is encrypted
+     */
+    public boolean isEncrypted() {
+        return (flags & 1) != 0;
+    }
+
+    @Override
+    public String toString() {
+        return "BundleEntry{" +
+                "name='" + name + '\'' +
+                ", method=" + method +
+                ", crc=" + Long.toHexString(crc) +
+                ", compressedSize=" + compressedSize +
+                ", size=" + size +
+                '}';
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.ptavares.o11n.bundle;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Store plugin information read from a bundle descriptor (<tt>VSO-INF/vso.xml</tt>)
+ *
+ * @author Patrick Tavares
+ */
+public class BundleMetadata {
+
+    /**
+     * Plugin module name
+     */
+    private final String name;
+
+    /**
+     * Plugin version
+     */
+    private final String version;
+
+    /**
+     * Plugin build number, may be empty
+     */
+    private final String buildNumber;
+
+    /**
+     * Default constructor
+     *
+     * @param name        plugin module name
+     * @param version     plugin version
+     * @param buildNumber plugin build number
+     */
+    public BundleMetadata(String name, String version, String buildNumber) {
+        this.name = name;
+        this.version = StringUtils.defaultString(version);
+        this.buildNumber = StringUtils.defaultString(buildNumber);
+    }
+
+    /**
+     * Getter for <code>name</code>
+     *
+     * @return the plugin module name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter for <code>version</code>
+     *
+     * @return the plugin version
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Getter for <code>buildNumber</code>
+     *
+     * @return the plugin build number, empty if not defined
+     */
+    public String getBuildNumber() {
+        return buildNumber;
+    }
+
+    /**
+     * @return version and build number, as displayed by vRO (ie. <code>1.0.2.1234</code>)
+     */
+    public String getFullVersion() {
+        return fullVersion(version, buildNumber);
+    }
+
+    /**
+     * Build a full version string
+     *
+     * @param version     plugin version
+     * @param buildNumber plugin build number, may be empty
+     * @return version and build number, as displayed by vRO (ie. <code>1.0.2.1234</code>)
+     */
+    public static String fullVersion(String version, String buildNumber) {
+        if (StringUtils.isEmpty(buildNumber) || StringUtils.endsWith(version, "." + buildNumber)) {
+            return StringUtils.defaultString(version);
+        }
+        return version + "." + buildNumber;
+    }
+
+    /**
+     * Compare two dotted versions, numerically for numeric segments, alphabetically otherwise.
+     * Missing segments are considered as <code>0</code>.
+     *
+     * @param v1 first version
+     * @param v2 second version
+     * @return a negative integer, zero, or a positive integer as <code>v1</code> is lower, equal or greater than <code>v2</code>
+     */
+    public static int compareVersions(String v1, String v2) {
+        String[] s1 = StringUtils.split(StringUtils.defaultString(v1), ".-_");
+        String[] s2 = StringUtils.split(StringUtils.defaultString(v2), ".-_");
+        for (int i = 0; i < Math.max(s1.length, s2.length); i++) {
+            String p1 = i < s1.length ? s1[i] : "0";
+            String p2 = i < s2.length ? s2[i] : "0";
+            int result;
+            if (StringUtils.isNumeric(p1) && StringUtils.isNumeric(p2)) {
+                // Compared as text, without length limit : the longer number is greater, then the first different digit
+                String n1 = StringUtils.defaultIfEmpty(StringUtils.stripStart(p1, "0"), "0");
+                String n2 = StringUtils.defaultIfEmpty(StringUtils.stripStart(p2, "0"), "0");
+                result = n1.length() != n2.length() ? Integer.compare(n1.length(), n2.length()) : n1.compareTo(n2);
+            } else {
+                result = p1.compareTo(p2);
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "BundleMetadata{" +
+                "name='" + name + '\'' +
+                ", version='" + version + '\'' +
+                ", buildNumber='" + buildNumber + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.ptavares.o11n.bundle;
+
+import com.github.ptavares.o11n.enums.FileBundle;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read plugin information from a bundle without extracting it : only the central directory and the
+ * plugin descriptor are read.
+ *
+ * @author Patrick Tavares
+ */
+public class BundleMetadataReader {
+
+    /**
+     * Read plugin information of a bundle
+     *
+     * @param archive the bundle
+     * @param bundle  the bundle format
+     * @return metadata of every plugin in the bundle : one for a .dar, one per embedded .dar for a .vmoapp
+     * @throws IOException if a plugin descriptor can't be read
+     */
+    public List<BundleMetadata> read(BundleArchive archive, FileBundle bundle) throws IOException {
+        List<BundleMetadata> result = new ArrayList<>();
+        if (bundle == FileBundle.DAR) {
+            result.add(readDar(archive));
+        } else {
+            for (BundleEntry entry : archive.getEntries()) {
+                if (entry.getName().endsWith(FileBundle.DAR.getFileSuffix())) {
+                    // Stored .dar are read in place, compressed ones have to be inflated
+                    ByteBuffer content = entry.getMethod() == BundleEntry.STORED
+                            ? archive.getRawData(entry)
+                            : ByteBuffer.wrap(archive.read(entry));
+                    result.add(readDar(BundleArchive.wrap(content)));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Read the descriptor of a .dar bundle
+     */
+    private BundleMetadata readDar(BundleArchive archive) throws IOException {
+        BundleEntry descriptor = archive.getEntry(BundleValidator.DAR_DESCRIPTOR);
+        if (descriptor == null) {
+            throw new IOException(String.format("Plugin descriptor '%s' not found", BundleValidator.DAR_DESCRIPTOR));
+        }
+        Element module = parse(archive.read(descriptor)).getDocumentElement();
+        if (module.getAttribute("name").isEmpty()) {
+            throw new IOException(String.format("No plugin name in descriptor '%s'", BundleValidator.DAR_DESCRIPTOR));
+        }
+        return new BundleMetadata(module.getAttribute("name"), module.getAttribute("version"), module.getAttribute("build-number"));
+    }
+
+    private static Document parse(byte[] content) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            factory.setExpandEntityReferences(false);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            return builder.parse(new ByteArrayInputStream(content));
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException(String.format("Unable to parse plugin descriptor '%s' : %s", BundleValidator.DAR_DESCRIPTOR, e.getMessage()), e);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.github.ptavares.o11n.bundle;
+
+import com.github.ptavares.o11n.enums.FileBundle;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+
+/**
+ * Pre-flight validation of a bundle file before upload.
+ * <p>
+ * The central directory of the bundle is read, then every entry CRC is verified by a pool of workers, all reading
+ * through one channel opened for the validation. Validation stops at the first corrupted entry.
+ *
+ * @author Patrick Tavares
+ */
+public class BundleValidator {
+
+    /**
+     * Descriptor expected in every .dar bundle
+     */
+    public static final String DAR_DESCRIPTOR = "VSO-INF/vso.xml";
+
+    /**
+     * Under this amount of compressed data, entries are verified by the calling thread
+     */
+    private static final long PARALLEL_THRESHOLD = 4L * 1024 * 1024;
+
+    /**
+     * Plugin {@link Log}
+     */
+    private final Log log;
+
+    /**
+     * Max number of workers used to verify entries
+     */
+    private final int parallelism;
+
+    /**
+     * Constructor
+     *
+     * @param log Plugin {@link Log}
+     */
+    public BundleValidator(Log log) {
+        this(log, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param log         Plugin {@link Log}
+     * @param parallelism Max number of workers used to verify entries
+     */
+    public BundleValidator(Log log, int parallelism) {
+        this.log = log;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Validate a bundle file
+     *
+     * @param file   the bundle file
+     * @param bundle the bundle format
+     * @return the opened {@link BundleArchive}
+     * @throws MojoFailureException if the bundle is truncated, corrupted or misses its descriptor
+     */
+    public BundleArchive validate(Path file, FileBundle bundle) throws MojoFailureException {
+        long start = System.nanoTime();
+        BundleArchive archive;
+        try {
+            archive = BundleArchive.open(file);
+        } catch (IOException e) {
+            throw failure(file, e.getMessage());
+        }
+
+        List<BundleEntry> entries = archive.getEntries();
+        checkDescriptor(file, bundle, archive, entries);
+
+        List<BundleEntry> toVerify = new ArrayList<>(entries.size());
+        long compressedSize = 0;
+        for (BundleEntry entry : entries) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            if (entry.isEncrypted() || (entry.getMethod() != BundleEntry.STORED && entry.getMethod() != BundleEntry.DEFLATED)) {
+                log.debug(String.format("Skipping CRC check of entry '%s' (method %d)", entry.getName(), entry.getMethod()));
+                continue;
+            }
+            toVerify.add(entry);
+            compressedSize += entry.getCompressedSize();
+        }
+
+        int workers = compressedSize < PARALLEL_THRESHOLD ? 1 : Math.min(parallelism, toVerify.size());
+        try {
+            verify(archive, toVerify, workers);
+        } catch (IOException e) {
+            throw failure(file, e.getMessage());
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Bundle '%s' validated : %d entries, %d bytes, %d worker(s) in %d ms",
+                    file.getFileName(), entries.size(), archive.getSize(), workers,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        }
+        return archive;
+    }
+
+    /**
+     * Check that the entries expected for the bundle format are present
+     */
+    private void checkDescriptor(Path file, FileBundle bundle, BundleArchive archive, List<BundleEntry> entries) throws MojoFailureException {
+        if (entries.isEmpty()) {
+            throw failure(file, "archive is empty");
+        }
+        switch (bundle) {
+            case DAR:
+                if (archive.getEntry(DAR_DESCRIPTOR) == null) {
+                    throw failure(file, String.format("plugin descriptor '%s' not found", DAR_DESCRIPTOR));
+                }
+                break;
+            case VMOAPP:
+                for (BundleEntry entry : entries) {
+                    if (entry.getName().endsWith(FileBundle.DAR.getFileSuffix()) || entry.getName().endsWith(".package")) {
+                        return;
+                    }
+                }
+                throw failure(file, "no plug-in (.dar) or package (.package) found in application");
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Verify all entries, sharing them between <code>workers</code> threads
+     */
+    private void verify(final BundleArchive archive, final List<BundleEntry> entries, int workers) throws IOException {
+        try (FileChannel channel = archive.openChannel()) {
+            if (workers <= 1) {
+                new Worker(archive, channel, entries, new AtomicInteger(), new AtomicReference<IOException>()).call();
+            } else {
+                verify(archive, channel, entries, workers);
+            }
+        }
+    }
+
+    /**
+     * Verify all entries on <code>workers</code> threads, sharing the channel of the verify pass
+     */
+    private void verify(BundleArchive archive, FileChannel channel, List<BundleEntry> entries, int workers) throws IOException {
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicReference<IOException> failure = new AtomicReference<>();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Void>> futures = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(new Worker(archive, channel, entries, next, failure)));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IOException(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Bundle validation interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private MojoFailureException failure(Path file, String reason) {
+        String msgError = String.format("Invalid bundle '%s' : %s", file, reason);
+        log.error(msgError);
+        return new MojoFailureException(msgError);
+    }
+
+    /**
+     * Pulls entries from a shared index until all entries are verified or one of the workers failed.
+     * Buffers are allocated once per worker.
+     */
+    private static class Worker implements Callable<Void> {
+
+        private final BundleArchive archive;
+        private final FileChannel channel;
+        private final List<BundleEntry> entries;
+        private final AtomicInteger next;
+        private final AtomicReference<IOException> failure;
+
+        Worker(BundleArchive archive, FileChannel channel, List<BundleEntry> entries, AtomicInteger next, AtomicReference<IOException> failure) {
+            this.archive = archive;
+            this.channel = channel;
+            this.entries = entries;
+            this.next = next;
+            this.failure = failure;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            Inflater inflater = new Inflater(true);
+            byte[] input = new byte[BundleArchive.BUFFER_SIZE];
+            byte[] output = new byte[BundleArchive.BUFFER_SIZE];
+            CRC32 crc = new CRC32();
+            try {
+                int index;
+                while (failure.get() == null && (index = next.getAndIncrement()) < entries.size()) {
+                    archive.verify(channel, entries.get(index), inflater, input, output, crc);
+                }
+            } catch (IOException e) {
+                failure.compareAndSet(null, e);
+                throw e;
+            } finally {
+                inflater.end();
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.github.ptavares.o11n.bundle;
+
+import com.github.ptavares.o11n.state.PropertiesStore;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compute SHA-256 digests of bundle files.
+ * <p>
+ * Files are read with positional reads into a direct buffer reused by each thread, without copying them on the heap
+ * and without memory mapping : a mapped file stays locked on Windows until the mapping is garbage collected, which would
+ * prevent the next build from overwriting it. Very large files may be
+ * hashed as a tree : fixed-size leaves are hashed in parallel, then the root digest is computed over
+ * the leaf digests. Both forms are prefixed with their algorithm so they can't be mixed up.
+ * <p>
+ * Results are cached by path, size and last modification time, in memory for the whole JVM (last digest of each file only) and
+ * optionally in a properties file so unchanged files are never hashed twice in the same workspace.
+ *
+ * @author Patrick Tavares
+ */
+public class DigestService {
+
+    /**
+     * Prefix of a plain SHA-256 digest
+     */
+    public static final String SHA256 = "sha256";
+
+    /**
+     * Prefix of a SHA-256 tree digest
+     */
+    public static final String SHA256_TREE = "sha256-tree";
+
+    /**
+     * Name of the persistent cache file
+     */
+    public static final String CACHE_FILE_NAME = "digests.properties";
+
+    /**
+     * Size of the read buffer of a thread
+     */
+    private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Size of a tree leaf
+     */
+    private static final long LEAF_SIZE = 16L * 1024 * 1024;
+
+    /**
+     * Files smaller than this are always hashed as a plain digest
+     */
+    private static final long TREE_THRESHOLD = 4 * LEAF_SIZE;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Read buffer of each hashing thread
+     */
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_BUFFER_SIZE));
+
+    /**
+     * Digests computed by this JVM, shared between executions : one entry per file and algorithm, replaced when the file changes,
+     * stored as <code>size|lastModified|digest</code>
+     */
+    private static final ConcurrentMap<String, String> MEMORY_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Plugin {@link Log}
+     */
+    private final Log log;
+
+    /**
+     * Persistent cache file, may be <code>null</code>
+     */
+    private final Path cacheFile;
+
+    /**
+     * Use a tree digest for large files
+     */
+    private final boolean tree;
+
+    /**
+     * Persistent cache content, loaded lazily
+     */
+    private Properties persistentCache;
+
+    /**
+     * Constructor
+     *
+     * @param log            Plugin {@link Log}
+     * @param cacheDirectory directory of the persistent cache, <code>null</code> to only cache in memory
+     * @param tree           <code>true</code> to compute a parallel tree digest for large files
+     */
+    public DigestService(Log log, Path cacheDirectory, boolean tree) {
+        this.log = log;
+        this.cacheFile = cacheDirectory == null ? null : cacheDirectory.resolve(CACHE_FILE_NAME);
+        this.tree = tree;
+    }
+
+    /**
+     * Get the digest of a file, from cache if the file has not changed
+     *
+     * @param file the file to hash
+     * @return the digest, formatted as <code>algorithm:hex</code>
+     * @throws IOException if the file can't be read
+     */
+    public String digest(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath().normalize();
+        long size = Files.size(absolute);
+        boolean useTree = tree && size >= TREE_THRESHOLD;
+        String name = absolute + "|" + (useTree ? SHA256_TREE : SHA256);
+        String version = size + "|" + Files.getLastModifiedTime(absolute).toMillis();
+
+        String cached = MEMORY_CACHE.get(name);
+        String digest = cached != null && cached.startsWith(version + "|") ? cached.substring(version.length() + 1) : null;
+        if (digest == null) {
+            digest = readPersistentCache(name, version);
+            if (digest != null) {
+                MEMORY_CACHE.put(name, version + "|" + digest);
+            }
+        }
+        if (digest != null) {
+            log.debug(String.format("Digest of '%s' found in cache : %s", absolute, digest));
+            return digest;
+        }
+
+        long start = System.nanoTime();
+        digest = useTree ? SHA256_TREE + ':' + toHex(treeDigest(absolute, size)) : SHA256 + ':' + toHex(plainDigest(absolute, size));
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Digest of '%s' (%d bytes) computed in %d ms : %s", absolute, size,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), digest));
+        }
+        MEMORY_CACHE.put(name, version + "|" + digest);
+        writePersistentCache(name, version, digest);
+        return digest;
+    }
+
+    /**
+     * @return count of files with a digest in the memory cache
+     */
+    static int memoryCacheSize() {
+        return MEMORY_CACHE.size();
+    }
+
+    /**
+     * Hash the whole file sequentially
+     */
+    private static byte[] plainDigest(Path file, long size) throws IOException {
+        MessageDigest md = newDigest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            update(md, channel, 0, size);
+        }
+        return md.digest();
+    }
+
+    /**
+     * Hash fixed-size leaves in parallel, then hash the concatenation of the leaf digests
+     */
+    private static byte[] treeDigest(final Path file, long size) throws IOException {
+        int leaves = (int) ((size + LEAF_SIZE - 1) / LEAF_SIZE);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(leaves, Runtime.getRuntime().availableProcessors()));
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<Future<byte[]>> futures = new ArrayList<>(leaves);
+            for (int i = 0; i < leaves; i++) {
+                final long position = i * LEAF_SIZE;
+                final long length = Math.min(LEAF_SIZE, size - position);
+                futures.add(executor.submit(() -> {
+                    MessageDigest md = newDigest();
+                    update(md, channel, position, length);
+                    return md.digest();
+                }));
+            }
+            MessageDigest root = newDigest();
+            for (Future<byte[]> future : futures) {
+                root.update(future.get());
+            }
+            return root.digest();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Digest computation interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Feed the digest with a file region, one buffer at a time
+     */
+    private static void update(MessageDigest md, FileChannel channel, long position, long length) throws IOException {
+        ByteBuffer buffer = READ_BUFFER.get();
+        long end = position + length;
+        long offset = position;
+        while (offset < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - offset));
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file, the file was truncated while hashed");
+            }
+            buffer.flip();
+            md.update(buffer);
+            offset += read;
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is mandatory on every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Persistent cache entries are stored as <code>path|algorithm=size|lastModified|digest</code>
+     */
+    private synchronized String readPersistentCache(String name, String version) {
+        String value = loadPersistentCache().getProperty(name);
+        if (value != null && value.startsWith(version + "|")) {
+            return value.substring(version.length() + 1);
+        }
+        return null;
+    }
+
+    private synchronized void writePersistentCache(String name, String version, String digest) {
+        if (cacheFile == null) {
+            return;
+        }
+        loadPersistentCache().setProperty(name, version + "|" + digest);
+        try {
+            // Merged with the digests written meanwhile by concurrent builds
+            persistentCache = PropertiesStore.update(cacheFile, "o11n-maven-plugin bundle digests",
+                    Collections.singletonMap(name, version + "|" + digest));
+        } catch (IOException e) {
+            log.warn(String.format("Unable to write digest cache '%s' : %s", cacheFile, e.getMessage()));
+        }
+    }
+
+    private Properties loadPersistentCache() {
+        if (persistentCache == null) {
+            persistentCache = new Properties();
+            if (cacheFile != null) {
+                try {
+                    persistentCache = PropertiesStore.load(cacheFile);
+                } catch (IOException e) {
+                    log.warn(String.format("Unable to read digest cache '%s' : %s", cacheFile, e.getMessage()));
+                }
+            }
+        }
+        return persistentCache;
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
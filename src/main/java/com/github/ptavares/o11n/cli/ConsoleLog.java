@@ -0,0 +1,117 @@
+package com.github.ptavares.o11n.cli;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.PrintStream;
+
+/**
+ * {@link Log} printing to the console, for the command line : info to <code>System.out</code>, warnings and errors
+ * to <code>System.err</code>, debug only when enabled.
+ *
+ * @author Patrick Tavares
+ */
+class ConsoleLog implements Log {
+
+    /**
+     * <code>true</code> to print debug messages
+     */
+    private final boolean debug;
+
+    /**
+     * Constructor
+     *
+     * @param debug <code>true</code> to print debug messages
+     */
+    ConsoleLog(boolean debug) {
+        this.debug = debug;
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return debug;
+    }
+
+    @Override
+    public void debug(CharSequence content) {
+        debug(content, null);
+    }
+
+    @Override
+    public void debug(CharSequence content, Throwable error) {
+        if (debug) {
+            print(System.out, "DEBUG", content, error);
+        }
+    }
+
+    @Override
+    public void debug(Throwable error) {
+        debug(null, error);
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+        return true;
+    }
+
+    @Override
+    public void info(CharSequence content) {
+        print(System.out, "INFO", content, null);
+    }
+
+    @Override
+    public void info(CharSequence content, Throwable error) {
+        print(System.out, "INFO", content, error);
+    }
+
+    @Override
+    public void info(Throwable error) {
+        print(System.out, "INFO", null, error);
+    }
+
+    @Override
+    public boolean isWarnEnabled() {
+        return true;
+    }
+
+    @Override
+    public void warn(CharSequence content) {
+        print(System.err, "WARNING", content, null);
+    }
+
+    @Override
+    public void warn(CharSequence content, Throwable error) {
+        print(System.err, "WARNING", content, error);
+    }
+
+    @Override
+    public void warn(Throwable error) {
+        print(System.err, "WARNING", null, error);
+    }
+
+    @Override
+    public boolean isErrorEnabled() {
+        return true;
+    }
+
+    @Override
+    public void error(CharSequence content) {
+        print(System.err, "ERROR", content, null);
+    }
+
+    @Override
+    public void error(CharSequence content, Throwable error) {
+        print(System.err, "ERROR", content, error);
+    }
+
+    @Override
+    public void error(Throwable error) {
+        print(System.err, "ERROR", null, error);
+    }
+
+    private void print(PrintStream stream, String level, CharSequence content, Throwable error) {
+        stream.println("[" + level + "] " + (content != null ? content : error != null ? error.toString() : ""));
+        if (error != null && debug) {
+            error.printStackTrace(stream);
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.github.ptavares.o11n.cli;
+
+import com.github.ptavares.o11n.coordination.FileLockRestartCoordinator;
+import com.github.ptavares.o11n.coordination.RestartCoordinator;
+import com.github.ptavares.o11n.daemon.DeployDaemon;
+import com.github.ptavares.o11n.engine.DeployEngine;
+import com.github.ptavares.o11n.enums.FileBundle;
+import com.github.ptavares.o11n.enums.PackageDeleteStrategy;
+import com.github.ptavares.o11n.packages.PackageDeletion;
+import com.github.ptavares.o11n.packages.PackageUninstaller;
+import com.github.ptavares.o11n.rest.RestClient;
+import com.github.ptavares.o11n.rest.TlsContexts;
+import com.github.ptavares.o11n.state.DeployHistory;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import javax.net.ssl.SSLContext;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command line entry point of the cli jar, to deploy an already built plugin file without starting Maven :
+ * <pre>
+ * java -jar o11n-maven-plugin-cli.jar deploy --host vro.company.com --file target/o11nplugin-sample.dar --restart --wait
+ * java -jar o11n-maven-plugin-cli.jar uninstall --host vro.company.com --packages com.company.sample.*
+ * java -jar o11n-maven-plugin-cli.jar restart --host vro.company.com --wait
+ * java -jar o11n-maven-plugin-cli.jar daemon
+ * </pre>
+ * The plugin file is validated before install, and restarts are coordinated with builds through the restart locks of
+ * <code>--lock-directory</code> : a restart already done by another build after the install is not done again.
+ * The <code>daemon</code> command runs a {@link DeployDaemon} until stopped, for builds with <code>daemon</code> enabled.
+ * Passwords may be given by the <code>O11N_SERVICE_PASSWORD</code> and <code>O11N_CONFIG_PASSWORD</code> environment
+ * variables, to keep them out of the process list.
+ * Exit status is <code>0</code> on success, <code>1</code> on failure and <code>2</code> on invalid arguments.
+ *
+ * @author Patrick Tavares
+ */
+public final class O11nCli {
+
+    private static final String USAGE = "Usage : java -jar o11n-maven-plugin-cli.jar <deploy|uninstall|restart|daemon> [options]\n"
+            + "  --host <host[,host...]>        vRO Server Host(s) (default : localhost)\n"
+            + "  --service-port <port>          vRO Plugin Service REST API Port (default : 8281)\n"
+            + "  --config-port <port>           vRO Config Service REST API Port (default : 8283)\n"
+            + "  --user <user>                  vRO Plugin Service REST API user (default : vcoadmin)\n"
+            + "  --password <password>          password of --user (default : $O11N_SERVICE_PASSWORD, or vcoadmin)\n"
+            + "  --config-user <user>           vRO Config Service REST API user (default : root)\n"
+            + "  --config-password <password>   password of --config-user (default : $O11N_CONFIG_PASSWORD)\n"
+            + "  --file <path>                  plugin file to install (deploy)\n"
+            + "  --overwrite                    overwrite an installed plugin with the same version (deploy)\n"
+            + "  --skip-validation              do not validate the plugin file before install (deploy)\n"
+            + "  --packages <name[:strategy],...> packages to delete, before install for deploy (deploy, uninstall)\n"
+            + "  --delete-strategy <strategy>   default package delete strategy (default : deletePackageKeepingShared)\n"
+            + "  --restart                      restart vRO service after install (deploy)\n"
+            + "  --wait                         wait for vRO service to be ready after restart (deploy, restart)\n"
+            + "  --truststore <path>            truststore of vRO Server certificates (default : JVM truststore)\n"
+            + "  --truststore-password <pwd>    truststore password\n"
+            + "  --truststore-type <type>       truststore type (default : JVM default type)\n"
+            + "  --connect-timeout <seconds>    connection timeout (default : 10)\n"
+            + "  --read-timeout <seconds>       response timeout (default : 60)\n"
+            + "  --upload-timeout <seconds>     plugin file upload timeout (default : 600)\n"
+            + "  --daemon-directory <path>      daemon state directory (daemon, default : ~/.o11n/daemon)\n"
+            + "  --batch-window <seconds>       time to wait for more jobs on a server before deploying (daemon, default : 2)\n"
+            + "  --lock-directory <path>        restart lock directory shared with builds (default : $TMPDIR/o11n-locks)\n"
+            + "  --debug                        print debug messages";
+
+    private static final int EXIT_SUCCESS = 0;
+    private static final int EXIT_FAILURE = 1;
+    private static final int EXIT_USAGE = 2;
+
+    /**
+     * Max package deletions running at the same time on one server
+     */
+    private static final int DELETE_CONCURRENCY = 4;
+
+    /**
+     * Max time to wait for the restart window of a server, in milliseconds
+     */
+    private static final long RESTART_LOCK_TIMEOUT = 2 * DeployEngine.RESTART_TIMEOUT;
+
+    /**
+     * Options without value
+     */
+    private static final List<String> FLAGS = Arrays.asList("overwrite", "skip-validation", "restart", "wait", "debug");
+
+    /**
+     * Options with a value
+     */
+    private static final List<String> OPTIONS = Arrays.asList("host", "service-port", "config-port", "user", "password",
+            "config-user", "config-password", "file", "packages", "delete-strategy", "truststore", "truststore-password",
+            "truststore-type", "connect-timeout", "read-timeout", "upload-timeout", "daemon-directory", "batch-window", "lock-directory");
+
+    private O11nCli() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * Run a command
+     *
+     * @param args command line arguments
+     * @return the exit status
+     */
+    static int run(String[] args) {
+        if (args.length == 0 || "--help".equals(args[0]) || "-h".equals(args[0])) {
+            System.out.println(USAGE);
+            return args.length == 0 ? EXIT_USAGE : EXIT_SUCCESS;
+        }
+        String command = args[0];
+        Map<String, String> options;
+        try {
+            options = parseOptions(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return EXIT_USAGE;
+        }
+        Log log = new ConsoleLog(options.containsKey("debug"));
+
+        try {
+            switch (command) {
+                case "deploy":
+                    return deploy(log, options);
+                case "uninstall":
+                    return uninstall(log, options);
+                case "restart":
+                    return restart(log, options);
+                case "daemon":
+                    return daemon(log, options);
+                default:
+                    System.err.println("Unknown command '" + command + "'");
+                    System.err.println(USAGE);
+                    return EXIT_USAGE;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return EXIT_USAGE;
+        } catch (MojoFailureException e) {
+            log.error(e.getMessage());
+            return EXIT_FAILURE;
+        }
+    }
+
+    private static int deploy(Log log, Map<String, String> options) throws MojoFailureException {
+        String file = options.get("file");
+        if (file == null) {
+            throw new IllegalArgumentException("Option --file is required for deploy");
+        }
+        Path pluginFile = Paths.get(file);
+        if (!Files.isRegularFile(pluginFile)) {
+            throw new MojoFailureException("Plugin file '" + pluginFile + "' not found.");
+        }
+        FileBundle bundle = file.endsWith(FileBundle.VMOAPP.getFileSuffix()) ? FileBundle.VMOAPP : FileBundle.DAR;
+        List<PackageDeletion> deletions = packageDeletions(options);
+        RestartCoordinator coordinator = restartCoordinator(options);
+
+        boolean validate = !options.containsKey("skip-validation");
+        for (String host : hosts(options)) {
+            try (RestClient restClient = newRestClient(log, host, options)) {
+                DeployEngine engine = newEngine(log, restClient, options);
+                if (validate) {
+                    // Validated once, before the first install
+                    engine.validatePlugin(pluginFile, bundle);
+                    validate = false;
+                }
+                if (!deletions.isEmpty()) {
+                    checkDeletions(engine.uninstallPackages(deletions, DELETE_CONCURRENCY));
+                }
+                if (!engine.installPlugin(pluginFile, bundle, options.containsKey("overwrite"))) {
+                    throw new MojoFailureException(String.format("Failed to install plugin '%s' on '%s'", pluginFile.getFileName(), host));
+                }
+                long installTime = System.currentTimeMillis();
+                log.info(String.format("Successfully install plugin '%s' on '%s'", pluginFile.getFileName(), host));
+                if (options.containsKey("restart")) {
+                    restart(engine, coordinator, options, installTime);
+                }
+            } catch (IOException e) {
+                log.debug("Error while closing RestClient", e);
+            }
+        }
+        return EXIT_SUCCESS;
+    }
+
+    private static int uninstall(Log log, Map<String, String> options) throws MojoFailureException {
+        List<PackageDeletion> deletions = packageDeletions(options);
+        if (deletions.isEmpty()) {
+            throw new IllegalArgumentException("Option --packages is required for uninstall");
+        }
+        for (String host : hosts(options)) {
+            try (RestClient restClient = newRestClient(log, host, options)) {
+                checkDeletions(newEngine(log, restClient, options).uninstallPackages(deletions, DELETE_CONCURRENCY));
+            } catch (IOException e) {
+                log.debug("Error while closing RestClient", e);
+            }
+        }
+        return EXIT_SUCCESS;
+    }
+
+    private static int restart(Log log, Map<String, String> options) throws MojoFailureException {
+        RestartCoordinator coordinator = restartCoordinator(options);
+        // A restart done by another build after this command is coalesced with it
+        long requestTime = System.currentTimeMillis();
+        for (String host : hosts(options)) {
+            try (RestClient restClient = newRestClient(log, host, options)) {
+                restart(newEngine(log, restClient, options), coordinator, options, requestTime);
+            } catch (IOException e) {
+                log.debug("Error while closing RestClient", e);
+            }
+        }
+        return EXIT_SUCCESS;
+    }
+
+    private static int daemon(Log log, Map<String, String> options) throws MojoFailureException {
+        Path directory = Paths.get(StringUtils.defaultString(options.get("daemon-directory"),
+                System.getProperty("user.home") + File.separator + ".o11n" + File.separator + "daemon"));
+        final DeployDaemon daemon = new DeployDaemon(log, directory, sslContext(options), restartCoordinator(options),
+                TimeUnit.SECONDS.toMillis(intOption(options, "batch-window", 2)));
+        daemon.setTimeouts((int) TimeUnit.SECONDS.toMillis(intOption(options, "connect-timeout", 10)),
+                (int) TimeUnit.SECONDS.toMillis(intOption(options, "read-timeout", 60)),
+                (int) TimeUnit.SECONDS.toMillis(intOption(options, "upload-timeout", 600)));
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::close, "o11n-daemon-shutdown"));
+        try {
+            daemon.run();
+        } catch (IOException e) {
+            throw new MojoFailureException("Unable to start deploy daemon : " + e.getMessage());
+        }
+        return EXIT_SUCCESS;
+    }
+
+    private static void restart(DeployEngine engine, RestartCoordinator coordinator, Map<String, String> options, long installTime)
+            throws MojoFailureException {
+        engine.restartInWindow(coordinator, DeployHistory.target(engine.getRestClient().getServerHost(), intOption(options, "service-port", 8281)),
+                RESTART_LOCK_TIMEOUT, installTime, options.containsKey("wait") ? DeployEngine.RESTART_TIMEOUT : 0);
+    }
+
+    private static RestartCoordinator restartCoordinator(Map<String, String> options) {
+        return new FileLockRestartCoordinator(Paths.get(StringUtils.defaultString(options.get("lock-directory"),
+                System.getProperty("java.io.tmpdir") + File.separator + "o11n-locks")));
+    }
+
+    private static void checkDeletions(Map<String, PackageUninstaller.Outcome> outcomes) throws MojoFailureException {
+        List<String> failed = new ArrayList<>();
+        for (Map.Entry<String, PackageUninstaller.Outcome> outcome : outcomes.entrySet()) {
+            if (outcome.getValue() == PackageUninstaller.Outcome.FAILED) {
+                failed.add(outcome.getKey());
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new MojoFailureException(String.format("Failed to delete package(s) %s", failed));
+        }
+    }
+
+    private static SSLContext sslContext(Map<String, String> options) throws MojoFailureException {
+        try {
+            String trustStore = options.get("truststore");
+            return TlsContexts.get(trustStore == null ? null : new File(trustStore), options.get("truststore-password"),
+                    options.get("truststore-type"));
+        } catch (IOException | GeneralSecurityException e) {
+            throw new MojoFailureException(String.format("Unable to load truststore '%s' : %s", options.get("truststore"), e.getMessage()));
+        }
+    }
+
+    private static RestClient newRestClient(Log log, String host, Map<String, String> options) throws MojoFailureException {
+        RestClient restClient = new RestClient(log, sslContext(options));
+        restClient.configureBaseUrl(host, intOption(options, "service-port", 8281), intOption(options, "config-port", 8283));
+        restClient.setTimeouts((int) TimeUnit.SECONDS.toMillis(intOption(options, "connect-timeout", 10)),
+                (int) TimeUnit.SECONDS.toMillis(intOption(options, "read-timeout", 60)),
+                (int) TimeUnit.SECONDS.toMillis(intOption(options, "upload-timeout", 600)));
+        return restClient;
+    }
+
+    private static DeployEngine newEngine(Log log, RestClient restClient, Map<String, String> options) {
+        return new DeployEngine(log, restClient,
+                StringUtils.defaultString(options.get("user"), "vcoadmin"),
+                StringUtils.defaultString(options.get("password"), StringUtils.defaultString(System.getenv("O11N_SERVICE_PASSWORD"), "vcoadmin")),
+                StringUtils.defaultString(options.get("config-user"), "root"),
+                StringUtils.defaultString(options.get("config-password"), System.getenv("O11N_CONFIG_PASSWORD")));
+    }
+
+    private static List<String> hosts(Map<String, String> options) {
+        List<String> hosts = new ArrayList<>();
+        for (String host : StringUtils.split(StringUtils.defaultString(options.get("host"), "localhost"), ",")) {
+            if (!StringUtils.isBlank(host)) {
+                hosts.add(host.trim());
+            }
+        }
+        return hosts;
+    }
+
+    private static List<PackageDeletion> packageDeletions(Map<String, String> options) {
+        List<PackageDeletion> deletions = new ArrayList<>();
+        String packages = options.get("packages");
+        if (packages == null) {
+            return deletions;
+        }
+        PackageDeleteStrategy strategy = options.containsKey("delete-strategy")
+                ? PackageDeleteStrategy.fromValue(options.get("delete-strategy"))
+                : PackageDeleteStrategy.DELETE_PACKAGE_KEEPING_SHARED;
+        for (String entry : StringUtils.split(packages, ",")) {
+            if (!StringUtils.isBlank(entry)) {
+                deletions.add(PackageDeletion.parse(entry, strategy));
+            }
+        }
+        return deletions;
+    }
+
+    private static int intOption(Map<String, String> options, String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Option --%s must be a number : '%s'", name, value));
+        }
+    }
+
+    /**
+     * Parse <code>--name value</code> and <code>--flag</code> options, after the command
+     */
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument '" + args[i] + "'");
+            }
+            String name = args[i].substring(2);
+            if (FLAGS.contains(name)) {
+                options.put(name, "true");
+            } else if (!OPTIONS.contains(name)) {
+                throw new IllegalArgumentException("Unknown option --" + name);
+            } else if (i + 1 < args.length) {
+                options.put(name, args[++i]);
+            } else {
+                throw new IllegalArgumentException("Missing value for option --" + name);
+            }
+        }
+        return options;
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.ptavares.o11n.coordination;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link RestartCoordinator} for builds running on the same machine : the restart window of a server is an exclusive
+ * lock on a file of a shared directory, which also stores the time of the last restart.
+ * <p>
+ * File locks are held by the JVM, so builds of the same JVM (parallel Maven builds) are first serialized in memory.
+ *
+ * @author Patrick Tavares
+ */
+public class FileLockRestartCoordinator implements RestartCoordinator {
+
+    /**
+     * Interval between two attempts to lock the file, in milliseconds
+     */
+    private static final long LOCK_POLL_INTERVAL = 500;
+
+    /**
+     * In-JVM locks, by lock file
+     */
+    private static final ConcurrentMap<Path, ReentrantLock> JVM_LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * Directory of lock files, shared by all builds
+     */
+    private final Path directory;
+
+    /**
+     * Constructor, using the <code>o11n-locks</code> directory of the system temp directory
+     */
+    public FileLockRestartCoordinator() {
+        this(Paths.get(System.getProperty("java.io.tmpdir"), "o11n-locks"));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param directory directory of lock files, shared by all builds
+     */
+    public FileLockRestartCoordinator(Path directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public RestartLease acquire(String server, long timeout) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        Files.createDirectories(directory);
+        Path file = directory.resolve(server.replaceAll("[^A-Za-z0-9._-]", "_") + ".lock").toAbsolutePath();
+
+        ReentrantLock jvmLock = JVM_LOCKS.computeIfAbsent(file, f -> new ReentrantLock(true));
+        if (!jvmLock.tryLock(timeout, TimeUnit.MILLISECONDS)) {
+            throw new IOException(String.format("Timeout while waiting for restart lock '%s'", file));
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FileLock lock;
+            while ((lock = channel.tryLock()) == null) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    throw new IOException(String.format("Timeout while waiting for restart lock '%s'", file));
+                }
+                Thread.sleep(Math.min(LOCK_POLL_INTERVAL, remaining));
+            }
+            return new FileRestartLease(channel, lock, jvmLock);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            jvmLock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Lease held through a file lock
+     */
+    private static class FileRestartLease implements RestartLease {
+
+        private final FileChannel channel;
+
+        private final FileLock lock;
+
+        private final ReentrantLock jvmLock;
+
+        FileRestartLease(FileChannel channel, FileLock lock, ReentrantLock jvmLock) {
+            this.channel = channel;
+            this.lock = lock;
+            this.jvmLock = jvmLock;
+        }
+
+        @Override
+        public long getLastRestart() {
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), 64));
+                channel.read(buffer, 0);
+                return Long.parseLong(new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII).trim());
+            } catch (IOException | NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        @Override
+        public void recordRestart(long time) throws IOException {
+            channel.truncate(0);
+            channel.write(ByteBuffer.wrap(String.valueOf(time).getBytes(StandardCharsets.US_ASCII)), 0);
+            channel.force(false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                lock.release();
+                channel.close();
+            } finally {
+                // Called by the thread which acquired the lease
+                jvmLock.unlock();
+            }
+        }
+    }
+}
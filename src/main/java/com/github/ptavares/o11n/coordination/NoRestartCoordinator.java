@@ -0,0 +1,29 @@
+package com.github.ptavares.o11n.coordination;
+
+/**
+ * No coordination : restarts are never serialized nor coalesced.
+ *
+ * @author Patrick Tavares
+ */
+public class NoRestartCoordinator implements RestartCoordinator {
+
+    @Override
+    public RestartLease acquire(String server, long timeout) {
+        return new RestartLease() {
+            @Override
+            public long getLastRestart() {
+                return 0;
+            }
+
+            @Override
+            public void recordRestart(long time) {
+                // Nothing to record
+            }
+
+            @Override
+            public void close() {
+                // Nothing to release
+            }
+        };
+    }
+}
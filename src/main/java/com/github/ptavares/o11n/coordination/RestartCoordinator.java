@@ -0,0 +1,26 @@
+package com.github.ptavares.o11n.coordination;
+
+import java.io.IOException;
+
+/**
+ * Serializes restart windows of a vRO server between builds : only the build holding the {@link RestartLease}
+ * of a server may restart it and wait for it. Uploads are not coordinated.
+ * <p>
+ * Implementations must have a public no-arg constructor to be selected with the <code>restartCoordination</code>
+ * param, and be safe for concurrent use.
+ *
+ * @author Patrick Tavares
+ */
+public interface RestartCoordinator {
+
+    /**
+     * Wait for the restart window of a server
+     *
+     * @param server  server name, see {@link com.github.ptavares.o11n.state.DeployHistory#target(String, Integer)}
+     * @param timeout max time to wait, in milliseconds
+     * @return the lease, to close at the end of the restart window
+     * @throws IOException          if the lease can't be acquired before <code>timeout</code>
+     * @throws InterruptedException if interrupted while waiting
+     */
+    RestartLease acquire(String server, long timeout) throws IOException, InterruptedException;
+}
@@ -0,0 +1,36 @@
+package com.github.ptavares.o11n.coordination;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Exclusive restart window of a vRO server, with the time of the last restart done by any build.
+ * <p>
+ * A build which installed its plugin before the last restart doesn't need to restart again :
+ * restarts queued behind the same window are coalesced into one.
+ *
+ * @author Patrick Tavares
+ */
+public interface RestartLease extends Closeable {
+
+    /**
+     * @return time of the last restart requested by a lease holder, in milliseconds, <code>0</code> if unknown
+     */
+    long getLastRestart();
+
+    /**
+     * Record a restart requested by this lease holder
+     *
+     * @param time restart time, in milliseconds
+     * @throws IOException if it can't be recorded
+     */
+    void recordRestart(long time) throws IOException;
+
+    /**
+     * Release the restart window
+     *
+     * @throws IOException In case of error
+     */
+    @Override
+    void close() throws IOException;
+}
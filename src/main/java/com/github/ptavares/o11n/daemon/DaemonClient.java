@@ -0,0 +1,111 @@
+package com.github.ptavares.o11n.daemon;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Thin client of a {@link DeployDaemon} : sends jobs to the daemon and waits for their results.
+ *
+ * @author Patrick Tavares
+ */
+public final class DaemonClient {
+
+    /**
+     * Max time to connect to the daemon, in milliseconds
+     */
+    private static final int CONNECT_TIMEOUT = 2000;
+
+    private DaemonClient() {
+    }
+
+    /**
+     * Send jobs to the daemon, all at once so that the daemon processes them concurrently, and wait for their results
+     *
+     * @param directory daemon directory, holding its state file
+     * @param jobs      jobs to send
+     * @param timeout   max time to wait for each result, in milliseconds, <code>0</code> to wait forever
+     * @return results, in jobs order, <code>null</code> if no daemon is running : the jobs were not sent
+     * @throws IOException if the connection with the daemon is lost once jobs are sent
+     */
+    public static List<JobResult> submit(Path directory, List<DeployJob> jobs, int timeout) throws IOException {
+        Properties state = new Properties();
+        try (InputStream in = Files.newInputStream(directory.resolve(DeployDaemon.STATE_FILE))) {
+            state.load(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        String token = state.getProperty(DeployDaemon.TOKEN);
+        int port;
+        try {
+            port = Integer.parseInt(state.getProperty(DeployDaemon.PORT));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        Gson gson = new Gson();
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            // 1. Connect, the daemon may have stopped without removing its state file
+            for (int i = 0; i < jobs.size(); i++) {
+                Socket socket = new Socket();
+                sockets.add(socket);
+                try {
+                    socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT);
+                } catch (IOException e) {
+                    return null;
+                }
+                socket.setSoTimeout(timeout);
+            }
+            // 2. Send all jobs
+            for (int i = 0; i < jobs.size(); i++) {
+                JsonObject request = new JsonObject();
+                request.addProperty(DeployDaemon.TOKEN, token);
+                request.add("job", gson.toJsonTree(jobs.get(i)));
+                Writer writer = new OutputStreamWriter(sockets.get(i).getOutputStream(), StandardCharsets.UTF_8);
+                writer.write(gson.toJson(request));
+                writer.write('\n');
+                writer.flush();
+            }
+            // 3. Wait for results
+            List<JobResult> results = new ArrayList<>();
+            for (Socket socket : sockets) {
+                String line = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)).readLine();
+                if (line == null) {
+                    throw new IOException("Connection closed by the deploy daemon");
+                }
+                try {
+                    results.add(gson.fromJson(line, JobResult.class));
+                } catch (JsonParseException e) {
+                    throw new IOException("Invalid answer of the deploy daemon : " + e.getMessage());
+                }
+            }
+            return results;
+        } finally {
+            for (Socket socket : sockets) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // nothing to do
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.github.ptavares.o11n.daemon;
+
+import com.github.ptavares.o11n.coordination.RestartCoordinator;
+import com.github.ptavares.o11n.rest.RestClient;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import javax.net.ssl.SSLContext;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-lived deploy daemon, accepting {@link DeployJob}s from many builds on a loopback socket.
+ * <p>
+ * Jobs are queued by server, and each server has a {@link ServerWorker} keeping its connections open between jobs :
+ * concurrent jobs on a server are batched, and the server is restarted once per batch.
+ * The listening port and an access token are published in {@link #STATE_FILE}, readable by the daemon owner only,
+ * where {@link DaemonClient} finds them.
+ * <p>
+ * Protocol : one JSON line <code>{"token":...,"job":{...}}</code> per connection, answered by one {@link JobResult} JSON line.
+ *
+ * @author Patrick Tavares
+ */
+public class DeployDaemon implements Closeable {
+
+    /**
+     * Daemon state file, in the daemon directory
+     */
+    public static final String STATE_FILE = "daemon.properties";
+
+    static final String PORT = "port";
+    static final String TOKEN = "token";
+
+    /**
+     * Max time to read a job once connected, in milliseconds
+     */
+    private static final int REQUEST_TIMEOUT = 30000;
+
+    /**
+     * Daemon {@link Log}
+     */
+    private final Log log;
+
+    /**
+     * Directory of the state file
+     */
+    private final Path directory;
+
+    /**
+     * TLS context of all RestClients
+     */
+    private final SSLContext sslContext;
+
+    /**
+     * Restart windows shared with builds outside of the daemon
+     */
+    private final RestartCoordinator restartCoordinator;
+
+    /**
+     * Time to wait for more jobs once a job is received, in milliseconds
+     */
+    private final long batchWindow;
+
+    /**
+     * Workers, by server
+     */
+    private final ConcurrentMap<String, ServerWorker> workers = new ConcurrentHashMap<>();
+
+    /**
+     * Threads of client connections, waiting for their job result
+     */
+    private final ExecutorService connections = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "o11n-daemon-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Gson gson = new Gson();
+
+    private int connectTimeout;
+    private int readTimeout;
+    private int uploadTimeout;
+
+    private volatile ServerSocket serverSocket;
+
+    /**
+     * Token clients must send with their jobs
+     */
+    private String token;
+
+    /**
+     * Constructor
+     *
+     * @param log                Daemon {@link Log}
+     * @param directory          directory of the state file
+     * @param sslContext         TLS context of all RestClients
+     * @param restartCoordinator restart windows shared with builds outside of the daemon
+     * @param batchWindow        time to wait for more jobs once a job is received, in milliseconds
+     */
+    public DeployDaemon(Log log, Path directory, SSLContext sslContext, RestartCoordinator restartCoordinator, long batchWindow) {
+        this.log = log;
+        this.directory = directory;
+        this.sslContext = sslContext;
+        this.restartCoordinator = restartCoordinator;
+        this.batchWindow = batchWindow;
+    }
+
+    /**
+     * Configure timeouts of the RestClients, see {@link RestClient#setTimeouts(int, int, int)}
+     *
+     * @param connectTimeout connection timeout, in milliseconds
+     * @param readTimeout    response timeout, in milliseconds
+     * @param uploadTimeout  response timeout of uploads, in milliseconds
+     */
+    public void setTimeouts(int connectTimeout, int readTimeout, int uploadTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.uploadTimeout = uploadTimeout;
+    }
+
+    /**
+     * Listen on a loopback port and process jobs, until {@link #close()}
+     *
+     * @throws IOException if the daemon can't listen or publish its state file
+     */
+    public void run() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : secret) {
+            hex.append(String.format("%02x", b));
+        }
+        token = hex.toString();
+        writeState(serverSocket.getLocalPort());
+        log.info(String.format("Deploy daemon listening on %s:%d, state in '%s'", serverSocket.getInetAddress().getHostAddress(),
+                serverSocket.getLocalPort(), directory.resolve(STATE_FILE)));
+
+        try {
+            while (!serverSocket.isClosed()) {
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketException e) {
+                    // closed
+                    break;
+                }
+                connections.execute(() -> handle(socket));
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Read a job, wait for its batch and answer its result
+     */
+    private void handle(Socket socket) {
+        try (Socket client = socket) {
+            client.setSoTimeout(REQUEST_TIMEOUT);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+            JobResult result;
+            String line = reader.readLine();
+            try {
+                JsonObject request = line == null ? null : new JsonParser().parse(line).getAsJsonObject();
+                if (request == null || !request.has(TOKEN) || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                        request.get(TOKEN).getAsString().getBytes(StandardCharsets.UTF_8))) {
+                    log.warn(String.format("Rejected connection from %s : invalid token", client.getRemoteSocketAddress()));
+                    result = JobResult.failure("Invalid daemon token");
+                } else {
+                    DeployJob job = gson.fromJson(request.get("job"), DeployJob.class);
+                    String error = validate(job);
+                    if (error != null) {
+                        result = JobResult.failure(error);
+                    } else {
+                        log.info("Received " + job);
+                        result = worker(job).submit(job).get();
+                    }
+                }
+            } catch (JsonParseException | IllegalStateException e) {
+                result = JobResult.failure("Invalid job : " + e.getMessage());
+            } catch (ExecutionException e) {
+                result = JobResult.failure(e.getCause().toString());
+            }
+            Writer writer = new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8);
+            writer.write(gson.toJson(result));
+            writer.write('\n');
+            writer.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.debug("Error on daemon connection", e);
+        }
+    }
+
+    private static String validate(DeployJob job) {
+        if (job == null || StringUtils.isEmpty(job.getServerHost()) || job.getServicePort() == null || job.getConfigPort() == null) {
+            return "Invalid job : server host and ports are required";
+        }
+        if (StringUtils.isEmpty(job.getPluginFile()) || job.getBundle() == null) {
+            return "Invalid job : plugin file and bundle are required";
+        }
+        if (!Files.isRegularFile(Paths.get(job.getPluginFile()))) {
+            return "Plugin file '" + job.getPluginFile() + "' not found by the daemon.";
+        }
+        return null;
+    }
+
+    /**
+     * @return the worker of the job server, started on first use
+     */
+    private ServerWorker worker(DeployJob job) {
+        return workers.computeIfAbsent(job.serverKey(), k -> {
+            RestClient restClient = new RestClient(log, sslContext);
+            restClient.configureBaseUrl(job.getServerHost(), job.getServicePort(), job.getConfigPort());
+            restClient.setTimeouts(connectTimeout, readTimeout, uploadTimeout);
+            return new ServerWorker(log, job.getServerHost(), job.getServicePort(), restClient, restartCoordinator, batchWindow);
+        });
+    }
+
+    /**
+     * Publish the port and token, readable by the daemon owner only
+     */
+    private void writeState(int port) throws IOException {
+        Files.createDirectories(directory);
+        Path tmp = Files.createTempFile(directory, "daemon-", ".tmp");
+        PosixFileAttributeView posix = Files.getFileAttributeView(tmp, PosixFileAttributeView.class);
+        if (posix != null) {
+            posix.setPermissions(PosixFilePermissions.fromString("rw-------"));
+        }
+        Properties state = new Properties();
+        state.setProperty(PORT, String.valueOf(port));
+        state.setProperty(TOKEN, token);
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            state.store(out, "o11n deploy daemon");
+        }
+        Files.move(tmp, directory.resolve(STATE_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Stop listening, stop the workers and close their connections
+     */
+    @Override
+    public void close() {
+        ServerSocket socket = serverSocket;
+        if (socket == null || socket.isClosed()) {
+            return;
+        }
+        try {
+            socket.close();
+            Files.deleteIfExists(directory.resolve(STATE_FILE));
+        } catch (IOException e) {
+            log.debug("Error while closing daemon socket", e);
+        }
+        for (ServerWorker worker : workers.values()) {
+            try {
+                worker.close();
+            } catch (IOException e) {
+                log.debug("Error while closing RestClient", e);
+            }
+        }
+        connections.shutdownNow();
+        log.info("Deploy daemon stopped");
+    }
+}
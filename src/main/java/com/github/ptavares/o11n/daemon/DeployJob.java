@@ -0,0 +1,219 @@
+package com.github.ptavares.o11n.daemon;
+
+import com.github.ptavares.o11n.enums.FileBundle;
+
+import java.util.Objects;
+
+/**
+ * A plugin file install requested to the {@link DeployDaemon} for one vRO server. Sent as JSON by {@link DaemonClient}.
+ *
+ * @author Patrick Tavares
+ */
+public class DeployJob {
+
+    /**
+     * vRO Server Host or IP
+     */
+    private String serverHost;
+
+    /**
+     * vRO Plugin Service REST API Port
+     */
+    private Integer servicePort;
+
+    /**
+     * vRO Config Service REST API Port
+     */
+    private Integer configPort;
+
+    /**
+     * vRO Plugin Service REST API user
+     */
+    private String serviceUser;
+
+    /**
+     * Password of <code>serviceUser</code>
+     */
+    private String servicePassword;
+
+    /**
+     * vRO Config Service REST API user
+     */
+    private String configUser;
+
+    /**
+     * Password of <code>configUser</code>
+     */
+    private String configPassword;
+
+    /**
+     * Absolute path of the plugin file, read by the daemon
+     */
+    private String pluginFile;
+
+    /**
+     * Plugin file type
+     */
+    private FileBundle bundle;
+
+    /**
+     * <code>true</code> to overwrite an installed plugin with the same version
+     */
+    private boolean overwrite;
+
+    /**
+     * <code>true</code> to restart vRO service after install
+     */
+    private boolean restartService;
+
+    /**
+     * <code>true</code> to wait for vRO service to be ready after restart
+     */
+    private boolean waitForRestart;
+
+    /**
+     * Max time for the job, from its reception by the daemon, in milliseconds. <code>0</code> for no deadline.
+     */
+    private long timeout;
+
+    /**
+     * @return key of the server of this job : jobs with the same key are queued and batched together
+     */
+    String serverKey() {
+        return serverHost + ":" + servicePort + ":" + configPort;
+    }
+
+    public String getServerHost() {
+        return serverHost;
+    }
+
+    public DeployJob setServerHost(String serverHost) {
+        this.serverHost = serverHost;
+        return this;
+    }
+
+    public Integer getServicePort() {
+        return servicePort;
+    }
+
+    public DeployJob setServicePort(Integer servicePort) {
+        this.servicePort = servicePort;
+        return this;
+    }
+
+    public Integer getConfigPort() {
+        return configPort;
+    }
+
+    public DeployJob setConfigPort(Integer configPort) {
+        this.configPort = configPort;
+        return this;
+    }
+
+    public String getServiceUser() {
+        return serviceUser;
+    }
+
+    public String getServicePassword() {
+        return servicePassword;
+    }
+
+    public DeployJob setServiceAuthentication(String serviceUser, String servicePassword) {
+        this.serviceUser = serviceUser;
+        this.servicePassword = servicePassword;
+        return this;
+    }
+
+    public String getConfigUser() {
+        return configUser;
+    }
+
+    public String getConfigPassword() {
+        return configPassword;
+    }
+
+    public DeployJob setConfigAuthentication(String configUser, String configPassword) {
+        this.configUser = configUser;
+        this.configPassword = configPassword;
+        return this;
+    }
+
+    public String getPluginFile() {
+        return pluginFile;
+    }
+
+    public DeployJob setPluginFile(String pluginFile) {
+        this.pluginFile = pluginFile;
+        return this;
+    }
+
+    public FileBundle getBundle() {
+        return bundle;
+    }
+
+    public DeployJob setBundle(FileBundle bundle) {
+        this.bundle = bundle;
+        return this;
+    }
+
+    public boolean isOverwrite() {
+        return overwrite;
+    }
+
+    public DeployJob setOverwrite(boolean overwrite) {
+        this.overwrite = overwrite;
+        return this;
+    }
+
+    public boolean isRestartService() {
+        return restartService;
+    }
+
+    public DeployJob setRestartService(boolean restartService) {
+        this.restartService = restartService;
+        return this;
+    }
+
+    public boolean isWaitForRestart() {
+        return waitForRestart;
+    }
+
+    public DeployJob setWaitForRestart(boolean waitForRestart) {
+        this.waitForRestart = waitForRestart;
+        return this;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public DeployJob setTimeout(long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * @return <code>true</code> if both jobs authenticate with the same users and passwords
+     */
+    boolean sameCredentials(DeployJob other) {
+        return Objects.equals(serviceUser, other.serviceUser) && Objects.equals(servicePassword, other.servicePassword)
+                && Objects.equals(configUser, other.configUser) && Objects.equals(configPassword, other.configPassword);
+    }
+
+    @Override
+    public String toString() {
+        return "DeployJob{" +
+                "serverHost='" + serverHost + '\'' +
+                ", servicePort=" + servicePort +
+                ", configPort=" + configPort +
+                ", serviceUser='" + serviceUser + '\'' +
+                ", configUser='" + configUser + '\'' +
+                ", pluginFile='" + pluginFile + '\'' +
+                ", bundle=" + bundle +
+                ", overwrite=" + overwrite +
+                ", restartService=" + restartService +
+                ", waitForRestart=" + waitForRestart +
+                ", timeout=" + timeout +
+                '}';
+    }
+}
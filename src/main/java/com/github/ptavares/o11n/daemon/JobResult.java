@@ -0,0 +1,90 @@
+package com.github.ptavares.o11n.daemon;
+
+/**
+ * Outcome of a {@link DeployJob}, sent back as JSON by the {@link DeployDaemon}
+ *
+ * @author Patrick Tavares
+ */
+public class JobResult {
+
+    /**
+     * <code>true</code> if the plugin file was installed, and the server restarted when requested
+     */
+    private boolean success;
+
+    /**
+     * Install outcome : <code>DONE</code> or <code>FAILURE</code>
+     */
+    private String install;
+
+    /**
+     * Restart outcome : <code>DISABLED</code>, <code>DONE</code>, <code>COALESCED</code> or <code>FAILURE</code>
+     */
+    private String restart;
+
+    /**
+     * Jobs processed in the same batch on the server
+     */
+    private int batchSize;
+
+    /**
+     * Error message, if any
+     */
+    private String message;
+
+    /**
+     * Constructor
+     *
+     * @param success   <code>true</code> if the job succeeded
+     * @param install   install outcome
+     * @param restart   restart outcome
+     * @param batchSize jobs processed in the same batch
+     * @param message   error message, may be <code>null</code>
+     */
+    JobResult(boolean success, String install, String restart, int batchSize, String message) {
+        this.success = success;
+        this.install = install;
+        this.restart = restart;
+        this.batchSize = batchSize;
+        this.message = message;
+    }
+
+    /**
+     * @param message error message
+     * @return a failed result, for a job that could not be processed
+     */
+    static JobResult failure(String message) {
+        return new JobResult(false, "FAILURE", "SKIPPED", 0, message);
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getInstall() {
+        return install;
+    }
+
+    public String getRestart() {
+        return restart;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "JobResult{" +
+                "success=" + success +
+                ", install='" + install + '\'' +
+                ", restart='" + restart + '\'' +
+                ", batchSize=" + batchSize +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
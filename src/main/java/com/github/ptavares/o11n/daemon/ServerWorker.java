@@ -0,0 +1,272 @@
+package com.github.ptavares.o11n.daemon;
+
+import com.github.ptavares.o11n.coordination.RestartCoordinator;
+import com.github.ptavares.o11n.engine.DeployEngine;
+import com.github.ptavares.o11n.rest.Deadline;
+import com.github.ptavares.o11n.rest.RestClient;
+import com.github.ptavares.o11n.state.DeployHistory;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Queue of {@link DeployJob}s of one vRO server, processed by batches on a dedicated thread with a warm {@link RestClient} :
+ * each plugin file of a batch is installed once, and the server is restarted once for the whole batch.
+ * <p>
+ * Only jobs with the same credentials are batched together, so that every job is run with its own authentication :
+ * a job never succeeds on the credentials of another build.
+ *
+ * @author Patrick Tavares
+ */
+class ServerWorker implements Runnable, Closeable {
+
+    /**
+     * Max time to wait for the restart window of the server, held by builds outside of the daemon, in milliseconds
+     */
+    private static final long RESTART_LOCK_TIMEOUT = 2 * DeployEngine.RESTART_TIMEOUT;
+
+    /**
+     * A job waiting for its result
+     */
+    private static class PendingJob {
+        private final DeployJob job;
+        private final Deadline deadline;
+        private final CompletableFuture<JobResult> result = new CompletableFuture<>();
+
+        PendingJob(DeployJob job) {
+            this.job = job;
+            this.deadline = Deadline.after(job.getTimeout());
+        }
+    }
+
+    /**
+     * Daemon {@link Log}
+     */
+    private final Log log;
+
+    /**
+     * vRO Server Host or IP
+     */
+    private final String serverHost;
+
+    /**
+     * vRO Plugin Service REST API Port
+     */
+    private final Integer servicePort;
+
+    /**
+     * RestClient of the server, kept open between batches
+     */
+    private final RestClient restClient;
+
+    /**
+     * Restart windows shared with builds outside of the daemon
+     */
+    private final RestartCoordinator restartCoordinator;
+
+    /**
+     * Time to wait for more jobs once a job is received, in milliseconds
+     */
+    private final long batchWindow;
+
+    /**
+     * Jobs waiting for the next batch
+     */
+    private final BlockingQueue<PendingJob> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * Processing thread
+     */
+    private final Thread thread;
+
+    /**
+     * Constructor, starting the processing thread
+     *
+     * @param log                Daemon {@link Log}
+     * @param serverHost         vRO Server Host or IP
+     * @param servicePort        vRO Plugin Service REST API Port
+     * @param restClient         RestClient of the server, closed with this worker
+     * @param restartCoordinator restart windows shared with builds outside of the daemon
+     * @param batchWindow        time to wait for more jobs once a job is received, in milliseconds
+     */
+    ServerWorker(Log log, String serverHost, Integer servicePort, RestClient restClient, RestartCoordinator restartCoordinator, long batchWindow) {
+        this.log = log;
+        this.serverHost = serverHost;
+        this.servicePort = servicePort;
+        this.restClient = restClient;
+        this.restartCoordinator = restartCoordinator;
+        this.batchWindow = batchWindow;
+        this.thread = new Thread(this, "o11n-daemon-" + serverHost);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queue a job for the next batch
+     *
+     * @param job the job
+     * @return the job result, completed once its batch is processed
+     */
+    CompletableFuture<JobResult> submit(DeployJob job) {
+        PendingJob pending = new PendingJob(job);
+        queue.add(pending);
+        return pending.result;
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<PendingJob> batch = new ArrayList<>();
+            try {
+                batch.add(queue.take());
+                // Let concurrent builds join the batch
+                Thread.sleep(batchWindow);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            queue.drainTo(batch);
+            if (Thread.currentThread().isInterrupted()) {
+                for (PendingJob pending : batch) {
+                    pending.result.complete(JobResult.failure("Daemon stopped"));
+                }
+                return;
+            }
+            for (List<PendingJob> jobs : byCredentials(batch)) {
+                try {
+                    process(jobs);
+                } catch (RuntimeException e) {
+                    log.error(String.format("Unexpected error while deploying on '%s'", serverHost), e);
+                    for (PendingJob pending : jobs) {
+                        pending.result.complete(JobResult.failure("Unexpected error : " + e));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Split a batch by credentials, in order of first job
+     */
+    private static List<List<PendingJob>> byCredentials(List<PendingJob> batch) {
+        List<List<PendingJob>> groups = new ArrayList<>();
+        for (PendingJob pending : batch) {
+            List<PendingJob> group = null;
+            for (List<PendingJob> candidate : groups) {
+                if (candidate.get(0).job.sameCredentials(pending.job)) {
+                    group = candidate;
+                    break;
+                }
+            }
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.add(group);
+            }
+            group.add(pending);
+        }
+        return groups;
+    }
+
+    /**
+     * Process a batch of jobs with the same credentials : install each plugin file once, then restart once if requested by a job
+     */
+    private void process(List<PendingJob> batch) {
+        log.info(String.format("Processing %d job(s) on '%s'", batch.size(), serverHost));
+        Map<String, List<PendingJob>> byFile = new LinkedHashMap<>();
+        for (PendingJob pending : batch) {
+            if (pending.deadline.isExpired()) {
+                pending.result.complete(new JobResult(false, "SKIPPED", "SKIPPED", batch.size(),
+                        String.format("Deploy deadline exceeded before install on '%s'", serverHost)));
+                continue;
+            }
+            byFile.computeIfAbsent(pending.job.getPluginFile(), k -> new ArrayList<>()).add(pending);
+        }
+
+        // 1. Install each plugin file once, with the options of its last job
+        List<PendingJob> installed = new ArrayList<>();
+        for (Map.Entry<String, List<PendingJob>> file : byFile.entrySet()) {
+            List<PendingJob> jobs = file.getValue();
+            DeployJob last = jobs.get(jobs.size() - 1).job;
+            boolean overwrite = false;
+            for (PendingJob pending : jobs) {
+                overwrite |= pending.job.isOverwrite();
+            }
+            String error = null;
+            try {
+                if (!engine(last).installPlugin(Paths.get(file.getKey()), last.getBundle(), overwrite)) {
+                    error = String.format("Failed to install plugin '%s' on '%s'", file.getKey(), serverHost);
+                }
+            } catch (MojoFailureException e) {
+                error = e.getMessage();
+            }
+            if (error == null) {
+                installed.addAll(jobs);
+            } else {
+                for (PendingJob pending : jobs) {
+                    pending.result.complete(new JobResult(false, "FAILURE", "SKIPPED", batch.size(), error));
+                }
+            }
+        }
+        long installTime = System.currentTimeMillis();
+
+        // 2. Restart once for the batch
+        DeployJob restartJob = null;
+        boolean waitReady = false;
+        long waitTimeout = DeployEngine.RESTART_TIMEOUT;
+        for (PendingJob pending : installed) {
+            if (pending.job.isRestartService()) {
+                restartJob = pending.job;
+                if (pending.job.isWaitForRestart()) {
+                    waitReady = true;
+                    // The wait ends with the first deadline of the waiting jobs
+                    waitTimeout = pending.deadline.cap(waitTimeout);
+                }
+            }
+        }
+        String restart = "DISABLED";
+        String error = null;
+        if (restartJob != null) {
+            DeployEngine engine = engine(restartJob);
+            try {
+                restart = engine.restartInWindow(restartCoordinator, DeployHistory.target(serverHost, servicePort), RESTART_LOCK_TIMEOUT,
+                        installTime, waitReady ? waitTimeout : 0) ? "DONE" : "COALESCED";
+            } catch (MojoFailureException e) {
+                error = e.getMessage();
+            }
+            if (error != null) {
+                log.warn(error);
+                restart = "FAILURE";
+            }
+        }
+
+        for (PendingJob pending : installed) {
+            boolean restarted = pending.job.isRestartService();
+            pending.result.complete(new JobResult(!restarted || error == null, "DONE", restarted ? restart : "DISABLED",
+                    batch.size(), restarted ? error : null));
+        }
+    }
+
+    private DeployEngine engine(DeployJob job) {
+        return new DeployEngine(log, restClient, job.getServiceUser(), job.getServicePassword(), job.getConfigUser(), job.getConfigPassword());
+    }
+
+    /**
+     * Stop the processing thread and close the RestClient
+     *
+     * @throws IOException In case of error
+     */
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        restClient.close();
+    }
+}
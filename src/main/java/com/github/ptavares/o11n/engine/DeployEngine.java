@@ -0,0 +1,468 @@
+package com.github.ptavares.o11n.engine;
+
+import com.github.ptavares.o11n.bundle.BundleArchive;
+import com.github.ptavares.o11n.bundle.BundleValidator;
+import com.github.ptavares.o11n.coordination.RestartCoordinator;
+import com.github.ptavares.o11n.coordination.RestartLease;
+import com.github.ptavares.o11n.enums.FileBundle;
+import com.github.ptavares.o11n.packages.PackageDeletion;
+import com.github.ptavares.o11n.packages.PackageUninstaller;
+import com.github.ptavares.o11n.rest.InstalledPlugin;
+import com.github.ptavares.o11n.rest.RestClient;
+import com.github.ptavares.o11n.rest.RestRequest;
+import com.github.ptavares.o11n.rest.RestResponse;
+import com.github.ptavares.o11n.rest.ServerStatus;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * Deploy operations on one vRO server : install a plugin file, delete packages, restart the service and wait for it.
+ * <p>
+ * This is the engine behind the Maven goals, usable as a library : it only needs a {@link Log} and a configured
+ * {@link RestClient}, no Maven runtime.
+ *
+ * @author Patrick Tavares
+ */
+public class DeployEngine {
+
+    /**
+     * Max time to wait for vRO service restart, in milliseconds
+     */
+    public static final long RESTART_TIMEOUT = 300000;
+
+    /**
+     * Time after which a running service is considered restarted, even if it was never seen stopped
+     */
+    private static final long RESTART_GRACE_PERIOD = 30000;
+
+    /**
+     * Interval between two status checks while waiting for restart, in milliseconds
+     */
+    private static final long RESTART_POLL_INTERVAL = 5000;
+
+    /**
+     * Plugin {@link Log}
+     */
+    private final Log log;
+
+    /**
+     * RestClient to use for WebServices calls
+     */
+    private final RestClient restClient;
+
+    /**
+     * vRO Plugin Service REST API user
+     */
+    private final String serviceUser;
+
+    /**
+     * Password of <code>serviceUser</code>
+     */
+    private final String servicePassword;
+
+    /**
+     * vRO Config Service REST API user
+     */
+    private final String configUser;
+
+    /**
+     * Password of <code>configUser</code>
+     */
+    private final String configPassword;
+
+    /**
+     * Control Center resource returning the server log, watched while waiting for restart. <code>null</code> to disable
+     */
+    private String restartLogResource = RestartLogWatcher.DEFAULT_LOG_RESOURCE;
+
+    /**
+     * Patterns of server log lines reporting a failed restart
+     */
+    private List<Pattern> restartFailurePatterns = RestartLogWatcher.DEFAULT_FAILURE_PATTERNS;
+
+    /**
+     * Server log excerpt of the last failed restart, <code>null</code> if none
+     */
+    private volatile String restartFailure;
+
+    /**
+     * Server log watch prepared before the restart request, <code>null</code> if none
+     */
+    private RestartLogWatcher restartWatcher;
+
+    /**
+     * Constructor
+     *
+     * @param log             Plugin {@link Log}
+     * @param restClient      RestClient to use for WebServices calls, with its base url configured
+     * @param serviceUser     vRO Plugin Service REST API user
+     * @param servicePassword password of <code>serviceUser</code>
+     * @param configUser      vRO Config Service REST API user
+     * @param configPassword  password of <code>configUser</code>
+     */
+    public DeployEngine(Log log, RestClient restClient, String serviceUser, String servicePassword, String configUser, String configPassword) {
+        this.log = log;
+        this.restClient = restClient;
+        this.serviceUser = serviceUser;
+        this.servicePassword = servicePassword;
+        this.configUser = configUser;
+        this.configPassword = configPassword;
+    }
+
+    /**
+     * @return RestClient used for WebServices calls
+     */
+    public RestClient getRestClient() {
+        return restClient;
+    }
+
+    /**
+     * Configure the server log watch while waiting for restart
+     *
+     * @param logResource     Control Center resource returning the server log, <code>null</code> to disable the watch
+     * @param failurePatterns patterns of server log lines reporting a failed restart, empty to disable the watch
+     */
+    public void setRestartWatch(String logResource, List<Pattern> failurePatterns) {
+        this.restartLogResource = logResource;
+        this.restartFailurePatterns = failurePatterns;
+    }
+
+    /**
+     * @return server log excerpt of the last failed restart, <code>null</code> if the last wait didn't find a failure in the server log
+     */
+    public String getRestartFailure() {
+        return restartFailure;
+    }
+
+    /**
+     * Install plugin file
+     *
+     * @param pluginFile Path to plugin file
+     * @param bundle     plugin file type
+     * @param overwrite  <code>true</code> to overwrite an installed plugin with the same version
+     * @return <code>true</code> if success, <code>false</code> otherwise
+     * @throws MojoFailureException In case of error
+     */
+    public boolean installPlugin(Path pluginFile, FileBundle bundle, boolean overwrite) throws MojoFailureException {
+
+        log.info("------------------");
+        log.info("- Install Plugin -");
+        log.info("------------------");
+
+        log.info(String.format("Installing plugin file '%s' on '%s'...", pluginFile.getFileName(), restClient.getServerHost()));
+
+        // Prepare Request
+        RestRequest restRequest = new RestRequest();
+        restRequest.setHttpAuthentication(serviceUser, servicePassword)
+                .setResource("/plugins/")
+                .setMethod(RestRequest.Method.Post)
+                .addPluginFile(pluginFile.toFile(), bundle, overwrite);
+        // Execute Request
+        RestResponse response = restClient.executeServiceRequest(restRequest);
+        // Analyse status code
+        switch (response.getStatusCode()) {
+            case 201:
+                log.debug("HTTP 201. Plugin successfully installed in vRO Server.");
+                return true;
+            case 204:
+                log.debug("HTTP 204. Plugin successfully installed in vRO Server.");
+                return true;
+            case 401:
+                log.warn("HTTP 401. Authentication is required to upload a plugin into vRO Server.");
+                return false;
+            case 403:
+                log.warn("HTTP 403. The provided user is not authorized to upload a plugin into vRO Server.");
+                return false;
+            case 404:
+                log.warn("HTTP 404. Requested resource not found. Please check vRO Server URL configuration and ensure that vRO Server is reachable from the machine running this Maven Mojo.");
+                return false;
+            default:
+                log.warn("Unknown status code HTTP " + response.getStatusCode() + " returned from vRO Server. Please check if the plugin has been uploaded. Got no idea !");
+                return false;
+
+        }
+    }
+
+    /**
+     * Delete packages, concurrently
+     *
+     * @param deletions   packages or patterns to delete
+     * @param concurrency max deletions running at the same time
+     * @return outcome by package name, in deletion order
+     * @throws MojoFailureException if packages can't be listed to resolve patterns
+     */
+    public Map<String, PackageUninstaller.Outcome> uninstallPackages(List<PackageDeletion> deletions, int concurrency) throws MojoFailureException {
+
+        log.info("----------------------------");
+        log.info("- Delete package requested - ");
+        log.info("----------------------------");
+
+        log.info(String.format("Deleting plug-in package(s) %s on '%s'...", deletions, restClient.getServerHost()));
+
+        return new PackageUninstaller(log, restClient, serviceUser, servicePassword, concurrency).uninstall(deletions);
+    }
+
+    /**
+     * Validate plugin file before install : zip structure, entries CRC and plugin descriptor
+     *
+     * @param pluginFile Path to plugin file
+     * @param bundle     Plugin file type
+     * @return the validated plugin file
+     * @throws MojoFailureException if the plugin file is invalid
+     */
+    public BundleArchive validatePlugin(Path pluginFile, FileBundle bundle) throws MojoFailureException {
+        log.info(String.format("Validating plugin file '%s'...", pluginFile.getFileName()));
+        return new BundleValidator(log).validate(pluginFile, bundle);
+    }
+
+    /**
+     * Restart vRO Server in its restart window : the {@link RestartLease} of the server is held while restarting and waiting,
+     * and the restart is skipped if another build restarted the server after <code>installTime</code>.
+     *
+     * @param coordinator restart coordinator shared with other builds
+     * @param server      server name, see {@link com.github.ptavares.o11n.state.DeployHistory#target(String, Integer)}
+     * @param lockTimeout max time to wait for the restart window, in milliseconds
+     * @param installTime end of the install to load, in milliseconds
+     * @param waitTimeout max time to wait for the server to be ready again, in milliseconds, <code>0</code> to not wait
+     * @return <code>true</code> if restarted, <code>false</code> if coalesced with the restart of another build
+     * @throws MojoFailureException if the restart window can't be acquired, or the restart fails
+     */
+    public boolean restartInWindow(RestartCoordinator coordinator, String server, long lockTimeout, long installTime, long waitTimeout)
+            throws MojoFailureException {
+        log.info(String.format("Waiting for restart window of vRO service on '%s'...", server));
+        try (RestartLease lease = coordinator.acquire(server, lockTimeout)) {
+            long restartTime = lease.getLastRestart();
+            boolean restarted = restartTime <= installTime;
+            if (!restarted) {
+                // Restart requested by another build after this install : the plugin is loaded by this restart too
+                log.info(String.format("vRO service on '%s' was restarted by another build after this install, skipping restart", server));
+            } else {
+                if (waitTimeout > 0) {
+                    prepareRestartWatch();
+                }
+                restartTime = System.currentTimeMillis();
+                if (!restartService()) {
+                    throw new MojoFailureException(String.format("Failed to request restart vRO service on '%s'", server));
+                }
+                lease.recordRestart(restartTime);
+            }
+            if (waitTimeout > 0 && !waitForRestart(restartTime, waitTimeout)) {
+                if (restartFailure != null) {
+                    throw new MojoFailureException(String.format("Failed to restart vRO service on '%s', server log reports :%n%s", server, restartFailure));
+                }
+                throw new MojoFailureException(String.format("Failed to restart vRO service on '%s'", server));
+            }
+            return restarted;
+        } catch (IOException e) {
+            throw new MojoFailureException(String.format("Unable to coordinate restart of vRO service on '%s' : %s", server, e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoFailureException(String.format("Interrupted while waiting for restart window of vRO service on '%s'", server));
+        }
+    }
+
+    /**
+     * Read the server log before the restart request, so that {@link #waitForRestart(long, long)} only looks for failures
+     * in the lines written after it. To call before {@link #restartService()}.
+     */
+    public void prepareRestartWatch() {
+        restartWatcher = null;
+        if (!StringUtils.isEmpty(restartLogResource) && restartFailurePatterns != null && !restartFailurePatterns.isEmpty()) {
+            restartWatcher = new RestartLogWatcher(log, restClient, configUser, configPassword, restartLogResource, restartFailurePatterns).snapshot();
+        }
+    }
+
+    /**
+     * Restart vRO Server
+     *
+     * @return <code>true</code> if success, <code>false</code> otherwise
+     * @throws MojoFailureException In case of error
+     */
+    public boolean restartService() throws MojoFailureException {
+
+        log.info("-------------------");
+        log.info("- Restart Service -");
+        log.info("-------------------");
+
+        log.info(String.format("Restarting vRO service on host '%s'...", restClient.getServerHost()));
+
+        // Prepare Request
+        RestRequest restRequest = new RestRequest();
+        restRequest.setHttpAuthentication(configUser, configPassword)
+                .setResource("/server/status/restart")
+                .setMethod(RestRequest.Method.Post);
+
+        // Execute Request
+        RestResponse response = restClient.executeConfigRequest(restRequest);
+        // Extract current status here.
+        String currentStatus = response.getResponseBody();
+        // Analyse status code
+        switch (response.getStatusCode()) {
+            case 200:
+            case 201:
+                log.debug(String.format("vRO service status : %s", currentStatus));
+                return true;
+            case 401:
+                log.warn("HTTP 401. Authentication is required to restart the vRO service.");
+                return false;
+            case 403:
+                log.warn("HTTP 403. The provided user is not authorized to restart the vRO service.");
+                return false;
+            case 404:
+                log.warn("HTTP 404. The requested resource was not found. Please check vRO Server URL configuration and ensure that vRO Server is reachable from the machine running this Maven Mojo.");
+                return false;
+            default:
+                log.warn("Unknown status code HTTP " + response.getStatusCode() + " returned from vRO Server. Please verify if the vRO service has been restarted. Got no idea !");
+                return false;
+        }
+    }
+
+    /**
+     * Wait vRO Server : the service must have stopped then be running again, and its service API must answer.
+     * <p>
+     * Meanwhile, the server log is watched : the wait is aborted as soon as a line matches a failure pattern,
+     * see {@link #getRestartFailure()}. Without {@link #prepareRestartWatch()} before the restart request, the first log read
+     * while waiting is taken as baseline.
+     *
+     * @param restartTime time the restart was requested, in milliseconds
+     * @param timeout     max time to wait, in milliseconds
+     * @return <code>true</code> if success, <code>false</code> otherwise
+     */
+    public boolean waitForRestart(long restartTime, long timeout) {
+
+        log.info("----------------------------");
+        log.info("- Wait for restart Service -");
+        log.info("----------------------------");
+
+        log.info(String.format("Waiting fot restart of vRO service on host '%s'...", restClient.getServerHost()));
+
+        restartFailure = null;
+        RestartLogWatcher watcher = restartWatcher;
+        restartWatcher = null;
+        if (watcher == null && !StringUtils.isEmpty(restartLogResource) && restartFailurePatterns != null && !restartFailurePatterns.isEmpty()) {
+            watcher = new RestartLogWatcher(log, restClient, configUser, configPassword, restartLogResource, restartFailurePatterns);
+        }
+        if (watcher != null) {
+            watcher.start();
+        }
+        try {
+            long start = System.currentTimeMillis();
+            boolean stopped = false;
+            while (System.currentTimeMillis() - start < timeout) {
+                try {
+                    ServerStatus status = getServerStatus();
+                    if (!status.isRunning()) {
+                        stopped = true;
+                    } else if ((stopped || System.currentTimeMillis() - restartTime > RESTART_GRACE_PERIOD) && isServiceReady()) {
+                        log.debug(String.format("vRO service on '%s' ready after %d ms", restClient.getServerHost(), System.currentTimeMillis() - start));
+                        return true;
+                    }
+                } catch (MojoFailureException e) {
+                    // Server is restarting
+                    stopped = true;
+                }
+                long pause = Math.min(RESTART_POLL_INTERVAL, Math.max(1, timeout - (System.currentTimeMillis() - start)));
+                try {
+                    if (watcher == null) {
+                        Thread.sleep(pause);
+                    } else {
+                        // Wake up as soon as the server log reports a failure
+                        restartFailure = watcher.getFailure().get(pause, TimeUnit.MILLISECONDS);
+                        log.error(String.format("vRO service on '%s' failed to restart, server log :%n%s", restClient.getServerHost(), restartFailure));
+                        return false;
+                    }
+                } catch (TimeoutException e) {
+                    // No failure yet
+                } catch (ExecutionException e) {
+                    log.debug("Error while watching vRO server log", e);
+                    watcher = null;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        } finally {
+            if (watcher != null) {
+                watcher.close();
+            }
+        }
+
+        log.warn("Timeout. Unable to get the vRO configuration server. Please check your vRO server.");
+        return false;
+    }
+
+    /**
+     * Get vRO service status from vRO Control Center
+     *
+     * @return the service status, with a <code>null</code> status if it can't be read
+     * @throws MojoFailureException In case of error
+     */
+    public ServerStatus getServerStatus() throws MojoFailureException {
+        // Prepare Request
+        RestRequest restRequest = new RestRequest();
+        restRequest.setHttpAuthentication(configUser, configPassword)
+                .setResource("/server/status")
+                .setMethod(RestRequest.Method.Get);
+        // Execute Request
+        RestResponse response = restClient.executeConfigRequest(restRequest);
+        if (response.getStatusCode() != 200) {
+            log.debug("HTTP " + response.getStatusCode() + ". Unable to get vRO service status.");
+            return new ServerStatus(null, false);
+        }
+        ServerStatus status = ServerStatus.fromJson(response.getResponseBody());
+        log.debug(String.format("vRO service status on '%s' : %s", restClient.getServerHost(), status));
+        return status;
+    }
+
+    /**
+     * Check that vRO Plugin Service REST API answers
+     *
+     * @return <code>true</code> if the service API answers
+     * @throws MojoFailureException In case of error
+     */
+    public boolean isServiceReady() throws MojoFailureException {
+        // Prepare Request
+        RestRequest restRequest = new RestRequest();
+        restRequest.setHttpAuthentication(serviceUser, servicePassword)
+                .setResource("/about")
+                .setMethod(RestRequest.Method.Get);
+        // Execute Request
+        return restClient.executeServiceRequest(restRequest).getStatusCode() == 200;
+    }
+
+    /**
+     * Get plugins installed in vRO Server
+     *
+     * @return installed plugins by name, <code>null</code> if they can't be read
+     * @throws MojoFailureException In case of error
+     */
+    public Map<String, InstalledPlugin> getInstalledPlugins() throws MojoFailureException {
+        // Prepare Request
+        RestRequest restRequest = new RestRequest();
+        restRequest.setHttpAuthentication(serviceUser, servicePassword)
+                .setResource("/plugins")
+                .setMethod(RestRequest.Method.Get);
+        // Execute Request
+        RestResponse response = restClient.executeServiceRequest(restRequest);
+        if (response.getStatusCode() != 200) {
+            log.debug("HTTP " + response.getStatusCode() + ". Unable to get installed plugins from vRO Server.");
+            return null;
+        }
+        Map<String, InstalledPlugin> installed = new HashMap<>();
+        for (InstalledPlugin plugin : InstalledPlugin.fromJson(response.getResponseBody())) {
+            installed.put(plugin.getName(), plugin);
+        }
+        return installed;
+    }
+}
@@ -0,0 +1,306 @@
+package com.github.ptavares.o11n.engine;
+
+import com.github.ptavares.o11n.rest.RestClient;
+import com.github.ptavares.o11n.rest.RestRequest;
+import com.github.ptavares.o11n.rest.RestResponse;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+
+/**
+ * Tail the vRO server log from Control Center while the service restarts, on a dedicated thread,
+ * and report the first line matching a failure pattern with its surrounding lines.
+ * <p>
+ * Lines of the log read by {@link #snapshot()}, before the restart is requested, are ignored. If the log can't be read then,
+ * the first log read by the watch is taken as baseline instead : failures are only looked for in the following reads, never in
+ * the history of the server. New lines are found by content, so that the log may be a fixed-size tail or be rotated by the
+ * restart : the lines after the last read one, or if it is no longer in the log, the lines never read before.
+ *
+ * @author Patrick Tavares
+ */
+public class RestartLogWatcher implements Runnable, Closeable {
+
+    /**
+     * Default Control Center resource returning the server log
+     */
+    public static final String DEFAULT_LOG_RESOURCE = "/server/log";
+
+    /**
+     * Default failure patterns : plugin load errors and startup exceptions
+     */
+    public static final List<Pattern> DEFAULT_FAILURE_PATTERNS = Collections.unmodifiableList(Arrays.asList(
+            Pattern.compile("(?i)(unable|failed) to (load|install|start|initialize) plug-?in"),
+            Pattern.compile("(?i)plug-?in .* failed to (load|start|initialize)"),
+            Pattern.compile("Application startup failed"),
+            Pattern.compile("BeanCreationException"),
+            Pattern.compile("OutOfMemoryError")));
+
+    /**
+     * Interval between two log reads, in milliseconds
+     */
+    private static final long POLL_INTERVAL = 1000;
+
+    /**
+     * Lines kept before and after the failure line in the excerpt
+     */
+    private static final int EXCERPT_BEFORE = 5;
+    private static final int EXCERPT_AFTER = 10;
+
+    /**
+     * Max lines remembered as already read
+     */
+    static final int MAX_SEEN_LINES = 10000;
+
+    /**
+     * Plugin {@link Log}
+     */
+    private final Log log;
+
+    /**
+     * RestClient to use for WebServices calls
+     */
+    private final RestClient restClient;
+
+    /**
+     * vRO Config Service REST API user
+     */
+    private final String configUser;
+
+    /**
+     * Password of <code>configUser</code>
+     */
+    private final String configPassword;
+
+    /**
+     * Control Center resource returning the server log
+     */
+    private final String resource;
+
+    /**
+     * Patterns of failure lines
+     */
+    private final List<Pattern> failurePatterns;
+
+    /**
+     * Log excerpt of the first failure found
+     */
+    private final CompletableFuture<String> failure = new CompletableFuture<>();
+
+    /**
+     * Reading thread
+     */
+    private final Thread thread;
+
+    /**
+     * <code>true</code> once a log was read : the lines already in the log are known
+     */
+    private boolean baseline;
+
+    /**
+     * Last line already read, <code>null</code> if none
+     */
+    private String lastLine;
+
+    /**
+     * Lines already read, oldest first
+     */
+    private final Set<String> seen = new LinkedHashSet<>();
+
+    /**
+     * Constructor
+     *
+     * @param log             Plugin {@link Log}
+     * @param restClient      RestClient to use for WebServices calls
+     * @param configUser      vRO Config Service REST API user
+     * @param configPassword  password of <code>configUser</code>
+     * @param resource        Control Center resource returning the server log
+     * @param failurePatterns patterns of failure lines
+     */
+    public RestartLogWatcher(Log log, RestClient restClient, String configUser, String configPassword, String resource, List<Pattern> failurePatterns) {
+        this.log = log;
+        this.restClient = restClient;
+        this.configUser = configUser;
+        this.configPassword = configPassword;
+        this.resource = resource;
+        this.failurePatterns = failurePatterns;
+        this.thread = new Thread(this, "o11n-log-" + restClient.getServerHost());
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Read the current log, before the restart is requested : its lines are not watched
+     *
+     * @return this watcher
+     */
+    public RestartLogWatcher snapshot() {
+        read();
+        if (!baseline) {
+            log.debug(String.format("Unable to read vRO server log on '%s' before restart, the first read log is taken as baseline", restClient.getServerHost()));
+        }
+        return this;
+    }
+
+    /**
+     * Start watching the next lines
+     *
+     * @return this watcher
+     */
+    public RestartLogWatcher start() {
+        thread.start();
+        return this;
+    }
+
+    /**
+     * @return the log excerpt of the first failure found, completed once a failure line is read
+     */
+    public CompletableFuture<String> getFailure() {
+        return failure;
+    }
+
+    @Override
+    public void run() {
+        while (!Thread.currentThread().isInterrupted() && !failure.isDone()) {
+            try {
+                Thread.sleep(POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                return;
+            }
+            read();
+        }
+    }
+
+    /**
+     * Read the log and look for failures in the new lines
+     */
+    private void read() {
+        List<String> lines;
+        try {
+            // Prepare Request
+            RestRequest restRequest = new RestRequest();
+            restRequest.setHttpAuthentication(configUser, configPassword)
+                    .setResource(resource)
+                    .setMethod(RestRequest.Method.Get);
+            // Execute Request
+            RestResponse response = restClient.executeConfigRequest(restRequest);
+            // Analyse status code
+            if (response.getStatusCode() != 200) {
+                log.debug("HTTP " + response.getStatusCode() + ". Unable to read vRO server log.");
+                return;
+            }
+            lines = parseLines(response.getResponseBody());
+        } catch (MojoFailureException e) {
+            // Control Center is restarting too
+            log.debug(String.format("Unable to read vRO server log on '%s' : %s", restClient.getServerHost(), e.getMessage()));
+            return;
+        }
+        String excerpt = process(lines);
+        if (excerpt != null) {
+            failure.complete(excerpt);
+        }
+    }
+
+    /**
+     * Look for failures in the lines not read yet, then remember the lines as read.
+     * The first read log is only remembered : it is the baseline of the watch.
+     *
+     * @param lines log lines
+     * @return the log excerpt of the first failure found, <code>null</code> if none
+     */
+    String process(List<String> lines) {
+        if (baseline) {
+            int last = lastLine == null ? -1 : lines.lastIndexOf(lastLine);
+            if (lastLine != null && last < 0) {
+                log.debug(String.format("Last read line no longer in vRO server log on '%s', reading unseen lines", restClient.getServerHost()));
+            }
+            for (int i = last + 1; i < lines.size(); i++) {
+                if (last < 0 && seen.contains(lines.get(i))) {
+                    continue;
+                }
+                for (Pattern pattern : failurePatterns) {
+                    if (pattern.matcher(lines.get(i)).find()) {
+                        List<String> excerpt = lines.subList(Math.max(0, i - EXCERPT_BEFORE), Math.min(lines.size(), i + EXCERPT_AFTER + 1));
+                        return String.join(System.lineSeparator(), excerpt);
+                    }
+                }
+            }
+        }
+        // Remember read lines
+        for (String line : lines) {
+            seen.remove(line);
+            seen.add(line);
+        }
+        Iterator<String> oldest = seen.iterator();
+        while (seen.size() > MAX_SEEN_LINES) {
+            oldest.next();
+            oldest.remove();
+        }
+        if (!lines.isEmpty()) {
+            lastLine = lines.get(lines.size() - 1);
+        }
+        baseline = true;
+        return null;
+    }
+
+    /**
+     * Split a log response body into lines : a JSON array of lines, a JSON object with such an array or a text member, or plain text
+     *
+     * @param body response body
+     * @return the log lines
+     */
+    static List<String> parseLines(String body) {
+        if (body == null) {
+            return Collections.emptyList();
+        }
+        try {
+            JsonElement root = new JsonParser().parse(body);
+            if (root.isJsonObject()) {
+                for (Map.Entry<String, JsonElement> member : root.getAsJsonObject().entrySet()) {
+                    JsonElement value = member.getValue();
+                    if (value.isJsonArray()) {
+                        root = value;
+                        break;
+                    }
+                    if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isString()) {
+                        return Arrays.asList(value.getAsString().split("\\r?\\n"));
+                    }
+                }
+            }
+            if (root.isJsonArray()) {
+                List<String> lines = new ArrayList<>();
+                for (JsonElement line : (JsonArray) root) {
+                    lines.add(line.isJsonPrimitive() ? line.getAsString() : line.toString());
+                }
+                return lines;
+            }
+            if (root.isJsonPrimitive()) {
+                return Arrays.asList(root.getAsString().split("\\r?\\n"));
+            }
+        } catch (JsonParseException | IllegalStateException e) {
+            // Plain text
+        }
+        return Arrays.asList(body.split("\\r?\\n"));
+    }
+
+    /**
+     * Stop watching
+     */
+    @Override
+    public void close() {
+        thread.interrupt();
+    }
+}
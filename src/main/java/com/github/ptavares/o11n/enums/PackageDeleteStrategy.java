@@ -20,4 +20,20 @@ public enum PackageDeleteStrategy {
     public String getLabel() {
         return label;
     }
+
+    /**
+     * Find a strategy by name or label, ignoring case
+     *
+     * @param value strategy name (<code>DELETE_PACKAGE</code>) or label (<code>deletePackage</code>)
+     * @return the strategy
+     * @throws IllegalArgumentException if no strategy matches
+     */
+    public static PackageDeleteStrategy fromValue(String value) {
+        for (PackageDeleteStrategy strategy : values()) {
+            if (strategy.name().equalsIgnoreCase(value) || strategy.label.equalsIgnoreCase(value)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown package delete strategy : " + value);
+    }
 }
@@ -0,0 +1,30 @@
+package com.github.ptavares.o11n.enums;
+
+/**
+ * Enum for rules deciding if vRO service must be restarted after a plugin install.
+ *
+ * @author Patrick Tavares
+ */
+public enum RestartRule {
+
+    /**
+     * Always restart
+     */
+    ALWAYS,
+    /**
+     * Restart if a plugin was not installed before
+     */
+    NEW_PLUGIN,
+    /**
+     * Restart if the installed plugin version changed, or is unknown
+     */
+    VERSION_CHANGE,
+    /**
+     * Restart if the plugin file differs from the last one deployed on the server, or is unknown
+     */
+    CONTENT_CHANGE,
+    /**
+     * Restart if the vRO Control Center reports pending changes
+     */
+    PENDING_CHANGES
+}
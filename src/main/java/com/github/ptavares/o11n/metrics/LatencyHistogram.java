@@ -0,0 +1,152 @@
+package com.github.ptavares.o11n.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free, allocation free latency histogram with log-linear buckets (HDR style) : each power of two range
+ * is split into {@link #SUB_BUCKETS} linear buckets, so the relative error of any recorded value is below 1/16.
+ * <p>
+ * Values are recorded in microseconds, up to about 2^40 microseconds (12 days).
+ *
+ * @author Patrick Tavares
+ */
+public class LatencyHistogram {
+
+    /**
+     * Linear buckets per power of two, as a power of two
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * Linear buckets per power of two
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Highest power of two tracked
+     */
+    private static final int MAX_EXPONENT = 40;
+
+    /**
+     * Bucket count
+     */
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    /**
+     * Recorded values by bucket
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Recorded values count
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Recorded values sum, in microseconds
+     */
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Max recorded value, in microseconds
+     */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Record a value
+     *
+     * @param micros value in microseconds, negative values are recorded as 0
+     */
+    public void record(long micros) {
+        long value = Math.max(0, micros);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return recorded values count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return recorded values sum, in microseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * @return max recorded value, in microseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param bound upper bound, in microseconds
+     * @return count of recorded values lower than or equal to <code>bound</code>, within the buckets precision : only buckets
+     * whose highest value is lower than or equal to <code>bound</code> are counted, so the count never includes a greater value
+     */
+    public long countAtOrBelow(long bound) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS && upperBound(i) <= bound; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @param quantile quantile, between 0 and 1
+     * @return highest value of the bucket holding the quantile, in microseconds, <code>0</code> if empty
+     */
+    public long getQuantile(double quantile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Bucket of a value : values below {@link #SUB_BUCKETS} have their own bucket, then each power of two
+     * range has {@link #SUB_BUCKETS} buckets.
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+        int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        if (exponent == MAX_EXPONENT && value >= (1L << (MAX_EXPONENT + 1))) {
+            subBucket = SUB_BUCKETS - 1;
+        }
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Highest value of a bucket
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (subBucket + 1) * width - 1;
+    }
+}
@@ -0,0 +1,260 @@
+package com.github.ptavares.o11n.metrics;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.apache.http.pool.PoolStats;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+/**
+ * Export a {@link MetricsRegistry} as a Prometheus text file (for the node exporter textfile collector) and as JSON.
+ * Files are replaced atomically.
+ *
+ * @author Patrick Tavares
+ */
+public class MetricsExporter {
+
+    /**
+     * Name of the Prometheus text file
+     */
+    public static final String PROMETHEUS_FILE_NAME = "o11n-metrics.prom";
+
+    /**
+     * Name of the JSON file
+     */
+    public static final String JSON_FILE_NAME = "o11n-metrics.json";
+
+    /**
+     * Histogram buckets upper bounds, in seconds
+     */
+    private static final double[] BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300, 600, 1800};
+
+    /**
+     * Microseconds per second
+     */
+    private static final double MICROS = 1e6;
+
+    /**
+     * Plugin {@link Log}
+     */
+    private final Log log;
+
+    /**
+     * Constructor
+     *
+     * @param log Plugin {@link Log}
+     */
+    public MetricsExporter(Log log) {
+        this.log = log;
+    }
+
+    /**
+     * Write both files. Failures are only logged.
+     *
+     * @param registry  metrics to export
+     * @param directory target directory
+     */
+    public void export(MetricsRegistry registry, Path directory) {
+        try {
+            Files.createDirectories(directory);
+            write(directory.resolve(PROMETHEUS_FILE_NAME), toPrometheus(registry));
+            write(directory.resolve(JSON_FILE_NAME), toJson(registry));
+            log.debug(String.format("Metrics written to '%s'", directory));
+        } catch (IOException e) {
+            log.warn(String.format("Unable to write metrics to '%s' : %s", directory, e.getMessage()));
+        }
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param registry metrics to export
+     * @return metrics in Prometheus text format
+     */
+    public String toPrometheus(MetricsRegistry registry) {
+        StringBuilder out = new StringBuilder(4096);
+        Map<String, MetricsRegistry.EndpointMetrics> endpoints = registry.getEndpoints();
+
+        header(out, "o11n_http_requests_total", "counter", "vRO server API calls, by HTTP status (-1 without response)");
+        for (MetricsRegistry.EndpointMetrics metrics : endpoints.values()) {
+            for (Map.Entry<Integer, Long> status : metrics.getStatuses().entrySet()) {
+                sample(out, "o11n_http_requests_total", labels(metrics) + ",status=\"" + status.getKey() + "\"", status.getValue());
+            }
+        }
+        header(out, "o11n_http_request_duration_seconds", "histogram", "vRO server API calls latency");
+        for (MetricsRegistry.EndpointMetrics metrics : endpoints.values()) {
+            histogram(out, "o11n_http_request_duration_seconds", labels(metrics), metrics.getLatency());
+        }
+        header(out, "o11n_http_request_bytes_total", "counter", "Bytes sent to vRO server API");
+        for (MetricsRegistry.EndpointMetrics metrics : endpoints.values()) {
+            sample(out, "o11n_http_request_bytes_total", labels(metrics), metrics.getBytesSent());
+        }
+        header(out, "o11n_http_response_bytes_total", "counter", "Bytes received from vRO server API");
+        for (MetricsRegistry.EndpointMetrics metrics : endpoints.values()) {
+            sample(out, "o11n_http_response_bytes_total", labels(metrics), metrics.getBytesReceived());
+        }
+        header(out, "o11n_http_retries_total", "counter", "vRO server API calls retried after an I/O error");
+        for (MetricsRegistry.EndpointMetrics metrics : endpoints.values()) {
+            sample(out, "o11n_http_retries_total", labels(metrics), metrics.getRetries());
+        }
+
+        Map<String, MetricsRegistry.PoolMetrics> pools = registry.getPools();
+        header(out, "o11n_http_pool_connections", "gauge", "Connections of the pool, by state, at the end of the execution");
+        for (Map.Entry<String, MetricsRegistry.PoolMetrics> pool : pools.entrySet()) {
+            PoolStats stats = pool.getValue().getStats();
+            if (stats != null) {
+                String server = "server=\"" + escape(pool.getKey()) + "\"";
+                sample(out, "o11n_http_pool_connections", server + ",state=\"leased\"", stats.getLeased());
+                sample(out, "o11n_http_pool_connections", server + ",state=\"available\"", stats.getAvailable());
+                sample(out, "o11n_http_pool_connections", server + ",state=\"pending\"", stats.getPending());
+                sample(out, "o11n_http_pool_connections", server + ",state=\"max\"", stats.getMax());
+            }
+        }
+        header(out, "o11n_http_pool_leased_max", "gauge", "Peak leased connections of the pool");
+        for (Map.Entry<String, MetricsRegistry.PoolMetrics> pool : pools.entrySet()) {
+            sample(out, "o11n_http_pool_leased_max", "server=\"" + escape(pool.getKey()) + "\"", pool.getValue().getMaxLeased());
+        }
+        header(out, "o11n_http_pool_pending_max", "gauge", "Peak requests waiting for a connection of the pool");
+        for (Map.Entry<String, MetricsRegistry.PoolMetrics> pool : pools.entrySet()) {
+            sample(out, "o11n_http_pool_pending_max", "server=\"" + escape(pool.getKey()) + "\"", pool.getValue().getMaxPending());
+        }
+
+        Map<String, MetricsRegistry.UploadMetrics> uploads = registry.getUploads();
+        header(out, "o11n_upload_bytes_total", "counter", "Plugin file bytes uploaded");
+        for (Map.Entry<String, MetricsRegistry.UploadMetrics> upload : uploads.entrySet()) {
+            sample(out, "o11n_upload_bytes_total", "server=\"" + escape(upload.getKey()) + "\"", upload.getValue().getBytes());
+        }
+        header(out, "o11n_upload_duration_seconds", "histogram", "Plugin file uploads duration, including import by vRO");
+        for (Map.Entry<String, MetricsRegistry.UploadMetrics> upload : uploads.entrySet()) {
+            histogram(out, "o11n_upload_duration_seconds", "server=\"" + escape(upload.getKey()) + "\"", upload.getValue().getDuration());
+        }
+        header(out, "o11n_upload_throughput_bytes_per_second", "gauge", "Throughput of the last plugin file upload");
+        for (Map.Entry<String, MetricsRegistry.UploadMetrics> upload : uploads.entrySet()) {
+            sample(out, "o11n_upload_throughput_bytes_per_second", "server=\"" + escape(upload.getKey()) + "\"", upload.getValue().getLastThroughput());
+        }
+
+        header(out, "o11n_restart_wait_seconds", "histogram", "Waits for vRO service to be ready after a restart");
+        for (Map.Entry<String, LatencyHistogram> wait : registry.getRestartWaits().entrySet()) {
+            histogram(out, "o11n_restart_wait_seconds", "server=\"" + escape(wait.getKey()) + "\"", wait.getValue());
+        }
+
+        header(out, "o11n_metrics_timestamp_seconds", "gauge", "Time these metrics were written");
+        out.append("o11n_metrics_timestamp_seconds ").append(System.currentTimeMillis() / 1000).append('\n');
+        return out.toString();
+    }
+
+    /**
+     * @param registry metrics to export
+     * @return metrics as JSON, latencies in milliseconds
+     */
+    public String toJson(MetricsRegistry registry) {
+        JsonObject root = new JsonObject();
+        root.addProperty("timestamp", System.currentTimeMillis());
+
+        JsonArray requests = new JsonArray();
+        for (MetricsRegistry.EndpointMetrics metrics : registry.getEndpoints().values()) {
+            JsonObject json = new JsonObject();
+            json.addProperty("server", metrics.getServer());
+            json.addProperty("method", metrics.getMethod());
+            json.addProperty("endpoint", metrics.getEndpoint());
+            JsonObject statuses = new JsonObject();
+            for (Map.Entry<Integer, Long> status : metrics.getStatuses().entrySet()) {
+                statuses.addProperty(String.valueOf(status.getKey()), status.getValue());
+            }
+            json.add("statuses", statuses);
+            json.add("latencyMs", summary(metrics.getLatency()));
+            json.addProperty("bytesSent", metrics.getBytesSent());
+            json.addProperty("bytesReceived", metrics.getBytesReceived());
+            json.addProperty("retries", metrics.getRetries());
+            requests.add(json);
+        }
+        root.add("requests", requests);
+
+        JsonObject pools = new JsonObject();
+        for (Map.Entry<String, MetricsRegistry.PoolMetrics> pool : registry.getPools().entrySet()) {
+            JsonObject json = new JsonObject();
+            PoolStats stats = pool.getValue().getStats();
+            if (stats != null) {
+                json.addProperty("leased", stats.getLeased());
+                json.addProperty("available", stats.getAvailable());
+                json.addProperty("pending", stats.getPending());
+                json.addProperty("max", stats.getMax());
+            }
+            json.addProperty("maxLeased", pool.getValue().getMaxLeased());
+            json.addProperty("maxPending", pool.getValue().getMaxPending());
+            pools.add(pool.getKey(), json);
+        }
+        root.add("pools", pools);
+
+        JsonObject uploads = new JsonObject();
+        for (Map.Entry<String, MetricsRegistry.UploadMetrics> upload : registry.getUploads().entrySet()) {
+            JsonObject json = new JsonObject();
+            json.addProperty("bytes", upload.getValue().getBytes());
+            json.add("durationMs", summary(upload.getValue().getDuration()));
+            json.addProperty("lastThroughputBytesPerSecond", upload.getValue().getLastThroughput());
+            uploads.add(upload.getKey(), json);
+        }
+        root.add("uploads", uploads);
+
+        JsonObject restartWaits = new JsonObject();
+        for (Map.Entry<String, LatencyHistogram> wait : registry.getRestartWaits().entrySet()) {
+            restartWaits.add(wait.getKey(), summary(wait.getValue()));
+        }
+        root.add("restartWaits", restartWaits);
+
+        return new GsonBuilder().setPrettyPrinting().create().toJson(root);
+    }
+
+    private static JsonObject summary(LatencyHistogram histogram) {
+        JsonObject json = new JsonObject();
+        json.addProperty("count", histogram.getCount());
+        json.addProperty("sum", histogram.getSum() / 1000);
+        json.addProperty("p50", histogram.getQuantile(0.5) / 1000);
+        json.addProperty("p90", histogram.getQuantile(0.9) / 1000);
+        json.addProperty("p99", histogram.getQuantile(0.99) / 1000);
+        json.addProperty("max", histogram.getMax() / 1000);
+        return json;
+    }
+
+    private static String labels(MetricsRegistry.EndpointMetrics metrics) {
+        return "server=\"" + escape(metrics.getServer()) + "\",method=\"" + metrics.getMethod()
+                + "\",endpoint=\"" + escape(metrics.getEndpoint()) + "\"";
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private static void histogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        for (double bound : BUCKETS) {
+            out.append(name).append("_bucket{").append(labels).append(",le=\"").append(bound).append("\"} ")
+                    .append(histogram.countAtOrBelow((long) (bound * MICROS))).append('\n');
+        }
+        out.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(histogram.getCount()).append('\n');
+        out.append(name).append("_sum{").append(labels).append("} ").append(histogram.getSum() / MICROS).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(histogram.getCount()).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,263 @@
+package com.github.ptavares.o11n.metrics;
+
+import org.apache.http.pool.PoolStats;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Telemetry of one plugin execution : vRO server API calls by endpoint, connection pools, uploads and
+ * waits for restart. Recording is thread safe and cheap, see {@link MetricsExporter} for export.
+ *
+ * @author Patrick Tavares
+ */
+public class MetricsRegistry {
+
+    /**
+     * Calls, by server, method and endpoint
+     */
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Uploads, by server
+     */
+    private final ConcurrentMap<String, UploadMetrics> uploads = new ConcurrentHashMap<>();
+
+    /**
+     * Waits for restart, by server
+     */
+    private final ConcurrentMap<String, LatencyHistogram> restartWaits = new ConcurrentHashMap<>();
+
+    /**
+     * Connection pools, by server
+     */
+    private final ConcurrentMap<String, PoolMetrics> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Record a call to a vRO server API
+     *
+     * @param server   vRO server
+     * @param method   HTTP method
+     * @param endpoint endpoint template, without ids
+     * @param status   HTTP status, <code>-1</code> if no response
+     * @param sent     request body size
+     * @param received response body size
+     * @param micros   latency, in microseconds
+     * @param retries  retries after I/O errors
+     */
+    public void recordRequest(String server, String method, String endpoint, int status, long sent, long received, long micros, int retries) {
+        EndpointMetrics metrics = endpoints.computeIfAbsent(server + ' ' + method + ' ' + endpoint,
+                k -> new EndpointMetrics(server, method, endpoint));
+        metrics.statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        metrics.latency.record(micros);
+        metrics.bytesSent.add(Math.max(0, sent));
+        metrics.bytesReceived.add(received);
+        metrics.retries.add(retries);
+    }
+
+    /**
+     * Record a plugin file upload
+     *
+     * @param server vRO server
+     * @param bytes  uploaded bytes
+     * @param micros upload duration, in microseconds
+     */
+    public void recordUpload(String server, long bytes, long micros) {
+        UploadMetrics metrics = uploads.computeIfAbsent(server, k -> new UploadMetrics());
+        metrics.bytes.add(Math.max(0, bytes));
+        metrics.duration.record(micros);
+        if (bytes > 0 && micros > 0) {
+            metrics.lastThroughput = bytes * TimeUnit.SECONDS.toMicros(1) / micros;
+        }
+    }
+
+    /**
+     * Record a wait for vRO service restart
+     *
+     * @param server vRO server
+     * @param micros wait duration, in microseconds
+     */
+    public void recordRestartWait(String server, long micros) {
+        restartWaits.computeIfAbsent(server, k -> new LatencyHistogram()).record(micros);
+    }
+
+    /**
+     * Register the connection pool of a server
+     *
+     * @param server vRO server
+     * @param stats  current pool stats
+     */
+    public void registerPool(String server, Supplier<PoolStats> stats) {
+        pools.computeIfAbsent(server, k -> new PoolMetrics()).stats = stats;
+    }
+
+    /**
+     * Sample the connection pool of a server, to track its peak usage
+     *
+     * @param server vRO server
+     */
+    public void samplePool(String server) {
+        PoolMetrics metrics = pools.get(server);
+        if (metrics != null && metrics.stats != null) {
+            PoolStats stats = metrics.stats.get();
+            metrics.maxLeased.accumulate(stats.getLeased());
+            metrics.maxPending.accumulate(stats.getPending());
+        }
+    }
+
+    /**
+     * @return calls metrics, sorted by server, method and endpoint
+     */
+    public Map<String, EndpointMetrics> getEndpoints() {
+        return new TreeMap<>(endpoints);
+    }
+
+    /**
+     * @return upload metrics, by server
+     */
+    public Map<String, UploadMetrics> getUploads() {
+        return new TreeMap<>(uploads);
+    }
+
+    /**
+     * @return wait for restart durations, by server
+     */
+    public Map<String, LatencyHistogram> getRestartWaits() {
+        return new TreeMap<>(restartWaits);
+    }
+
+    /**
+     * @return connection pools metrics, by server
+     */
+    public Map<String, PoolMetrics> getPools() {
+        return new TreeMap<>(pools);
+    }
+
+    /**
+     * Calls to one endpoint of one server
+     */
+    public static class EndpointMetrics {
+
+        private final String server;
+
+        private final String method;
+
+        private final String endpoint;
+
+        private final ConcurrentMap<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private final LongAdder bytesSent = new LongAdder();
+
+        private final LongAdder bytesReceived = new LongAdder();
+
+        private final LongAdder retries = new LongAdder();
+
+        EndpointMetrics(String server, String method, String endpoint) {
+            this.server = server;
+            this.method = method;
+            this.endpoint = endpoint;
+        }
+
+        public String getServer() {
+            return server;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        /**
+         * @return calls count by HTTP status, <code>-1</code> for calls without response
+         */
+        public Map<Integer, Long> getStatuses() {
+            Map<Integer, Long> result = new TreeMap<>();
+            for (Map.Entry<Integer, LongAdder> entry : statuses.entrySet()) {
+                result.put(entry.getKey(), entry.getValue().sum());
+            }
+            return result;
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getBytesSent() {
+            return bytesSent.sum();
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived.sum();
+        }
+
+        public long getRetries() {
+            return retries.sum();
+        }
+    }
+
+    /**
+     * Plugin file uploads to one server
+     */
+    public static class UploadMetrics {
+
+        private final LongAdder bytes = new LongAdder();
+
+        private final LatencyHistogram duration = new LatencyHistogram();
+
+        private volatile long lastThroughput;
+
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        public LatencyHistogram getDuration() {
+            return duration;
+        }
+
+        /**
+         * @return throughput of the last upload, in bytes per second
+         */
+        public long getLastThroughput() {
+            return lastThroughput;
+        }
+    }
+
+    /**
+     * Connection pool of one server
+     */
+    public static class PoolMetrics {
+
+        private volatile Supplier<PoolStats> stats;
+
+        private final LongAccumulator maxLeased = new LongAccumulator(Math::max, 0);
+
+        private final LongAccumulator maxPending = new LongAccumulator(Math::max, 0);
+
+        /**
+         * @return current pool stats, <code>null</code> if unknown
+         */
+        public PoolStats getStats() {
+            Supplier<PoolStats> supplier = stats;
+            return supplier == null ? null : supplier.get();
+        }
+
+        public long getMaxLeased() {
+            return maxLeased.get();
+        }
+
+        public long getMaxPending() {
+            return maxPending.get();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.ptavares.o11n.packages;
+
+import com.github.ptavares.o11n.enums.PackageDeleteStrategy;
+
+import java.util.regex.Pattern;
+
+/**
+ * A package, or a glob pattern of packages (<code>*</code> and <code>?</code> wildcards), to delete with a strategy
+ *
+ * @author Patrick Tavares
+ */
+public class PackageDeletion {
+
+    /**
+     * Package name or glob pattern
+     */
+    private final String name;
+
+    /**
+     * Delete strategy
+     */
+    private final PackageDeleteStrategy strategy;
+
+    /**
+     * Compiled pattern, <code>null</code> if <code>name</code> is a package name
+     */
+    private final Pattern pattern;
+
+    /**
+     * Constructor
+     *
+     * @param name     package name or glob pattern
+     * @param strategy delete strategy
+     */
+    public PackageDeletion(String name, PackageDeleteStrategy strategy) {
+        this.name = name;
+        this.strategy = strategy;
+        this.pattern = name.indexOf('*') >= 0 || name.indexOf('?') >= 0 ? Pattern.compile(toRegex(name)) : null;
+    }
+
+    /**
+     * Parse a <code>name[:STRATEGY]</code> entry
+     *
+     * @param entry           the entry
+     * @param defaultStrategy strategy of entries without one
+     * @return the parsed entry
+     * @throws IllegalArgumentException if the strategy is unknown
+     */
+    public static PackageDeletion parse(String entry, PackageDeleteStrategy defaultStrategy) {
+        int separator = entry.lastIndexOf(':');
+        if (separator < 0) {
+            return new PackageDeletion(entry.trim(), defaultStrategy);
+        }
+        return new PackageDeletion(entry.substring(0, separator).trim(), PackageDeleteStrategy.fromValue(entry.substring(separator + 1).trim()));
+    }
+
+    private static String toRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (String part : glob.split("(?=[*?])|(?<=[*?])")) {
+            if ("*".equals(part)) {
+                regex.append(".*");
+            } else if ("?".equals(part)) {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(part));
+            }
+        }
+        return regex.toString();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public PackageDeleteStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return <code>true</code> if <code>name</code> is a glob pattern
+     */
+    public boolean isPattern() {
+        return pattern != null;
+    }
+
+    /**
+     * @param packageName an installed package name
+     * @return <code>true</code> if this entry targets the package
+     */
+    public boolean matches(String packageName) {
+        return pattern != null ? pattern.matcher(packageName).matches() : name.equals(packageName);
+    }
+
+    @Override
+    public String toString() {
+        return name + ":" + strategy;
+    }
+}
@@ -0,0 +1,254 @@
+package com.github.ptavares.o11n.packages;
+
+import com.github.ptavares.o11n.rest.RestClient;
+import com.github.ptavares.o11n.rest.RestRequest;
+import com.github.ptavares.o11n.rest.RestResponse;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Delete several packages of a vRO server concurrently, over the pooled connections of one {@link RestClient}.
+ * Glob patterns are resolved against <code>GET /packages</code>.
+ *
+ * @author Patrick Tavares
+ */
+public class PackageUninstaller {
+
+    /**
+     * Outcome of one package deletion
+     */
+    public enum Outcome {
+        DELETED, NOT_FOUND, FAILED
+    }
+
+    /**
+     * Plugin {@link Log}
+     */
+    private final Log log;
+
+    /**
+     * RestClient to use for WebServices calls
+     */
+    private final RestClient restClient;
+
+    /**
+     * User allowed to delete packages
+     */
+    private final String user;
+
+    /**
+     * Password of <code>user</code>
+     */
+    private final String password;
+
+    /**
+     * Max deletions running at the same time
+     */
+    private final int concurrency;
+
+    /**
+     * Constructor
+     *
+     * @param log         Plugin {@link Log}
+     * @param restClient  RestClient to use for WebServices calls
+     * @param user        user allowed to delete packages
+     * @param password    password of <code>user</code>
+     * @param concurrency max deletions running at the same time
+     */
+    public PackageUninstaller(Log log, RestClient restClient, String user, String password, int concurrency) {
+        this.log = log;
+        this.restClient = restClient;
+        this.user = user;
+        this.password = password;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Delete packages
+     *
+     * @param deletions packages or patterns to delete
+     * @return outcome by package name, in deletion order
+     * @throws MojoFailureException if packages can't be listed to resolve patterns
+     */
+    public Map<String, Outcome> uninstall(List<PackageDeletion> deletions) throws MojoFailureException {
+        Map<String, PackageDeletion> packages = resolve(deletions);
+        Map<String, Outcome> outcomes = new LinkedHashMap<>();
+        if (packages.isEmpty()) {
+            return outcomes;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, packages.size()));
+        try {
+            Map<String, Future<Outcome>> futures = new LinkedHashMap<>();
+            for (final Map.Entry<String, PackageDeletion> entry : packages.entrySet()) {
+                futures.put(entry.getKey(), executor.submit(() -> delete(entry.getKey(), entry.getValue())));
+            }
+            for (Map.Entry<String, Future<Outcome>> future : futures.entrySet()) {
+                try {
+                    outcomes.put(future.getKey(), future.getValue().get());
+                } catch (ExecutionException e) {
+                    log.warn(String.format("Failed to delete package '%s' : %s", future.getKey(), e.getCause().getMessage()));
+                    outcomes.put(future.getKey(), Outcome.FAILED);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoFailureException("Interrupted while deleting packages");
+        } finally {
+            executor.shutdownNow();
+        }
+        return outcomes;
+    }
+
+    /**
+     * Find the installed packages which would be deleted, without deleting them
+     *
+     * @param deletions packages or patterns to delete
+     * @return names of the installed packages matching <code>deletions</code>
+     * @throws MojoFailureException if packages can't be listed
+     */
+    public List<String> resolveInstalled(List<PackageDeletion> deletions) throws MojoFailureException {
+        List<String> names = new ArrayList<>();
+        for (String name : listPackages()) {
+            for (PackageDeletion deletion : deletions) {
+                if (deletion.matches(name)) {
+                    names.add(name);
+                    break;
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Resolve patterns to installed package names. The first entry matching a package gives its strategy.
+     */
+    private Map<String, PackageDeletion> resolve(List<PackageDeletion> deletions) throws MojoFailureException {
+        List<String> installed = null;
+        Map<String, PackageDeletion> packages = new LinkedHashMap<>();
+        for (PackageDeletion deletion : deletions) {
+            if (!deletion.isPattern()) {
+                packages.putIfAbsent(deletion.getName(), deletion);
+                continue;
+            }
+            if (installed == null) {
+                installed = listPackages();
+            }
+            boolean found = false;
+            for (String name : installed) {
+                if (deletion.matches(name)) {
+                    packages.putIfAbsent(name, deletion);
+                    found = true;
+                }
+            }
+            if (!found) {
+                log.info(String.format("No package matching '%s' in vRO Server", deletion.getName()));
+            }
+        }
+        return packages;
+    }
+
+    /**
+     * @return names of the packages installed in vRO Server
+     */
+    private List<String> listPackages() throws MojoFailureException {
+        // Prepare Request
+        RestRequest restRequest = new RestRequest();
+        restRequest.setHttpAuthentication(user, password)
+                .setResource("/packages")
+                .setMethod(RestRequest.Method.Get);
+        // Execute Request
+        RestResponse response = restClient.executeServiceRequest(restRequest);
+        if (response.getStatusCode() != 200) {
+            throw new MojoFailureException("HTTP " + response.getStatusCode() + ". Unable to list packages of vRO Server.");
+        }
+        return parsePackageNames(response.getResponseBody());
+    }
+
+    /**
+     * Parse the response body of <code>GET /packages</code> : <code>{"link":[{"attributes":[{"name":"name","value":...}],"href":...}]}</code>
+     */
+    static List<String> parsePackageNames(String json) {
+        List<String> names = new ArrayList<>();
+        try {
+            JsonElement links = new JsonParser().parse(json).getAsJsonObject().get("link");
+            if (links == null || !links.isJsonArray()) {
+                return names;
+            }
+            for (JsonElement link : links.getAsJsonArray()) {
+                String name = null;
+                JsonElement attributes = link.getAsJsonObject().get("attributes");
+                if (attributes != null && attributes.isJsonArray()) {
+                    for (JsonElement attribute : attributes.getAsJsonArray()) {
+                        JsonObject object = attribute.getAsJsonObject();
+                        if (object.has("name") && "name".equals(object.get("name").getAsString()) && object.has("value")) {
+                            name = object.get("value").getAsString();
+                        }
+                    }
+                }
+                JsonElement href = link.getAsJsonObject().get("href");
+                if (name == null && href != null) {
+                    name = StringUtils.substringAfterLast(StringUtils.removeEnd(href.getAsString(), "/"), "/");
+                }
+                if (!StringUtils.isEmpty(name)) {
+                    names.add(name);
+                }
+            }
+        } catch (JsonParseException | IllegalStateException | ClassCastException e) {
+            // unexpected format, considered as no package found
+        }
+        return names;
+    }
+
+    /**
+     * Delete one package
+     */
+    private Outcome delete(String name, PackageDeletion deletion) throws MojoFailureException {
+        log.info(String.format("Deleting plug-in package '%s' (%s)...", name, deletion.getStrategy().getLabel()));
+        // Prepare Request
+        RestRequest restRequest = new RestRequest();
+        restRequest.setHttpAuthentication(user, password)
+                // Need to set package name with tailing dot (.) character
+                .setResource("/packages/" + name + ".")
+                .addQueryParam("option", deletion.getStrategy().getLabel())
+                .setMethod(RestRequest.Method.Delete);
+        // Execute Request
+        RestResponse response = restClient.executeServiceRequest(restRequest);
+        // Analyse status code
+        switch (response.getStatusCode()) {
+            case 200:
+                log.debug(String.format("HTTP 200. Package '%s' deleted successfully.", name));
+                return Outcome.DELETED;
+            case 204:
+                log.debug(String.format("HTTP 204. Package '%s' not found in vRO Server", name));
+                return Outcome.NOT_FOUND;
+            case 401:
+                log.warn("HTTP 401. Authentication is required to delete a package from vRO Server.");
+                return Outcome.FAILED;
+            case 403:
+                log.warn("HTTP 403. The provided user is not authorized to delete a package from vRO Server.");
+                return Outcome.FAILED;
+            case 404:
+                log.warn(String.format("HTTP 404. Package '%s' not found on vRO Server. Skipping package deletion.", name));
+                return Outcome.NOT_FOUND;
+            default:
+                log.warn(String.format("Unknown status code HTTP %d returned from vRO Server. Please check if the package '%s' has been deleted.",
+                        response.getStatusCode(), name));
+                return Outcome.FAILED;
+        }
+    }
+}
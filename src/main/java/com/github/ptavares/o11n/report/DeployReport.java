@@ -0,0 +1,78 @@
+package com.github.ptavares.o11n.report;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Summary of one deploy execution, written as an ordered properties file in the plugin cache directory
+ * so that CI jobs can archive or parse it.
+ *
+ * @author Patrick Tavares
+ */
+public class DeployReport {
+
+    /**
+     * Name of the report file
+     */
+    public static final String FILE_NAME = "deploy-report.properties";
+
+    /**
+     * Report entries, in insertion order
+     */
+    private final Map<String, String> entries = new LinkedHashMap<>();
+
+    /**
+     * Add or replace an entry
+     *
+     * @param key   entry key
+     * @param value entry value
+     * @return this report
+     */
+    public synchronized DeployReport put(String key, Object value) {
+        entries.put(key, String.valueOf(value));
+        return this;
+    }
+
+    /**
+     * @param key entry key
+     * @return the entry value, <code>null</code> if not set
+     */
+    public synchronized String get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Write the report file. Failures are only logged.
+     *
+     * @param log            Plugin {@link Log}
+     * @param cacheDirectory plugin cache directory
+     */
+    public synchronized void write(Log log, Path cacheDirectory) {
+        Path file = cacheDirectory.resolve(FILE_NAME);
+        try {
+            Files.createDirectories(cacheDirectory);
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, String> entry : entries.entrySet()) {
+                    writer.write(escape(entry.getKey()));
+                    writer.write('=');
+                    writer.write(escape(entry.getValue()));
+                    writer.newLine();
+                }
+            }
+            log.debug(String.format("Deploy report written to '%s'", file));
+        } catch (IOException e) {
+            log.warn(String.format("Unable to write deploy report '%s' : %s", file, e.getMessage()));
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\n", "\\n").replace("=", "\\=").replace(":", "\\:");
+    }
+}
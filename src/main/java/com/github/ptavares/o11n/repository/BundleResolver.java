@@ -0,0 +1,125 @@
+package com.github.ptavares.o11n.repository;
+
+import com.github.ptavares.o11n.enums.FileBundle;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resolve plugin files from their repository coordinates, with the repository system of the running Maven.
+ * <p>
+ * All artifacts are resolved in a single request, so that missing ones are downloaded concurrently.
+ * Artifacts already in the local repository are used in place, without any copy.
+ *
+ * @author Patrick Tavares
+ */
+public class BundleResolver {
+
+    /**
+     * Plugin {@link Log}
+     */
+    private final Log log;
+
+    /**
+     * Maven repository system
+     */
+    private final RepositorySystem repositorySystem;
+
+    /**
+     * Repository session of the build, with the local repository and offline mode
+     */
+    private final RepositorySystemSession session;
+
+    /**
+     * Remote repositories of the project
+     */
+    private final List<RemoteRepository> remoteRepositories;
+
+    /**
+     * Constructor
+     *
+     * @param log                Plugin {@link Log}
+     * @param repositorySystem   Maven repository system
+     * @param session            repository session of the build
+     * @param remoteRepositories remote repositories of the project
+     */
+    public BundleResolver(Log log, RepositorySystem repositorySystem, RepositorySystemSession session, List<RemoteRepository> remoteRepositories) {
+        this.log = log;
+        this.repositorySystem = repositorySystem;
+        this.session = session;
+        this.remoteRepositories = remoteRepositories;
+    }
+
+    /**
+     * Parse <code>groupId:artifactId:version[:type]</code> coordinates
+     *
+     * @param coordinates the coordinates
+     * @param bundle      plugin file type, giving the default type
+     * @return the artifact
+     * @throws IllegalArgumentException if the coordinates are invalid, or their type is not the one of <code>bundle</code>
+     */
+    public static Artifact parse(String coordinates, FileBundle bundle) {
+        String[] parts = coordinates.trim().split(":");
+        if (parts.length < 3 || parts.length > 4) {
+            throw new IllegalArgumentException("expected groupId:artifactId:version[:type]");
+        }
+        for (String part : parts) {
+            if (part.isEmpty()) {
+                throw new IllegalArgumentException("expected groupId:artifactId:version[:type]");
+            }
+        }
+        String extension = bundle.getFileSuffix().substring(1);
+        if (parts.length == 4 && !extension.equals(parts[3])) {
+            throw new IllegalArgumentException(String.format("type '%s' does not match fileBundle %s", parts[3], bundle));
+        }
+        return new DefaultArtifact(parts[0], parts[1], extension, parts[2]);
+    }
+
+    /**
+     * Resolve artifacts
+     *
+     * @param artifacts artifacts to resolve
+     * @return the artifact files, in <code>artifacts</code> order
+     * @throws MojoFailureException if at least one artifact can't be resolved
+     */
+    public List<Path> resolve(List<Artifact> artifacts) throws MojoFailureException {
+        List<ArtifactRequest> requests = new ArrayList<>();
+        for (Artifact artifact : artifacts) {
+            requests.add(new ArtifactRequest(artifact, remoteRepositories, null));
+        }
+        log.info(String.format("Resolving %d plugin file(s) from repositories...", requests.size()));
+
+        List<ArtifactResult> results;
+        try {
+            results = repositorySystem.resolveArtifacts(session, requests);
+        } catch (ArtifactResolutionException e) {
+            List<String> failures = new ArrayList<>();
+            for (ArtifactResult result : e.getResults()) {
+                if (!result.isResolved()) {
+                    failures.add(result.getRequest().getArtifact() + " (" + result.getExceptions() + ")");
+                }
+            }
+            throw new MojoFailureException(String.format("Unable to resolve plugin file(s) %s", failures), e);
+        }
+
+        List<Path> files = new ArrayList<>();
+        for (ArtifactResult result : results) {
+            Path file = result.getArtifact().getFile().toPath();
+            log.info(String.format("Resolved '%s' to '%s'%s", result.getArtifact(), file,
+                    result.getRepository() == null ? "" : " from " + result.getRepository().getId()));
+            files.add(file);
+        }
+        return files;
+    }
+}
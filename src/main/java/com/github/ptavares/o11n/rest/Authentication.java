@@ -49,7 +49,7 @@ public class Authentication {
     public String toString() {
         return "Authentication{" +
                 "username='" + username + '\'' +
-                ", password='" + password + '\'' +
+                ", password='" + (password == null ? null : "******") + '\'' +
                 '}';
     }
 }
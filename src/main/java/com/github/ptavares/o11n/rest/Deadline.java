@@ -0,0 +1,99 @@
+package com.github.ptavares.o11n.rest;
+
+import org.apache.maven.plugin.MojoFailureException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time budget of a whole deploy : each phase consumes it, and timeouts of later phases are capped
+ * by the remaining time.
+ *
+ * @author Patrick Tavares
+ */
+public final class Deadline {
+
+    /**
+     * No deadline
+     */
+    public static final Deadline NONE = new Deadline(0, 0);
+
+    /**
+     * Budget, in milliseconds. <code>0</code> for no deadline.
+     */
+    private final long budget;
+
+    /**
+     * Expiration time, in nanoseconds
+     */
+    private final long expiresAt;
+
+    private Deadline(long budget, long expiresAt) {
+        this.budget = budget;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Create a deadline starting now
+     *
+     * @param millis budget, in milliseconds. <code>0</code> for no deadline.
+     * @return the deadline
+     */
+    public static Deadline after(long millis) {
+        return millis <= 0 ? NONE : new Deadline(millis, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * @return <code>true</code> if there is no deadline
+     */
+    public boolean isNone() {
+        return budget == 0;
+    }
+
+    /**
+     * @return remaining time in milliseconds, <code>0</code> if expired, {@link Long#MAX_VALUE} if there is no deadline
+     */
+    public long remaining() {
+        if (isNone()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime()));
+    }
+
+    /**
+     * @return <code>true</code> if the budget is consumed
+     */
+    public boolean isExpired() {
+        return remaining() == 0;
+    }
+
+    /**
+     * Cap a timeout by the remaining time
+     *
+     * @param timeout timeout in milliseconds, <code>0</code> for infinite
+     * @return the capped timeout, at least 1 ms if the timeout or the deadline is finite
+     */
+    public long cap(long timeout) {
+        if (isNone()) {
+            return timeout;
+        }
+        long remaining = Math.max(1, remaining());
+        return timeout <= 0 ? remaining : Math.min(timeout, remaining);
+    }
+
+    /**
+     * Check there is time left before starting a phase
+     *
+     * @param phase name of the phase about to start
+     * @throws MojoFailureException if the budget is consumed
+     */
+    public void check(String phase) throws MojoFailureException {
+        if (isExpired()) {
+            throw new MojoFailureException(String.format("Deploy deadline of %d s exceeded before %s", TimeUnit.MILLISECONDS.toSeconds(budget), phase));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return isNone() ? "none" : String.format("%d ms left of %d ms", remaining(), budget);
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.ptavares.o11n.rest;
+
+import com.github.ptavares.o11n.bundle.BundleMetadata;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Store information of a plugin installed in vRO Server, as returned by <code>GET /plugins</code>
+ *
+ * @author Patrick Tavares
+ */
+public class InstalledPlugin {
+
+    /**
+     * Plugin module name
+     */
+    private final String name;
+
+    /**
+     * Installed version
+     */
+    private final String version;
+
+    /**
+     * Installed build number, may be empty
+     */
+    private final String buildNumber;
+
+    /**
+     * Default constructor
+     *
+     * @param name        plugin module name
+     * @param version     installed version
+     * @param buildNumber installed build number
+     */
+    public InstalledPlugin(String name, String version, String buildNumber) {
+        this.name = name;
+        this.version = version;
+        this.buildNumber = buildNumber;
+    }
+
+    /**
+     * Parse the response body of <code>GET /plugins</code>
+     *
+     * @param json response body
+     * @return installed plugins, empty if the body can't be parsed
+     */
+    public static List<InstalledPlugin> fromJson(String json) {
+        List<InstalledPlugin> result = new ArrayList<>();
+        try {
+            JsonElement root = new JsonParser().parse(json);
+            if (!root.isJsonObject() || !root.getAsJsonObject().has("plugin")) {
+                return result;
+            }
+            JsonArray plugins = root.getAsJsonObject().getAsJsonArray("plugin");
+            for (JsonElement element : plugins) {
+                JsonObject plugin = element.getAsJsonObject();
+                String name = getString(plugin, "moduleName");
+                if (name == null) {
+                    name = getString(plugin, "name");
+                }
+                result.add(new InstalledPlugin(name, getString(plugin, "version"), getString(plugin, "buildNumber")));
+            }
+        } catch (JsonParseException | IllegalStateException | ClassCastException e) {
+            // unexpected format, considered as no plugin found
+        }
+        return result;
+    }
+
+    private static String getString(JsonObject object, String member) {
+        JsonElement element = object.get(member);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+
+    /**
+     * Getter for <code>name</code>
+     *
+     * @return the plugin module name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Getter for <code>version</code>
+     *
+     * @return the installed version
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Getter for <code>buildNumber</code>
+     *
+     * @return the installed build number
+     */
+    public String getBuildNumber() {
+        return buildNumber;
+    }
+
+    /**
+     * @return version and build number of the installed plugin
+     */
+    public String getFullVersion() {
+        return BundleMetadata.fullVersion(version, buildNumber);
+    }
+
+    @Override
+    public String toString() {
+        return "InstalledPlugin{" +
+                "name='" + name + '\'' +
+                ", version='" + version + '\'' +
+                ", buildNumber='" + buildNumber + '\'' +
+                '}';
+    }
+}
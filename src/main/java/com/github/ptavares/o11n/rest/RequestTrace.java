@@ -0,0 +1,177 @@
+package com.github.ptavares.o11n.rest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Trace of one call to a vRO server API, logged as a single <code>key=value</code> line
+ *
+ * @author Patrick Tavares
+ */
+public class RequestTrace {
+
+    /**
+     * Request ids sequence, shared by all clients
+     */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /**
+     * User info of an URI, such as <code>user:password@</code>
+     */
+    private static final Pattern USER_INFO = Pattern.compile("^([a-zA-Z][a-zA-Z0-9+.-]*://)[^/?#@]*@");
+
+    /**
+     * Query parameters holding a secret
+     */
+    private static final Pattern SECRET_PARAMETER = Pattern.compile("(?i)([?&][^=&#]*(?:password|passwd|pwd|token|secret|api_?key)[^=&#]*=)[^&#]*");
+
+    /**
+     * Replacement of redacted values
+     */
+    private static final String REDACTED = "******";
+
+    /**
+     * Request id
+     */
+    private final long id = SEQUENCE.incrementAndGet();
+
+    /**
+     * HTTP method
+     */
+    private final String method;
+
+    /**
+     * Called URI, with query string and secrets redacted
+     */
+    private final String uri;
+
+    /**
+     * HTTP status, <code>-1</code> if no response
+     */
+    private int status = -1;
+
+    /**
+     * Request body size, <code>-1</code> if unknown
+     */
+    private long bytesSent = -1;
+
+    /**
+     * Response body size
+     */
+    private long bytesReceived;
+
+    /**
+     * Time from request sent to response read, in milliseconds
+     */
+    private long latency;
+
+    /**
+     * Times the request was retried after an I/O error
+     */
+    private int retries;
+
+    /**
+     * Error, if the call failed without response
+     */
+    private String error;
+
+    /**
+     * Constructor
+     *
+     * @param method HTTP method
+     * @param uri    called URI
+     */
+    RequestTrace(String method, String uri) {
+        this.method = method;
+        this.uri = redact(uri);
+    }
+
+    /**
+     * @param uri URI
+     * @return the URI without user info, and with the values of secret query parameters redacted
+     */
+    static String redact(String uri) {
+        if (uri == null) {
+            return null;
+        }
+        String withoutUserInfo = USER_INFO.matcher(uri).replaceFirst("$1");
+        return SECRET_PARAMETER.matcher(withoutUserInfo).replaceAll("$1" + REDACTED);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    void setStatus(int status) {
+        this.status = status;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    void setBytesSent(long bytesSent) {
+        this.bytesSent = bytesSent;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    void setBytesReceived(long bytesReceived) {
+        this.bytesReceived = bytesReceived;
+    }
+
+    public long getLatency() {
+        return latency;
+    }
+
+    void setLatency(long latency) {
+        this.latency = latency;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    void setError(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(160)
+                .append("http id=").append(id)
+                .append(" method=").append(method)
+                .append(" uri=").append(uri)
+                .append(" status=").append(status)
+                .append(" sent=").append(bytesSent)
+                .append(" received=").append(bytesReceived)
+                .append(" latencyMs=").append(latency)
+                .append(" retries=").append(retries);
+        if (error != null) {
+            builder.append(" error=\"").append(error.replace('"', '\'')).append('"');
+        }
+        return builder.toString();
+    }
+}
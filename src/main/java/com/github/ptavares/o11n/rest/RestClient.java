@@ -1,40 +1,111 @@
 package com.github.ptavares.o11n.rest;
 
-import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import com.github.ptavares.o11n.metrics.MetricsRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.AuthCache;
 import org.apache.http.client.CredentialsProvider;
-import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.*;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.entity.mime.content.StringBody;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
 
+import javax.net.ssl.SSLContext;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
 import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Simple rest client to execute rest call to vRO Server API
+ * Simple rest client to execute rest call to vRO Server API.
+ * <p>
+ * A client keeps its connections open between calls : it must be closed once no more calls are needed.
  *
  * @author Patrick Tavares
  */
-public class RestClient {
+public class RestClient implements Closeable {
+
+    /**
+     * Max pooled connections per vRO API
+     */
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 8;
+
+    /**
+     * Request context attribute counting retries
+     */
+    private static final String RETRIES_ATTRIBUTE = "o11n.retries";
+
+    /**
+     * Headers never traced
+     */
+    private static final Set<String> REDACTED_HEADERS = new HashSet<>(Arrays.asList("authorization", "proxy-authorization", "cookie", "set-cookie"));
+
+    /**
+     * Resources followed by an id in vRO API paths
+     */
+    private static final Set<String> ID_PARENTS = new HashSet<>(Arrays.asList("packages", "workflows", "executions", "actions", "categories"));
+
+    /**
+     * Replacement of redacted values
+     */
+    private static final String REDACTED = "******";
+
+    /**
+     * Aborts requests still running at their deadline
+     */
+    private static final ScheduledExecutorService ABORT_SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "o11n-request-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
      * Plugin {@link Log}
      */
     private final Log log;
+    /**
+     * vRO Server Host or IP
+     */
+    private String serverHost;
     /**
      * ServiceBase URL
      */
@@ -43,14 +114,87 @@ public class RestClient {
      * ConfigBase URL
      */
     private String configBaseURL;
+    /**
+     * Http client, shared by all calls
+     */
+    private final CloseableHttpClient client;
+    /**
+     * Connection pool of <code>client</code>
+     */
+    private final PoolingHttpClientConnectionManager connectionManager;
+    /**
+     * Metrics of calls, <code>null</code> if not recorded
+     */
+    private MetricsRegistry metrics;
+    /**
+     * Limits applied to plugin file uploads
+     */
+    private UploadThrottle uploadThrottle = UploadThrottle.NONE;
+    /**
+     * Max time to establish a connection, in milliseconds. <code>0</code> for infinite.
+     */
+    private int connectTimeout;
+    /**
+     * Max time without data while reading a response, in milliseconds. <code>0</code> for infinite.
+     */
+    private int readTimeout;
+    /**
+     * Max time without data while waiting for the response to a plugin file upload, in milliseconds.
+     * <code>0</code> for infinite.
+     */
+    private int uploadTimeout;
+    /**
+     * Deadline of all calls, requests still running at the deadline are aborted
+     */
+    private Deadline deadline = Deadline.NONE;
+    /**
+     * Trace headers and bodies of one request out of <code>traceBodySampling</code> in debug, <code>0</code> for none
+     */
+    private int traceBodySampling = 1;
+    /**
+     * Max traced body size, in characters
+     */
+    private int traceBodyMaxSize = 2048;
 
     /**
-     * Constructor
+     * Constructor, trusting the JVM default truststore
      *
      * @param log Plugin {@link Log}
      */
     public RestClient(Log log) {
+        this(log, TlsContexts.getDefault());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param log        Plugin {@link Log}
+     * @param sslContext TLS context, shared with other clients to resume TLS sessions, see {@link TlsContexts}
+     */
+    public RestClient(Log log, SSLContext sslContext) {
         this.log = log;
+        this.connectionManager = new PoolingHttpClientConnectionManager(RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", new SSLConnectionSocketFactory(sslContext))
+                .build());
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+        connectionManager.setMaxTotal(2 * MAX_CONNECTIONS_PER_ROUTE);
+        this.client = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setRetryHandler(RestClient::retryRequest)
+                .build();
+    }
+
+    /**
+     * Default retry policy, counting retries in the request context for traces
+     */
+    private static boolean retryRequest(IOException exception, int executionCount, HttpContext context) {
+        boolean retry = DefaultHttpRequestRetryHandler.INSTANCE.retryRequest(exception, executionCount, context);
+        Object retries = context.getAttribute(RETRIES_ATTRIBUTE);
+        if (retry && retries instanceof AtomicInteger) {
+            ((AtomicInteger) retries).incrementAndGet();
+        }
+        return retry;
     }
 
     /**
@@ -61,10 +205,73 @@ public class RestClient {
      * @param configPort  vRO Config Service REST API Port
      */
     public void configureBaseUrl(String serverHost, Integer servicePort, Integer configPort) {
+        this.serverHost = serverHost;
         this.serviceBaseURL = "https://" + serverHost + ":" + servicePort.toString() + "/vco/api";
         this.configBaseURL = "https://" + serverHost + ":" + configPort.toString() + "/vco-controlcenter/api";
     }
 
+    /**
+     * @return vRO Server Host or IP, as configured by {@link #configureBaseUrl(String, Integer, Integer)}
+     */
+    public String getServerHost() {
+        return serverHost;
+    }
+
+    /**
+     * Configure limits applied to plugin file uploads
+     *
+     * @param uploadThrottle upload limits, usually shared with other clients
+     */
+    public void setUploadThrottle(UploadThrottle uploadThrottle) {
+        this.uploadThrottle = uploadThrottle;
+    }
+
+    /**
+     * Configure timeouts of all calls
+     *
+     * @param connectTimeout max time to establish a connection, in milliseconds. <code>0</code> for infinite.
+     * @param readTimeout    max time without data while reading a response, in milliseconds. <code>0</code> for infinite.
+     * @param uploadTimeout  max time without data while waiting for the response to a plugin file upload, in milliseconds.
+     *                       <code>0</code> for infinite.
+     */
+    public void setTimeouts(int connectTimeout, int readTimeout, int uploadTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.uploadTimeout = uploadTimeout;
+    }
+
+    /**
+     * Configure debug traces of request and response headers and bodies
+     *
+     * @param bodySampling trace one request out of <code>bodySampling</code>, <code>0</code> for none
+     * @param bodyMaxSize  max traced body size, in characters
+     */
+    public void setTracing(int bodySampling, int bodyMaxSize) {
+        this.traceBodySampling = bodySampling;
+        this.traceBodyMaxSize = bodyMaxSize;
+    }
+
+    /**
+     * Record metrics of all next calls
+     *
+     * @param metrics metrics registry, <code>null</code> to stop recording
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+        if (metrics != null) {
+            metrics.registerPool(serverHost, connectionManager::getTotalStats);
+        }
+    }
+
+    /**
+     * Configure the deadline of all next calls
+     *
+     * @param deadline the deadline, {@link Deadline#NONE} for none
+     */
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
     /**
      * Execute a rest request to vRO Plugin Service REST API.
      *
@@ -73,16 +280,7 @@ public class RestClient {
      * @throws MojoFailureException In case of error
      */
     public RestResponse executeServiceRequest(RestRequest request) throws MojoFailureException {
-        if (log.isDebugEnabled()) {
-            log.debug(String.format("start - executeServiceRequest(RestRequest request = %s)", request));
-        }
-
-        RestResponse restResponse = execute(request, this.serviceBaseURL);
-
-        if (log.isDebugEnabled()) {
-            log.debug(String.format("end - executeServiceRequest(RestRequest request) - restResponse = %s", restResponse));
-        }
-        return restResponse;
+        return execute(request, this.serviceBaseURL);
     }
 
     /**
@@ -93,19 +291,9 @@ public class RestClient {
      * @throws MojoFailureException In case of error
      */
     public RestResponse executeConfigRequest(RestRequest request) throws MojoFailureException {
-        if (log.isDebugEnabled()) {
-            log.debug(String.format("start - executeConfigRequest(RestRequest request = %s)", request));
-        }
-
-        RestResponse restResponse = execute(request, this.configBaseURL);
-
-        if (log.isDebugEnabled()) {
-            log.debug(String.format("end - executeConfigRequest(RestRequest request) - restResponse = %s", restResponse));
-        }
-        return restResponse;
+        return execute(request, this.configBaseURL);
     }
 
-
     /**
      * Execute a rest request.
      *
@@ -115,21 +303,22 @@ public class RestClient {
      * @throws MojoFailureException In case of error
      */
     private RestResponse execute(RestRequest request, String baseURL) throws MojoFailureException {
-        if (log.isDebugEnabled()) {
-            log.debug(String.format("start - execute(RestRequest request = %s, String baseURL = %s)", new Object[]{request, baseURL}));
-        }
-
         RestResponse restResponse = new RestResponse();
+        RequestTrace trace = null;
+        ScheduledFuture<?> abort = null;
         try {
-            // Init client with BasicAuth
+            // Init request context with BasicAuth
             CredentialsProvider provider = new BasicCredentialsProvider();
             UsernamePasswordCredentials credentials
                     = new UsernamePasswordCredentials(
                     request.getAuthentication().getUsername(),
                     request.getAuthentication().getPassword());
             provider.setCredentials(AuthScope.ANY, credentials);
+            HttpClientContext context = HttpClientContext.create();
+            context.setCredentialsProvider(provider);
+            AtomicInteger retries = new AtomicInteger();
+            context.setAttribute(RETRIES_ATTRIBUTE, retries);
 
-            HttpClient client = HttpClientBuilder.create().setDefaultCredentialsProvider(provider).build();
             HttpRequestBase requestBase;
 
             if (request.getMethod() == RestRequest.Method.Get) {
@@ -147,8 +336,14 @@ public class RestClient {
                     StringBody overwrite = new StringBody(String.valueOf(fileInfo.isOverwrite()), ContentType.MULTIPART_FORM_DATA);
                     builder.addPart("format", format);
                     builder.addPart("overwrite", overwrite);
-                    HttpEntity entity = builder.build();
+                    HttpEntity entity = uploadThrottle.throttle(builder.build());
                     ((HttpEntityEnclosingRequestBase) requestBase).setEntity(entity);
+                } else if (request.getPackageFile() != null) {
+                    MultipartEntityBuilder builder = MultipartEntityBuilder.create();
+                    builder.addBinaryBody("file", request.getPackageFile(), ContentType.APPLICATION_OCTET_STREAM, request.getPackageFile().getName());
+                    ((HttpEntityEnclosingRequestBase) requestBase).setEntity(uploadThrottle.throttle(builder.build()));
+                } else if (request.getBody() != null) {
+                    ((HttpEntityEnclosingRequestBase) requestBase).setEntity(new StringEntity(request.getBody(), ContentType.APPLICATION_JSON));
                 }
             }
 
@@ -160,28 +355,180 @@ public class RestClient {
                 requestBase.setURI(builder.build());
             }
 
-            requestBase.addHeader("content-type", ContentType.APPLICATION_JSON.getMimeType());
+            // Preemptive BasicAuth : no 401 challenge round trip, which would send upload bodies twice
+            AuthCache authCache = new BasicAuthCache();
+            authCache.put(URIUtils.extractHost(requestBase.getURI()), new BasicScheme());
+            context.setAuthCache(authCache);
+
+            // Multipart uploads carry their own content type, with the parts boundary
+            if (!request.isUpload()) {
+                requestBase.addHeader("content-type", ContentType.APPLICATION_JSON.getMimeType());
+            }
             requestBase.addHeader("accept", ContentType.APPLICATION_JSON.getMimeType());
 
-            log.info("requestbase = " + requestBase);
-            log.info("client = " + ReflectionToStringBuilder.toString(client));
-            HttpResponse result = client.execute(requestBase);
-            restResponse.setStatusCode(result.getStatusLine().getStatusCode());
-            restResponse.setResponseBody(EntityUtils.toString(result.getEntity()));
+            // Timeouts, capped by the deadline
+            int socketTimeout = request.isUpload() ? uploadTimeout : readTimeout;
+            requestBase.setConfig(RequestConfig.custom()
+                    .setConnectTimeout(cappedTimeout(connectTimeout))
+                    .setConnectionRequestTimeout(cappedTimeout(connectTimeout))
+                    .setSocketTimeout(cappedTimeout(socketTimeout))
+                    .build());
+            deadline.check("calling vRO server API '" + baseURL + request.getResource() + "'");
+            final HttpRequestBase toAbort = requestBase;
+            abort = deadline.isNone() ? null : ABORT_SCHEDULER.schedule(toAbort::abort, deadline.remaining(), TimeUnit.MILLISECONDS);
+
+            trace = new RequestTrace(requestBase.getMethod(), requestBase.getURI().toString());
+            HttpEntity requestEntity = requestBase instanceof HttpEntityEnclosingRequestBase ? ((HttpEntityEnclosingRequestBase) requestBase).getEntity() : null;
+            trace.setBytesSent(requestEntity == null ? 0 : requestEntity.getContentLength());
+            boolean capture = log.isDebugEnabled() && traceBodySampling > 0 && trace.getId() % traceBodySampling == 0;
+            if (capture) {
+                log.debug(String.format("http id=%d request headers=%s body=%s", trace.getId(), headers(requestBase.getAllHeaders()),
+                        request.isUpload() ? "<multipart>" : truncate(request.getBody())));
+            }
+            UploadThrottle.Slot slot = request.isUpload() ? uploadThrottle.acquire(log, serverHost) : null;
+            try {
+                if (metrics != null) {
+                    metrics.samplePool(serverHost);
+                }
+                long start = System.nanoTime();
+                try (CloseableHttpResponse result = client.execute(requestBase, context)) {
+                    restResponse.setStatusCode(result.getStatusLine().getStatusCode());
+                    trace.setStatus(result.getStatusLine().getStatusCode());
+                    for (Header header : result.getAllHeaders()) {
+                        restResponse.addHeader(header.getName(), header.getValue());
+                    }
+                    // Fully consuming the entity gives the connection back to the pool
+                    HttpEntity entity = result.getEntity();
+                    if (entity != null) {
+                        byte[] body = EntityUtils.toByteArray(entity);
+                        Charset charset = ContentType.getOrDefault(entity).getCharset();
+                        restResponse.setResponseBody(new String(body, charset == null ? StandardCharsets.UTF_8 : charset));
+                        trace.setBytesReceived(body.length);
+                    }
+                    if (capture) {
+                        log.debug(String.format("http id=%d response headers=%s body=%s", trace.getId(), headers(result.getAllHeaders()),
+                                truncate(restResponse.getResponseBody())));
+                    }
+                } finally {
+                    long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+                    trace.setLatency(TimeUnit.MICROSECONDS.toMillis(micros));
+                    trace.setRetries(retries.get());
+                    if (metrics != null) {
+                        metrics.recordRequest(serverHost, trace.getMethod(), endpoint(baseURL, request.getResource()), trace.getStatus(),
+                                trace.getBytesSent(), trace.getBytesReceived(), micros, trace.getRetries());
+                        if (request.isUpload() && trace.getStatus() > 0) {
+                            metrics.recordUpload(serverHost, trace.getBytesSent(), micros);
+                        }
+                    }
+                }
+            } finally {
+                if (slot != null) {
+                    slot.close();
+                }
+            }
+        } catch (ConnectException | ConnectTimeoutException | NoRouteToHostException | UnknownHostException e) {
+            // Server down or restarting : let the caller decide if it is an error
+            String msgError = String.format("vRO server API '%s' is unreachable : %s", baseURL + request.getResource(), e.getMessage());
+            traceError(trace, e);
+            log.debug(msgError, e);
+            throw new ServerUnreachableException(msgError, e);
+        } catch (SocketTimeoutException e) {
+            String msgError = String.format("No response from vRO server API '%s'%s : %s", baseURL + request.getResource(),
+                    deadline.isExpired() ? " before deploy deadline" : "", e.getMessage());
+            traceError(trace, e);
+            // Expected while polling a restarting server : let the caller decide if it is an error
+            log.debug(msgError, e);
+            throw new MojoFailureException(msgError, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            String msgError = String.format("Interrupted while waiting to upload to vRO server API '%s'", baseURL + request.getResource());
+            log.error(msgError);
+            throw new MojoFailureException(msgError, e);
         } catch (IOException | URISyntaxException e) {
-            StringWriter sw = new StringWriter();
-            PrintWriter pw = new PrintWriter(sw, true);
-            e.printStackTrace(pw);
-            String msgError = String.format("Error while calling vRO server API '%s'", baseURL + request.getResource());
-            log.error(msgError, e);
-            throw new MojoFailureException(msgError + " :\n" + sw.getBuffer().toString());
+            traceError(trace, e);
+            if (deadline.isExpired()) {
+                String msgError = String.format("Call to vRO server API '%s' aborted : deploy deadline exceeded", baseURL + request.getResource());
+                log.debug(msgError, e);
+                throw new MojoFailureException(msgError, e);
+            }
+            String msgError = String.format("Error while calling vRO server API '%s' : %s", baseURL + request.getResource(), e.getMessage());
+            log.debug(msgError, e);
+            throw new MojoFailureException(msgError, e);
+        } finally {
+            if (abort != null) {
+                abort.cancel(false);
+            }
+            // Polling calls are frequent : only mutating calls are traced at info level
+            if (trace != null) {
+                if (request.getMethod() != RestRequest.Method.Get) {
+                    log.info(trace.toString());
+                } else if (log.isDebugEnabled()) {
+                    log.debug(trace.toString());
+                }
+            }
         }
+        return restResponse;
+    }
 
-        if (log.isDebugEnabled()) {
-            log.debug(String.format("end - execute(RestRequest request, String baseURL) - restResponse = %s", new Object[]{restResponse}));
+    /**
+     * Endpoint of a resource, for metrics : API name and resource path, ids replaced by <code>{id}</code>
+     */
+    static String endpoint(String baseURL, String resource) {
+        StringBuilder endpoint = new StringBuilder(baseURL.substring(baseURL.lastIndexOf('/', baseURL.lastIndexOf("/api") - 1)));
+        String previous = null;
+        for (String segment : StringUtils.split(resource, '/')) {
+            endpoint.append('/').append(previous != null && ID_PARENTS.contains(previous) ? "{id}" : segment);
+            previous = segment;
         }
-        return restResponse;
+        return endpoint.toString();
     }
 
+    private static void traceError(RequestTrace trace, Exception e) {
+        if (trace != null) {
+            trace.setError(e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
 
+    /**
+     * Format headers for debug traces, with secrets redacted
+     */
+    static String headers(Header[] headers) {
+        StringBuilder builder = new StringBuilder("{");
+        for (Header header : headers) {
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(header.getName()).append('=')
+                    .append(REDACTED_HEADERS.contains(header.getName().toLowerCase(Locale.ROOT)) ? REDACTED : header.getValue());
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Truncate a body for debug traces
+     */
+    private String truncate(String body) {
+        if (body == null || body.length() <= traceBodyMaxSize) {
+            return body;
+        }
+        return body.substring(0, traceBodyMaxSize) + "...(" + body.length() + " chars)";
+    }
+
+    /**
+     * @param timeout timeout in milliseconds, <code>0</code> for infinite
+     * @return the timeout capped by the deadline
+     */
+    private int cappedTimeout(int timeout) {
+        return (int) Math.min(Integer.MAX_VALUE, deadline.cap(timeout));
+    }
+
+    /**
+     * Close all connections of this client
+     *
+     * @throws IOException In case of error
+     */
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
 }
@@ -37,6 +37,16 @@ public class RestRequest {
      */
     private PluginFileInfo pluginFileInfo;
 
+    /**
+     * vRO package file to upload
+     */
+    private File packageFile;
+
+    /**
+     * JSON body to send
+     */
+    private String body;
+
     /**
      * Default constructor
      */
@@ -81,6 +91,37 @@ public class RestRequest {
         return this;
     }
 
+    /**
+     * Add a vRO package file to upload with this {@link RestRequest}
+     *
+     * @param file package file
+     * @return the configured {@link RestRequest}
+     */
+    public RestRequest addPackageFile(File file) {
+        this.packageFile = file;
+        return this;
+    }
+
+    /**
+     * Set a JSON body for this {@link RestRequest}
+     *
+     * @param body JSON body to send
+     * @return the configured {@link RestRequest}
+     */
+    public RestRequest setBody(String body) {
+        this.body = body;
+        return this;
+    }
+
+    /**
+     * Getter for <code>body</code> property.
+     *
+     * @return JSON body to send, <code>null</code> if none
+     */
+    public String getBody() {
+        return body;
+    }
+
     /**
      * Getter for <code>resource</code> property.
      *
@@ -149,6 +190,22 @@ public class RestRequest {
         return pluginFileInfo;
     }
 
+    /**
+     * Getter for the <code>packageFile</code>
+     *
+     * @return vRO package file to upload with this {@link RestRequest}
+     */
+    public File getPackageFile() {
+        return packageFile;
+    }
+
+    /**
+     * @return <code>true</code> if this {@link RestRequest} uploads a file
+     */
+    public boolean isUpload() {
+        return pluginFileInfo != null || packageFile != null;
+    }
+
     @Override
     public String toString() {
         return "RestRequest{" +
@@ -157,6 +214,8 @@ public class RestRequest {
                 ", authentication=" + authentication +
                 ", queryParams=" + queryParams +
                 ", pluginFileInfo=" + pluginFileInfo +
+                ", packageFile=" + packageFile +
+                ", body='" + body + '\'' +
                 '}';
     }
 
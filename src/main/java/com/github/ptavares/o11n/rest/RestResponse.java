@@ -1,5 +1,8 @@
 package com.github.ptavares.o11n.rest;
 
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
  * @author Patrick Tavares
  */
@@ -13,6 +16,10 @@ public class RestResponse {
      * Status code of this response
      */
     private Integer statusCode;
+    /**
+     * Headers of this response, first value only, names are case insensitive
+     */
+    private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
 
     /**
      * @return the status code of this response
@@ -46,6 +53,26 @@ public class RestResponse {
         return this;
     }
 
+    /**
+     * @param name header name, case insensitive
+     * @return the first value of the header, <code>null</code> if not found
+     */
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * @param name  header name
+     * @param value header value, ignored if the header is already set
+     * @return this response
+     */
+    public RestResponse addHeader(String name, String value) {
+        if (!headers.containsKey(name)) {
+            headers.put(name, value);
+        }
+        return this;
+    }
+
     @Override
     public String toString() {
         return "RestResponse{" +
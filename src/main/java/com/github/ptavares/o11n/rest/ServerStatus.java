@@ -0,0 +1,110 @@
+package com.github.ptavares.o11n.rest;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * Store vRO service status, as returned by the Control Center <code>GET /server/status</code>
+ *
+ * @author Patrick Tavares
+ */
+public class ServerStatus {
+
+    /**
+     * Status of a started vRO service
+     */
+    public static final String RUNNING = "RUNNING";
+
+    /**
+     * Members used by vRO versions to report changes waiting for a restart
+     */
+    private static final String[] PENDING_CHANGES_MEMBERS = {"pendingChanges", "restartRequired", "requiresRestart"};
+
+    /**
+     * Current service status, ie. <code>RUNNING</code>, <code>STOPPED</code>, <code>UNDEFINED</code>
+     */
+    private final String currentStatus;
+
+    /**
+     * <code>true</code> if the server reports changes which need a restart
+     */
+    private final boolean pendingChanges;
+
+    /**
+     * Default constructor
+     *
+     * @param currentStatus  current service status
+     * @param pendingChanges <code>true</code> if the server reports changes which need a restart
+     */
+    public ServerStatus(String currentStatus, boolean pendingChanges) {
+        this.currentStatus = currentStatus;
+        this.pendingChanges = pendingChanges;
+    }
+
+    /**
+     * Parse the response body of <code>GET /server/status</code>
+     *
+     * @param json response body
+     * @return the server status, with a <code>null</code> status if the body can't be parsed
+     */
+    public static ServerStatus fromJson(String json) {
+        try {
+            JsonElement root = new JsonParser().parse(json);
+            if (!root.isJsonObject()) {
+                return new ServerStatus(null, false);
+            }
+            JsonObject object = root.getAsJsonObject();
+            JsonElement status = object.get("currentStatus");
+            boolean pending = false;
+            for (String member : PENDING_CHANGES_MEMBERS) {
+                JsonElement element = object.get(member);
+                if (element == null || element.isJsonNull()) {
+                    continue;
+                }
+                if (element.isJsonPrimitive()) {
+                    pending |= element.getAsJsonPrimitive().isBoolean() ? element.getAsBoolean() : "true".equalsIgnoreCase(element.getAsString());
+                } else if (element.isJsonArray()) {
+                    pending |= element.getAsJsonArray().size() > 0;
+                }
+            }
+            return new ServerStatus(status == null || status.isJsonNull() ? null : status.getAsString(), pending);
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+            return new ServerStatus(null, false);
+        }
+    }
+
+    /**
+     * Getter for <code>currentStatus</code>
+     *
+     * @return current service status, <code>null</code> if unknown
+     */
+    public String getCurrentStatus() {
+        return currentStatus;
+    }
+
+    /**
+     * @return <code>true</code> if the service is running
+     */
+    public boolean isRunning() {
+        return RUNNING.equalsIgnoreCase(currentStatus);
+    }
+
+    /**
+     * Getter for <code>pendingChanges</code>
+     *
+     * @return <code>true</code> if the server reports changes which need a restart
+     */
+    public boolean hasPendingChanges() {
+        return pendingChanges;
+    }
+
+    @Override
+    public String toString() {
+        return "ServerStatus{" +
+                "currentStatus='" + currentStatus + '\'' +
+                ", pendingChanges=" + pendingChanges +
+                '}';
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.ptavares.o11n.rest;
+
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Thrown when a vRO server API can't be reached at all (connection refused, unknown host, connect timeout...),
+ * as opposed to an error returned by the server.
+ *
+ * @author Patrick Tavares
+ */
+public class ServerUnreachableException extends MojoFailureException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor
+     *
+     * @param message error message
+     * @param cause   the connection error
+     */
+    public ServerUnreachableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.ptavares.o11n.rest;
+
+import org.apache.http.ssl.SSLContextBuilder;
+import org.apache.http.ssl.SSLContexts;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link SSLContext}s shared by all {@link RestClient}s of the JVM : the truststore is loaded once, and TLS sessions
+ * are cached by the context, so that new connections to a vRO server resume the session instead of
+ * negotiating a full handshake.
+ *
+ * @author Patrick Tavares
+ */
+public final class TlsContexts {
+
+    /**
+     * Cached TLS sessions per context
+     */
+    private static final int SESSION_CACHE_SIZE = 256;
+
+    /**
+     * Lifetime of cached TLS sessions, in seconds
+     */
+    private static final int SESSION_TIMEOUT = 3600;
+
+    /**
+     * Shared contexts, by truststore
+     */
+    private static final ConcurrentMap<String, SSLContext> CONTEXTS = new ConcurrentHashMap<>();
+
+    private TlsContexts() {
+    }
+
+    /**
+     * @return the shared context trusting the JVM default truststore
+     */
+    public static SSLContext getDefault() {
+        return CONTEXTS.computeIfAbsent("", k -> withSessionCache(SSLContexts.createDefault()));
+    }
+
+    /**
+     * Get the shared context trusting the certificates of a truststore
+     *
+     * @param trustStore         truststore file, <code>null</code> for the JVM default truststore
+     * @param trustStorePassword truststore password, may be <code>null</code>
+     * @param trustStoreType     truststore type (<code>JKS</code>, <code>PKCS12</code>...), <code>null</code> for the JVM default type
+     * @return the context
+     * @throws IOException              if the truststore can't be read
+     * @throws GeneralSecurityException if the truststore or the context can't be loaded
+     */
+    public static SSLContext get(File trustStore, String trustStorePassword, String trustStoreType) throws IOException, GeneralSecurityException {
+        if (trustStore == null) {
+            return getDefault();
+        }
+        String key = trustStore.getAbsolutePath() + "|" + trustStoreType + "|" + trustStore.lastModified();
+        SSLContext context = CONTEXTS.get(key);
+        if (context == null) {
+            KeyStore keyStore = KeyStore.getInstance(trustStoreType == null ? KeyStore.getDefaultType() : trustStoreType);
+            try (InputStream in = Files.newInputStream(trustStore.toPath())) {
+                keyStore.load(in, trustStorePassword == null ? null : trustStorePassword.toCharArray());
+            }
+            context = withSessionCache(new SSLContextBuilder().loadTrustMaterial(keyStore, null).build());
+            SSLContext previous = CONTEXTS.putIfAbsent(key, context);
+            if (previous != null) {
+                context = previous;
+            }
+        }
+        return context;
+    }
+
+    private static SSLContext withSessionCache(SSLContext context) {
+        SSLSessionContext sessions = context.getClientSessionContext();
+        if (sessions != null) {
+            sessions.setSessionCacheSize(SESSION_CACHE_SIZE);
+            sessions.setSessionTimeout(SESSION_TIMEOUT);
+        }
+        return context;
+    }
+}
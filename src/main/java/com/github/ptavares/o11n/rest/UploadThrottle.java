@@ -0,0 +1,256 @@
+package com.github.ptavares.o11n.rest;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits plugin file uploads : bandwidth used by all uploads (token bucket), number of uploads in flight
+ * in total and per vRO server.
+ * <p>
+ * Instances are shared by all {@link RestClient}s of the JVM using the same limits, see {@link #shared(int, int, int)},
+ * so that limits also apply to modules deployed in parallel by a multi-threaded Maven build.
+ *
+ * @author Patrick Tavares
+ */
+public class UploadThrottle {
+
+    /**
+     * No limit at all
+     */
+    public static final UploadThrottle NONE = new UploadThrottle(0, 0, 0);
+
+    /**
+     * Max bytes written to the upload stream between two token acquisitions
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * Shared instances, by limits
+     */
+    private static final ConcurrentMap<String, UploadThrottle> SHARED = new ConcurrentHashMap<>();
+
+    /**
+     * Max upload rate in bytes per second, <code>0</code> for no limit
+     */
+    private final long bytesPerSecond;
+
+    /**
+     * Token bucket capacity, in bytes : one second of upload, at least one chunk
+     */
+    private final double capacity;
+
+    /**
+     * Available tokens, in bytes. Negative when uploads are in debt.
+     */
+    private double tokens;
+
+    /**
+     * Last token refill time, in nanoseconds
+     */
+    private long lastRefill;
+
+    /**
+     * Time source of the token bucket, in nanoseconds
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Uploads in flight, <code>null</code> for no limit
+     */
+    private final Semaphore globalSlots;
+
+    /**
+     * Max uploads in flight per server, <code>0</code> for no limit
+     */
+    private final int maxPerHost;
+
+    /**
+     * Uploads in flight, by server
+     */
+    private final ConcurrentMap<String, Semaphore> hostSlots = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param kiloBytesPerSecond max upload rate in KB/s, <code>0</code> for no limit
+     * @param maxUploads         max uploads in flight, <code>0</code> for no limit
+     * @param maxPerHost         max uploads in flight per server, <code>0</code> for no limit
+     */
+    UploadThrottle(int kiloBytesPerSecond, int maxUploads, int maxPerHost) {
+        this(kiloBytesPerSecond, maxUploads, maxPerHost, System::nanoTime);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param kiloBytesPerSecond max upload rate in KB/s, <code>0</code> for no limit
+     * @param maxUploads         max uploads in flight, <code>0</code> for no limit
+     * @param maxPerHost         max uploads in flight per server, <code>0</code> for no limit
+     * @param clock              time source of the token bucket, in nanoseconds
+     */
+    UploadThrottle(int kiloBytesPerSecond, int maxUploads, int maxPerHost, LongSupplier clock) {
+        this.bytesPerSecond = kiloBytesPerSecond * 1024L;
+        this.capacity = Math.max(bytesPerSecond, CHUNK_SIZE);
+        this.tokens = capacity;
+        this.clock = clock;
+        this.lastRefill = clock.getAsLong();
+        this.globalSlots = maxUploads > 0 ? new Semaphore(maxUploads, true) : null;
+        this.maxPerHost = maxPerHost;
+    }
+
+    /**
+     * Get the JVM wide instance for these limits
+     *
+     * @param kiloBytesPerSecond max upload rate in KB/s, <code>0</code> for no limit
+     * @param maxUploads         max uploads in flight, <code>0</code> for no limit
+     * @param maxPerHost         max uploads in flight per server, <code>0</code> for no limit
+     * @return the shared instance
+     */
+    public static UploadThrottle shared(int kiloBytesPerSecond, int maxUploads, int maxPerHost) {
+        if (kiloBytesPerSecond <= 0 && maxUploads <= 0 && maxPerHost <= 0) {
+            return NONE;
+        }
+        String key = kiloBytesPerSecond + "|" + maxUploads + "|" + maxPerHost;
+        return SHARED.computeIfAbsent(key, k -> new UploadThrottle(kiloBytesPerSecond, maxUploads, maxPerHost));
+    }
+
+    /**
+     * Wait for an upload slot on a server
+     *
+     * @param log  Plugin {@link Log}
+     * @param host vRO server
+     * @return the slot, to close once the upload is done
+     * @throws InterruptedException if interrupted while waiting
+     */
+    Slot acquire(Log log, String host) throws InterruptedException {
+        Semaphore perHost = maxPerHost > 0 ? hostSlots.computeIfAbsent(host, h -> new Semaphore(maxPerHost, true)) : null;
+        // Per server slot first : uploads waiting for a busy server don't hold a global slot other servers could use
+        if (perHost != null && !perHost.tryAcquire()) {
+            log.info(String.format("Waiting for a free upload slot on '%s'", host));
+            perHost.acquire();
+        }
+        try {
+            if (globalSlots != null && !globalSlots.tryAcquire()) {
+                log.info(String.format("Waiting for a free upload slot, %d upload(s) already waiting", globalSlots.getQueueLength()));
+                globalSlots.acquire();
+            }
+        } catch (InterruptedException e) {
+            if (perHost != null) {
+                perHost.release();
+            }
+            throw e;
+        }
+        return new Slot(perHost);
+    }
+
+    /**
+     * Wrap an upload entity to limit its bandwidth
+     *
+     * @param entity the entity to upload
+     * @return the throttled entity, or <code>entity</code> if bandwidth is not limited
+     */
+    HttpEntity throttle(HttpEntity entity) {
+        if (bytesPerSecond <= 0) {
+            return entity;
+        }
+        return new HttpEntityWrapper(entity) {
+            @Override
+            public void writeTo(OutputStream outStream) throws IOException {
+                super.writeTo(new ThrottledOutputStream(outStream));
+            }
+        };
+    }
+
+    /**
+     * Take <code>bytes</code> tokens from the bucket, waiting for the bucket to refill if it is in debt
+     *
+     * @param bytes bytes about to be written
+     * @throws InterruptedIOException if interrupted while waiting
+     */
+    private void consume(int bytes) throws InterruptedIOException {
+        long waitNanos = reserve(bytes);
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Upload interrupted");
+            }
+        }
+    }
+
+    /**
+     * Refill the bucket, then take <code>bytes</code> tokens from it
+     *
+     * @param bytes bytes about to be written
+     * @return time to wait before writing them, in nanoseconds, <code>0</code> if the bucket is not in debt
+     */
+    synchronized long reserve(int bytes) {
+        long now = clock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * bytesPerSecond / 1e9);
+        lastRefill = now;
+        tokens -= bytes;
+        return tokens < 0 ? (long) (-tokens * 1e9 / bytesPerSecond) : 0;
+    }
+
+    /**
+     * An upload slot, released on close
+     */
+    class Slot implements Closeable {
+
+        private final Semaphore perHost;
+
+        private Slot(Semaphore perHost) {
+            this.perHost = perHost;
+        }
+
+        @Override
+        public void close() {
+            if (globalSlots != null) {
+                globalSlots.release();
+            }
+            if (perHost != null) {
+                perHost.release();
+            }
+        }
+    }
+
+    /**
+     * Output stream writing by chunks, each chunk taking its tokens from the bucket
+     */
+    private class ThrottledOutputStream extends FilterOutputStream {
+
+        ThrottledOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            consume(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int chunk = Math.min(len, CHUNK_SIZE);
+                consume(chunk);
+                out.write(b, off, chunk);
+                off += chunk;
+                len -= chunk;
+            }
+        }
+    }
+}
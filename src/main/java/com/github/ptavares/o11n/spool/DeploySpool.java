@@ -0,0 +1,283 @@
+package com.github.ptavares.o11n.spool;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Durable journal of deploys to vRO servers which could not be reached, drained once they are reachable again.
+ * <p>
+ * Each server has at most one {@link SpoolEntry}, in a JSON file of the spool directory : spooling a newer plugin file
+ * for a server replaces the previous entry, so that only the newest plugin file is uploaded. Spooled plugin files are
+ * copied by digest in the <code>bundles</code> directory, and removed once no entry references them.
+ * <p>
+ * Changes are serialized by an exclusive lock on a file of the spool directory, shared by all builds of the machine.
+ *
+ * @author Patrick Tavares
+ */
+public class DeploySpool {
+
+    /**
+     * Suffix of entry files
+     */
+    private static final String ENTRY_SUFFIX = ".json";
+
+    /**
+     * Directory of spooled plugin files
+     */
+    private static final String BUNDLES = "bundles";
+
+    /**
+     * Lock file
+     */
+    private static final String LOCK_FILE = "spool.lock";
+
+    /**
+     * In-JVM lock, file locks being held by the JVM
+     */
+    private static final ReentrantLock JVM_LOCK = new ReentrantLock();
+
+    /**
+     * Plugin {@link Log}
+     */
+    private final Log log;
+
+    /**
+     * Spool directory
+     */
+    private final Path directory;
+
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    /**
+     * Constructor
+     *
+     * @param log       Plugin {@link Log}
+     * @param directory spool directory
+     */
+    public DeploySpool(Log log, Path directory) {
+        this.log = log;
+        this.directory = directory;
+    }
+
+    /**
+     * Spool a deploy, replacing the entry of its server if any
+     *
+     * @param entry      the deploy
+     * @param pluginFile Path to plugin file, copied in the spool
+     * @return <code>true</code> if a previous entry of the server was superseded
+     * @throws IOException if the deploy can't be spooled
+     */
+    public boolean add(SpoolEntry entry, Path pluginFile) throws IOException {
+        Path bundle = directory.resolve(BUNDLES).resolve(entry.getDigest().replaceAll("[^A-Za-z0-9._-]", "_")
+                + entry.getBundle().getFileSuffix()).toAbsolutePath();
+        Lock lock = lock();
+        try {
+            Files.createDirectories(bundle.getParent());
+            if (!Files.isRegularFile(bundle)) {
+                Path tmp = Files.createTempFile(bundle.getParent(), "bundle-", ".tmp");
+                Files.copy(pluginFile, tmp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmp, bundle, StandardCopyOption.ATOMIC_MOVE);
+            }
+            entry.setPluginFile(bundle.toString())
+                    .setSpoolTime(System.currentTimeMillis());
+            Path file = entryFile(entry);
+            SpoolEntry previous = read(file);
+            write(file, entry);
+            pruneBundles();
+            if (previous != null && !entry.getDigest().equals(previous.getDigest())) {
+                log.info(String.format("Spooled plugin file supersedes the one spooled for '%s' at %tc", entry.getServerHost(), previous.getSpoolTime()));
+                return true;
+            }
+            return false;
+        } finally {
+            lock.close();
+        }
+    }
+
+    /**
+     * @return spooled deploys, oldest first
+     * @throws IOException if the spool can't be read
+     */
+    public List<SpoolEntry> list() throws IOException {
+        List<SpoolEntry> entries = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return entries;
+        }
+        Lock lock = lock();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+            for (Path file : files) {
+                SpoolEntry entry = read(file);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        } finally {
+            lock.close();
+        }
+        entries.sort(Comparator.comparingLong(SpoolEntry::getSpoolTime));
+        return entries;
+    }
+
+    /**
+     * Remove a flushed deploy, unless a newer plugin file was spooled for its server meanwhile
+     *
+     * @param entry the flushed deploy
+     * @return <code>true</code> if removed, <code>false</code> if superseded
+     * @throws IOException if the spool can't be written
+     */
+    public boolean remove(SpoolEntry entry) throws IOException {
+        Lock lock = lock();
+        try {
+            Path file = entryFile(entry);
+            SpoolEntry current = read(file);
+            if (current != null && current.getSpoolTime() != entry.getSpoolTime()) {
+                return false;
+            }
+            Files.deleteIfExists(file);
+            pruneBundles();
+            return true;
+        } finally {
+            lock.close();
+        }
+    }
+
+    /**
+     * Record the failed flush attempts of a deploy, unless a newer plugin file was spooled for its server meanwhile
+     *
+     * @param entry the deploy, with its failures recorded
+     * @throws IOException if the spool can't be written
+     */
+    public void update(SpoolEntry entry) throws IOException {
+        Lock lock = lock();
+        try {
+            Path file = entryFile(entry);
+            SpoolEntry current = read(file);
+            if (current != null && current.getSpoolTime() == entry.getSpoolTime()) {
+                write(file, entry);
+            }
+        } finally {
+            lock.close();
+        }
+    }
+
+    private Path entryFile(SpoolEntry entry) {
+        return directory.resolve(entry.serverKey().replaceAll("[^A-Za-z0-9._-]", "_") + ENTRY_SUFFIX);
+    }
+
+    private SpoolEntry read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, SpoolEntry.class);
+        } catch (IOException | JsonParseException e) {
+            log.warn(String.format("Ignoring unreadable spool entry '%s' : %s", file, e.getMessage()));
+            return null;
+        }
+    }
+
+    private void write(Path file, SpoolEntry entry) throws IOException {
+        Path tmp = Files.createTempFile(directory, "entry-", ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            gson.toJson(entry, writer);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Remove spooled plugin files no longer referenced by an entry
+     */
+    private void pruneBundles() throws IOException {
+        Path bundles = directory.resolve(BUNDLES);
+        if (!Files.isDirectory(bundles)) {
+            return;
+        }
+        Set<Path> referenced = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+            for (Path file : files) {
+                SpoolEntry entry = read(file);
+                if (entry != null && entry.getPluginFile() != null) {
+                    referenced.add(Paths.get(entry.getPluginFile()).getFileName());
+                }
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(bundles)) {
+            for (Path file : files) {
+                if (!referenced.contains(file.getFileName())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Lock the spool, for this JVM then for other processes
+     */
+    private Lock lock() throws IOException {
+        Files.createDirectories(directory);
+        JVM_LOCK.lock();
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            return new Lock(channel, channel.lock());
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            JVM_LOCK.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * Exclusive lock of the spool
+     */
+    private static class Lock {
+
+        private final FileChannel channel;
+
+        private final FileLock lock;
+
+        Lock(FileChannel channel, FileLock lock) {
+            this.channel = channel;
+            this.lock = lock;
+        }
+
+        /**
+         * Release the lock
+         */
+        void close() throws IOException {
+            try {
+                lock.release();
+            } finally {
+                try {
+                    // Closing the channel also releases the file lock if the release failed
+                    channel.close();
+                } finally {
+                    JVM_LOCK.unlock();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.github.ptavares.o11n.spool;
+
+import com.github.ptavares.o11n.enums.FileBundle;
+
+/**
+ * A deploy waiting in the {@link DeploySpool} for its vRO server to be reachable again. Stored as JSON, without any password :
+ * credentials are provided by the configuration of the flush.
+ *
+ * @author Patrick Tavares
+ */
+public class SpoolEntry {
+
+    /**
+     * vRO Server Host or IP
+     */
+    private String serverHost;
+
+    /**
+     * vRO Plugin Service REST API Port
+     */
+    private Integer servicePort;
+
+    /**
+     * vRO Config Service REST API Port
+     */
+    private Integer configPort;
+
+    /**
+     * Absolute path of the spooled copy of the plugin file
+     */
+    private String pluginFile;
+
+    /**
+     * Digest of the plugin file
+     */
+    private String digest;
+
+    /**
+     * Plugin file type
+     */
+    private FileBundle bundle;
+
+    /**
+     * <code>true</code> to overwrite an installed plugin with the same version
+     */
+    private boolean overwrite;
+
+    /**
+     * <code>true</code> to restart vRO service after install
+     */
+    private boolean restartService;
+
+    /**
+     * <code>true</code> to wait for vRO service to be ready after restart
+     */
+    private boolean waitForRestart;
+
+    /**
+     * Time the deploy was spooled, in milliseconds
+     */
+    private long spoolTime;
+
+    /**
+     * Failed flush attempts
+     */
+    private int attempts;
+
+    /**
+     * Error of the last failed flush attempt
+     */
+    private String lastError;
+
+    /**
+     * @return key of the server of this entry : a server has at most one entry, the newest one
+     */
+    public String serverKey() {
+        return serverHost + ":" + servicePort + ":" + configPort;
+    }
+
+    public String getServerHost() {
+        return serverHost;
+    }
+
+    public SpoolEntry setServerHost(String serverHost) {
+        this.serverHost = serverHost;
+        return this;
+    }
+
+    public Integer getServicePort() {
+        return servicePort;
+    }
+
+    public SpoolEntry setServicePort(Integer servicePort) {
+        this.servicePort = servicePort;
+        return this;
+    }
+
+    public Integer getConfigPort() {
+        return configPort;
+    }
+
+    public SpoolEntry setConfigPort(Integer configPort) {
+        this.configPort = configPort;
+        return this;
+    }
+
+    public String getPluginFile() {
+        return pluginFile;
+    }
+
+    SpoolEntry setPluginFile(String pluginFile) {
+        this.pluginFile = pluginFile;
+        return this;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public SpoolEntry setDigest(String digest) {
+        this.digest = digest;
+        return this;
+    }
+
+    public FileBundle getBundle() {
+        return bundle;
+    }
+
+    public SpoolEntry setBundle(FileBundle bundle) {
+        this.bundle = bundle;
+        return this;
+    }
+
+    public boolean isOverwrite() {
+        return overwrite;
+    }
+
+    public SpoolEntry setOverwrite(boolean overwrite) {
+        this.overwrite = overwrite;
+        return this;
+    }
+
+    public boolean isRestartService() {
+        return restartService;
+    }
+
+    public SpoolEntry setRestartService(boolean restartService) {
+        this.restartService = restartService;
+        return this;
+    }
+
+    public boolean isWaitForRestart() {
+        return waitForRestart;
+    }
+
+    public SpoolEntry setWaitForRestart(boolean waitForRestart) {
+        this.waitForRestart = waitForRestart;
+        return this;
+    }
+
+    public long getSpoolTime() {
+        return spoolTime;
+    }
+
+    SpoolEntry setSpoolTime(long spoolTime) {
+        this.spoolTime = spoolTime;
+        return this;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Record a failed flush attempt
+     *
+     * @param error the error
+     * @return this entry
+     */
+    public SpoolEntry recordFailure(String error) {
+        this.attempts++;
+        this.lastError = error;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "SpoolEntry{" +
+                "server='" + serverHost + ':' + servicePort + '\'' +
+                ", digest='" + digest + '\'' +
+                ", bundle=" + bundle +
+                ", overwrite=" + overwrite +
+                ", restartService=" + restartService +
+                ", waitForRestart=" + waitForRestart +
+                ", attempts=" + attempts +
+                '}';
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.ptavares.o11n.state;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Remember what was deployed on each vRO server, between builds.
+ * <p>
+ * Values are stored per target (<code>host:port</code>) in a properties file of the plugin cache directory. The file is
+ * shared by all builds of the machine : only the values changed by this build are written, see {@link PropertiesStore}.
+ *
+ * @author Patrick Tavares
+ */
+public class DeployHistory {
+
+    /**
+     * Name of the history file
+     */
+    public static final String FILE_NAME = "deploy-history.properties";
+
+    /**
+     * Digest of the last plugin file deployed
+     */
+    public static final String LAST_DIGEST = "lastDigest";
+
+    /**
+     * Full version of the last plugin deployed
+     */
+    public static final String LAST_VERSION = "lastVersion";
+
+    /**
+     * Time of the last deploy, in milliseconds
+     */
+    public static final String LAST_DEPLOY_TIME = "lastDeployTime";
+
+    /**
+     * Plugin file upload and install rate of the last deploy, in bytes per second
+     */
+    public static final String UPLOAD_RATE = "uploadRate";
+
+    /**
+     * Duration of the last restart, from request to service ready, in milliseconds
+     */
+    public static final String RESTART_DURATION = "restartDuration";
+
+    /**
+     * Plugin {@link Log}
+     */
+    private final Log log;
+
+    /**
+     * History file
+     */
+    private final Path file;
+
+    /**
+     * History content
+     */
+    private Properties properties = new Properties();
+
+    /**
+     * Values changed since the last save
+     */
+    private final Map<String, String> changes = new LinkedHashMap<>();
+
+    /**
+     * Constructor, loading the history file if it exists
+     *
+     * @param log            Plugin {@link Log}
+     * @param cacheDirectory plugin cache directory
+     */
+    public DeployHistory(Log log, Path cacheDirectory) {
+        this.log = log;
+        this.file = cacheDirectory.resolve(FILE_NAME);
+        try {
+            properties = PropertiesStore.load(file);
+        } catch (IOException e) {
+            log.warn(String.format("Unable to read deploy history '%s' : %s", file, e.getMessage()));
+        }
+    }
+
+    /**
+     * Build the target name of a vRO server
+     *
+     * @param serverHost  vRO Server Host or IP
+     * @param servicePort vRO Plugin Service REST API Port
+     * @return the target name
+     */
+    public static String target(String serverHost, Integer servicePort) {
+        return serverHost + ":" + servicePort;
+    }
+
+    /**
+     * @param target target name
+     * @param key    value key
+     * @return the stored value, <code>null</code> if unknown
+     */
+    public synchronized String get(String target, String key) {
+        return properties.getProperty(target + "." + key);
+    }
+
+    /**
+     * @param target target name
+     * @param key    value key
+     * @param value  value to store
+     */
+    public synchronized void put(String target, String key, String value) {
+        properties.setProperty(target + "." + key, value);
+        changes.put(target + "." + key, value);
+    }
+
+    /**
+     * @param key value key
+     * @return the values stored for this key, on all targets
+     */
+    public synchronized Set<String> values(String key) {
+        Set<String> values = new HashSet<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.endsWith("." + key)) {
+                values.add(properties.getProperty(name));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Write the values changed by this build in the history file, keeping the values written meanwhile by other builds.
+     * Failures are only logged : history is an optimization.
+     */
+    public synchronized void save() {
+        if (changes.isEmpty()) {
+            return;
+        }
+        try {
+            properties = PropertiesStore.update(file, "o11n-maven-plugin deploy history", changes);
+            changes.clear();
+        } catch (IOException e) {
+            log.warn(String.format("Unable to write deploy history '%s' : %s", file, e.getMessage()));
+        }
+    }
+}
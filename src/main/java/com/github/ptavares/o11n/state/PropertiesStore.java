@@ -0,0 +1,89 @@
+package com.github.ptavares.o11n.state;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Properties file shared by concurrent builds : each build only writes the keys it changed, merged with the current
+ * content of the file under an exclusive lock, so that changes of other builds are never lost.
+ * <p>
+ * File locks are held by the JVM, so builds of the same JVM (parallel Maven builds) are first serialized in memory.
+ *
+ * @author Patrick Tavares
+ */
+public final class PropertiesStore {
+
+    /**
+     * In-JVM locks, by properties file
+     */
+    private static final ConcurrentMap<Path, ReentrantLock> JVM_LOCKS = new ConcurrentHashMap<>();
+
+    private PropertiesStore() {
+    }
+
+    /**
+     * Load a properties file
+     *
+     * @param file the properties file
+     * @return its content, empty if the file does not exist
+     * @throws IOException if the file can't be read
+     */
+    public static Properties load(Path file) throws IOException {
+        Properties properties = new Properties();
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Merge changes in a properties file : under an exclusive lock, the file is loaded again, the changed keys are set,
+     * then the file is written to a temp file moved over it, so that a concurrent reader never reads a partial file.
+     *
+     * @param file     the properties file
+     * @param comments comments of the file header
+     * @param changes  changed keys and their new value
+     * @return the merged content of the file
+     * @throws IOException if the file can't be locked, read or written
+     */
+    public static Properties update(Path file, String comments, Map<String, String> changes) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+        ReentrantLock jvmLock = JVM_LOCKS.computeIfAbsent(absolute, f -> new ReentrantLock());
+        jvmLock.lock();
+        try (FileChannel channel = FileChannel.open(absolute.resolveSibling(absolute.getFileName() + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.lock();
+            Properties properties = load(absolute);
+            for (Map.Entry<String, String> change : changes.entrySet()) {
+                properties.setProperty(change.getKey(), change.getValue());
+            }
+            Path tmp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(tmp)) {
+                    properties.store(out, comments);
+                }
+                Files.move(tmp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            return properties;
+        } finally {
+            // Closing the channel releases the file lock
+            jvmLock.unlock();
+        }
+    }
+}
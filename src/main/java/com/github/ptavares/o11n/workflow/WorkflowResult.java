@@ -0,0 +1,135 @@
+package com.github.ptavares.o11n.workflow;
+
+/**
+ * Outcome of one workflow execution
+ *
+ * @author Patrick Tavares
+ */
+public class WorkflowResult {
+
+    /**
+     * Execution state of a successful workflow
+     */
+    public static final String COMPLETED = "completed";
+
+    /**
+     * State given to executions still running at the deadline
+     */
+    public static final String TIMEOUT = "timeout";
+
+    /**
+     * State given to executions which could not be started or polled
+     */
+    public static final String ERROR = "error";
+
+    /**
+     * Workflow id
+     */
+    private final String workflowId;
+
+    /**
+     * Start time, in nanoseconds
+     */
+    private final long startNanos;
+
+    /**
+     * Execution resource, relative to the service API
+     */
+    private volatile String executionResource;
+
+    /**
+     * Last known execution state
+     */
+    private volatile String state;
+
+    /**
+     * Latency from start request to final state, in milliseconds
+     */
+    private volatile long latency = -1;
+
+    /**
+     * Error message, if any
+     */
+    private volatile String message;
+
+    /**
+     * Constructor
+     *
+     * @param workflowId workflow id
+     */
+    WorkflowResult(String workflowId) {
+        this.workflowId = workflowId;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Set the final state of the execution
+     *
+     * @param state   final state
+     * @param message error message, may be <code>null</code>
+     */
+    synchronized void finish(String state, String message) {
+        if (latency >= 0) {
+            return;
+        }
+        this.state = state;
+        this.message = message;
+        this.latency = (System.nanoTime() - startNanos) / 1000000;
+    }
+
+    /**
+     * @return <code>true</code> if a final state was set
+     */
+    boolean isFinished() {
+        return latency >= 0;
+    }
+
+    void setExecutionResource(String executionResource) {
+        this.executionResource = executionResource;
+    }
+
+    void setState(String state) {
+        this.state = state;
+    }
+
+    public String getWorkflowId() {
+        return workflowId;
+    }
+
+    public String getExecutionResource() {
+        return executionResource;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    /**
+     * @return latency from start request to final state in milliseconds, <code>-1</code> if not finished
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return <code>true</code> if the workflow completed successfully
+     */
+    public boolean isSuccess() {
+        return COMPLETED.equals(state);
+    }
+
+    @Override
+    public String toString() {
+        return "WorkflowResult{" +
+                "workflowId='" + workflowId + '\'' +
+                ", executionResource='" + executionResource + '\'' +
+                ", state='" + state + '\'' +
+                ", latency=" + latency +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
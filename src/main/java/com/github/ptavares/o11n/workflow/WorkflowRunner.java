@@ -0,0 +1,233 @@
+package com.github.ptavares.o11n.workflow;
+
+import com.github.ptavares.o11n.rest.RestClient;
+import com.github.ptavares.o11n.rest.RestRequest;
+import com.github.ptavares.o11n.rest.RestResponse;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Start vRO workflows concurrently through the service API, then poll their execution state until they all end
+ * or an overall deadline is reached.
+ * <p>
+ * Each execution is polled with an adaptive backoff : the delay between two polls doubles while the workflow runs,
+ * up to {@link #MAX_POLL_DELAY}. All calls share the same {@link RestClient}.
+ *
+ * @author Patrick Tavares
+ */
+public class WorkflowRunner {
+
+    /**
+     * Delay before the first poll, in milliseconds
+     */
+    private static final long INITIAL_POLL_DELAY = 250;
+
+    /**
+     * Max delay between two polls, in milliseconds
+     */
+    private static final long MAX_POLL_DELAY = 5000;
+
+    /**
+     * Max threads used to start and poll executions
+     */
+    private static final int MAX_THREADS = 8;
+
+    /**
+     * Final execution states
+     */
+    private static final Set<String> FINAL_STATES = new HashSet<>(Arrays.asList(WorkflowResult.COMPLETED, "failed", "canceled"));
+
+    /**
+     * Execution states waiting for a user interaction : they would never end by themselves
+     */
+    private static final Set<String> WAITING_STATES = new HashSet<>(Arrays.asList("waiting", "waiting-signal", "suspended"));
+
+    /**
+     * Plugin {@link Log}
+     */
+    private final Log log;
+
+    /**
+     * RestClient to use for WebServices calls
+     */
+    private final RestClient restClient;
+
+    /**
+     * User allowed to run the workflows
+     */
+    private final String user;
+
+    /**
+     * Password of <code>user</code>
+     */
+    private final String password;
+
+    /**
+     * Constructor
+     *
+     * @param log        Plugin {@link Log}
+     * @param restClient RestClient to use for WebServices calls
+     * @param user       user allowed to run the workflows
+     * @param password   password of <code>user</code>
+     */
+    public WorkflowRunner(Log log, RestClient restClient, String user, String password) {
+        this.log = log;
+        this.restClient = restClient;
+        this.user = user;
+        this.password = password;
+    }
+
+    /**
+     * Run workflows concurrently, without input parameters
+     *
+     * @param workflowIds ids of the workflows to run
+     * @param timeout     overall deadline, in milliseconds
+     * @return one result per workflow, in the same order
+     */
+    public List<WorkflowResult> run(List<String> workflowIds, long timeout) {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        final List<WorkflowResult> results = new ArrayList<>(workflowIds.size());
+        final CountDownLatch done = new CountDownLatch(workflowIds.size());
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(Math.max(1, Math.min(MAX_THREADS, workflowIds.size())));
+        try {
+            for (String workflowId : workflowIds) {
+                final WorkflowResult result = new WorkflowResult(workflowId);
+                results.add(result);
+                scheduler.execute(() -> start(scheduler, result, deadline, done));
+            }
+            if (!done.await(timeout, TimeUnit.MILLISECONDS)) {
+                for (WorkflowResult result : results) {
+                    result.finish(WorkflowResult.TIMEOUT, String.format("still '%s' after %d ms", result.getState(), timeout));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (WorkflowResult result : results) {
+                result.finish(WorkflowResult.ERROR, "interrupted");
+            }
+        } finally {
+            scheduler.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Start one workflow and schedule the first poll of its execution
+     */
+    private void start(ScheduledExecutorService scheduler, WorkflowResult result, long deadline, CountDownLatch done) {
+        try {
+            RestRequest restRequest = new RestRequest();
+            restRequest.setHttpAuthentication(user, password)
+                    .setResource("/workflows/" + result.getWorkflowId() + "/executions")
+                    .setMethod(RestRequest.Method.Post)
+                    .setBody("{\"parameters\":[]}");
+            RestResponse response = restClient.executeServiceRequest(restRequest);
+            String location = response.getHeader("Location");
+            if (response.getStatusCode() != 202 || location == null) {
+                finish(result, WorkflowResult.ERROR, "HTTP " + response.getStatusCode() + " while starting workflow", done);
+                return;
+            }
+            // Location is an absolute URL : keep the part relative to the service API
+            int api = location.indexOf("/api/");
+            result.setExecutionResource(StringUtils.removeEnd(api < 0 ? location : location.substring(api + 4), "/"));
+            result.setState("running");
+            log.debug(String.format("Workflow '%s' started : %s", result.getWorkflowId(), result.getExecutionResource()));
+            schedulePoll(scheduler, result, INITIAL_POLL_DELAY, deadline, done);
+        } catch (MojoFailureException | RuntimeException e) {
+            finish(result, WorkflowResult.ERROR, e.getMessage(), done);
+        }
+    }
+
+    /**
+     * Poll the execution state, then schedule the next poll with a doubled delay if it is still running
+     */
+    private void poll(ScheduledExecutorService scheduler, WorkflowResult result, long delay, long deadline, CountDownLatch done) {
+        try {
+            RestRequest restRequest = new RestRequest();
+            restRequest.setHttpAuthentication(user, password)
+                    .setResource(result.getExecutionResource() + "/state")
+                    .setMethod(RestRequest.Method.Get);
+            RestResponse response = restClient.executeServiceRequest(restRequest);
+            if (response.getStatusCode() != 200) {
+                finish(result, WorkflowResult.ERROR, "HTTP " + response.getStatusCode() + " while polling execution state", done);
+                return;
+            }
+            String state = parseState(response.getResponseBody());
+            result.setState(state);
+            if (FINAL_STATES.contains(state)) {
+                finish(result, state, null, done);
+            } else if (WAITING_STATES.contains(state)) {
+                finish(result, state, "execution is waiting for a user interaction", done);
+            } else {
+                schedulePoll(scheduler, result, Math.min(delay * 2, MAX_POLL_DELAY), deadline, done);
+            }
+        } catch (MojoFailureException | RuntimeException e) {
+            finish(result, WorkflowResult.ERROR, e.getMessage(), done);
+        }
+    }
+
+    private void schedulePoll(final ScheduledExecutorService scheduler, final WorkflowResult result, final long delay,
+                              final long deadline, final CountDownLatch done) {
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining <= 0) {
+            finish(result, WorkflowResult.TIMEOUT, String.format("still '%s' at deadline", result.getState()), done);
+            return;
+        }
+        scheduler.schedule(() -> poll(scheduler, result, delay, deadline, done), Math.min(delay, remaining), TimeUnit.MILLISECONDS);
+    }
+
+    private void finish(WorkflowResult result, String state, String message, CountDownLatch done) {
+        if (!result.isFinished()) {
+            result.finish(state, message);
+            done.countDown();
+        }
+    }
+
+    /**
+     * Parse <code>{"value":"completed"}</code>
+     */
+    private static String parseState(String json) {
+        try {
+            JsonElement value = new JsonParser().parse(json).getAsJsonObject().get("value");
+            return value == null ? null : value.getAsString();
+        } catch (JsonParseException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Log a summary of the results
+     *
+     * @param log     Plugin {@link Log}
+     * @param results workflow results
+     * @return <code>true</code> if all workflows completed successfully
+     */
+    public static boolean logResults(Log log, List<WorkflowResult> results) {
+        boolean success = true;
+        for (WorkflowResult result : results) {
+            String line = String.format("Workflow '%s' : %s in %d ms%s", result.getWorkflowId(), result.getState(), result.getLatency(),
+                    result.getMessage() == null ? "" : " (" + result.getMessage() + ")");
+            if (result.isSuccess()) {
+                log.info(line);
+            } else {
+                log.error(line);
+                success = false;
+            }
+        }
+        return success;
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.ptavares.o11n;
+
+import com.github.ptavares.o11n.enums.RestartRule;
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of the restart rules evaluated by {@link DeployMojo} after an install, and of the redaction of its logged passwords
+ *
+ * @author Patrick Tavares
+ */
+public class DeployMojoTest {
+
+    @Test
+    public void redactedPassword() {
+        assertNull(AbstractO11nMojo.redact(null));
+        String redacted = AbstractO11nMojo.redact("s3cr3t");
+        assertEquals("******", redacted);
+        assertFalse(redacted.contains("s3cr3t"));
+    }
+
+    @Test
+    public void always() throws MojoFailureException {
+        assertEquals("restart rule ALWAYS", reason(EnumSet.of(RestartRule.ALWAYS), target(false, false), true, "a", "a"));
+    }
+
+    @Test
+    public void noRules() throws MojoFailureException {
+        assertNull(reason(EnumSet.noneOf(RestartRule.class), target(true, true), true, null, "a"));
+    }
+
+    @Test
+    public void newPlugin() throws MojoFailureException {
+        Set<RestartRule> rules = EnumSet.of(RestartRule.NEW_PLUGIN);
+        assertEquals("new plugin installed", reason(rules, target(true, false), true, "a", "a"));
+        assertNull(reason(rules, target(false, true), true, "a", "b"));
+    }
+
+    @Test
+    public void versionChange() throws MojoFailureException {
+        Set<RestartRule> rules = EnumSet.of(RestartRule.VERSION_CHANGE);
+        assertEquals("plugin version changed", reason(rules, target(false, true), true, "a", "a"));
+        assertNull(reason(rules, target(false, false), true, "a", "b"));
+        // Without version check, the installed version is unknown : a target keeps its version changed
+        assertEquals("installed plugin version unknown ('checkInstalledVersion' disabled)",
+                reason(rules, new DeployTarget("vro", 8281, 8283, null), false, "a", "a"));
+    }
+
+    @Test
+    public void contentChange() throws MojoFailureException {
+        Set<RestartRule> rules = EnumSet.of(RestartRule.CONTENT_CHANGE);
+        assertEquals("no previous deploy of this plugin file recorded for this server", reason(rules, target(false, false), true, null, "a"));
+        assertEquals("plugin file content changed since last deploy", reason(rules, target(false, false), true, "a", "b"));
+        assertNull(reason(rules, target(true, true), true, "a", "a"));
+    }
+
+    @Test
+    public void firstMatchingRuleGivesTheReason() throws MojoFailureException {
+        // PENDING_CHANGES would call the server : rules before it decide first
+        Set<RestartRule> rules = EnumSet.of(RestartRule.PENDING_CHANGES, RestartRule.CONTENT_CHANGE, RestartRule.NEW_PLUGIN);
+        assertEquals("new plugin installed", reason(rules, target(true, false), true, "a", "b"));
+        assertEquals("plugin file content changed since last deploy", reason(rules, target(false, false), true, "a", "b"));
+    }
+
+    private static String reason(Set<RestartRule> rules, DeployTarget target, boolean versionChecked, String lastDigest,
+                                 String pluginDigest) throws MojoFailureException {
+        return DeployMojo.restartReason(rules, target, versionChecked, lastDigest, pluginDigest);
+    }
+
+    private static DeployTarget target(boolean newPlugin, boolean versionChanged) {
+        DeployTarget target = new DeployTarget("vro", 8281, 8283, null);
+        target.setNewPlugin(newPlugin);
+        target.setVersionChanged(versionChanged);
+        return target;
+    }
+}
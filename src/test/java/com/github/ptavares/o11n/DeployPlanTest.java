@@ -0,0 +1,74 @@
+package com.github.ptavares.o11n;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the {@link DeployPlan} estimate and summary
+ *
+ * @author Patrick Tavares
+ */
+public class DeployPlanTest {
+
+    @Test
+    public void skippedInstall() {
+        DeployPlan plan = plan();
+        plan.setInstall("SKIP", "version 1.0.0 already installed");
+        plan.setRestart("NOT_REQUIRED", null);
+        assertFalse(plan.isEstimatePartial());
+        assertEquals(0, plan.getEstimatedMillis());
+        assertEquals("'vro' : install SKIP (version 1.0.0 already installed), restart NOT_REQUIRED", plan.toString());
+    }
+
+    @Test
+    public void fullEstimate() {
+        DeployPlan plan = plan();
+        plan.setInstall("INSTALL", null);
+        plan.setDeletions(Arrays.asList("com.company.old"));
+        plan.setRestart("REQUIRED", "new plugin installed");
+        plan.setBytes(2048 * 1024);
+        plan.setUploadMillis(4000);
+        plan.setRestartMillis(60000);
+        assertFalse(plan.isEstimatePartial());
+        assertEquals(64000, plan.getEstimatedMillis());
+        assertEquals("'vro' : install INSTALL, delete packages [com.company.old], restart REQUIRED (new plugin installed), "
+                + "upload 2048 KB in ~4 s, restart in ~60 s", plan.toString());
+    }
+
+    @Test
+    public void unknownTimingsArePartial() {
+        DeployPlan plan = plan();
+        plan.setInstall("INSTALL", null);
+        plan.setBytes(1024);
+        plan.setRestart("REQUIRED", "restart rule ALWAYS");
+        plan.setRestartMillis(30000);
+        // No previous upload rate
+        assertTrue(plan.isEstimatePartial());
+        assertEquals(30000, plan.getEstimatedMillis());
+
+        plan.setUploadMillis(1000);
+        plan.setRestartMillis(-1);
+        assertTrue(plan.isEstimatePartial());
+        assertEquals(1000, plan.getEstimatedMillis());
+        assertTrue(plan.toString().endsWith("restart in unknown time"));
+    }
+
+    @Test
+    public void restartDurationOnlyCountedWhenRequired() {
+        DeployPlan plan = plan();
+        plan.setInstall("DELTA", "2 package(s) changed");
+        plan.setRestart("DISABLED", null);
+        plan.setRestartMillis(60000);
+        assertFalse(plan.isEstimatePartial());
+        assertEquals(0, plan.getEstimatedMillis());
+    }
+
+    private static DeployPlan plan() {
+        return new DeployPlan(new DeployTarget("vro", 8281, 8283, null));
+    }
+}
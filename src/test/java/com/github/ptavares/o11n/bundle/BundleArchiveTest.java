@@ -0,0 +1,316 @@
+package com.github.ptavares.o11n.bundle;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link BundleArchive} on valid, truncated and corrupted archives
+ *
+ * @author Patrick Tavares
+ */
+public class BundleArchiveTest {
+
+    private static final byte[] DESCRIPTOR = "<module name=\"sample\" version=\"1.0.0\" build-number=\"1\"/>".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] CONTENT = content();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private int files;
+
+    @Test
+    public void openReadsEntries() throws IOException {
+        BundleArchive archive = BundleArchive.open(write(archive()));
+        assertEquals(3, archive.getEntries().size());
+        assertArrayEquals(DESCRIPTOR, archive.read(archive.getEntry("dunes-meta-inf.xml")));
+        assertArrayEquals(CONTENT, archive.read(archive.getEntry("lib/plugin.jar")));
+        assertArrayEquals(CONTENT, archive.read(archive.getEntry("stored.bin")));
+        for (BundleEntry entry : archive.getEntries()) {
+            verify(archive, entry);
+        }
+    }
+
+    @Test
+    public void wrapReadsEntries() throws IOException {
+        BundleArchive archive = BundleArchive.wrap(ByteBuffer.wrap(archive()));
+        assertArrayEquals(CONTENT, archive.read(archive.getEntry("lib/plugin.jar")));
+        BundleEntry stored = archive.getEntry("stored.bin");
+        assertEquals(CONTENT.length, archive.getRawData(stored).remaining());
+    }
+
+    @Test
+    public void openDoesNotKeepFileOpen() throws IOException {
+        Path file = write(archive());
+        BundleArchive archive = BundleArchive.open(file);
+        Files.delete(file);
+        assertNotNull(archive.getEntry("stored.bin"));
+    }
+
+    @Test(expected = IOException.class)
+    public void emptyFile() throws IOException {
+        BundleArchive.open(write(new byte[0]));
+    }
+
+    @Test(expected = IOException.class)
+    public void notAnArchive() throws IOException {
+        BundleArchive.open(write(CONTENT));
+    }
+
+    @Test
+    public void truncatedArchives() throws IOException {
+        byte[] archive = archive();
+        // Every truncation loses the end of central directory record
+        for (int length = 1; length < archive.length; length += 97) {
+            try {
+                BundleArchive.open(write(Arrays.copyOf(archive, length)));
+                fail("Archive truncated to " + length + " bytes should be rejected");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void centralDirectoryOutOfBounds() throws IOException {
+        byte[] archive = archive();
+        int eocd = endOfCentralDirectory(archive);
+        // Central directory offset pointing after the end of central directory record
+        put(archive, eocd + 16, eocd + 1, 4);
+        BundleArchive.open(write(archive));
+    }
+
+    @Test
+    public void nameLengthOutOfBounds() throws IOException {
+        byte[] archive = archive();
+        put(archive, lastCentralHeader(archive) + 28, 0xFFFF, 2);
+        assertRejected(archive);
+    }
+
+    @Test
+    public void commentLengthOutOfBounds() throws IOException {
+        byte[] archive = archive();
+        put(archive, centralDirectory(archive) + 32, 0xFFFF, 2);
+        assertRejected(archive);
+    }
+
+    @Test
+    public void entryCountOutOfBounds() throws IOException {
+        byte[] archive = archive();
+        put(archive, endOfCentralDirectory(archive) + 10, 1000, 2);
+        assertRejected(archive);
+    }
+
+    @Test
+    public void badLocalHeader() throws IOException {
+        byte[] archive = archive();
+        archive[0] = 0;
+        BundleArchive bundle = BundleArchive.open(write(archive));
+        try {
+            bundle.read(bundle.getEntries().get(0));
+            fail("Bad local header should be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void entryDataOutOfBounds() throws IOException {
+        byte[] archive = archive();
+        put(archive, lastCentralHeader(archive) + 20, archive.length, 4);
+        BundleArchive bundle = BundleArchive.open(write(archive));
+        try {
+            bundle.getRawData(bundle.getEntry("stored.bin"));
+            fail("Entry data out of archive bounds should be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void corruptedData() throws IOException {
+        byte[] archive = archive();
+        BundleArchive bundle = BundleArchive.open(write(archive));
+        BundleEntry entry = bundle.getEntry("lib/plugin.jar");
+        int start = (int) entry.getLocalHeaderOffset() + 30 + "lib/plugin.jar".length();
+        for (int i = start; i < start + entry.getCompressedSize(); i += 7) {
+            archive[i] ^= 0x5A;
+        }
+        BundleArchive corrupted = BundleArchive.open(write(archive));
+        try {
+            verify(corrupted, corrupted.getEntry("lib/plugin.jar"));
+            fail("Corrupted data should be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            corrupted.read(corrupted.getEntry("lib/plugin.jar"));
+            fail("Corrupted data should be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void crcMismatch() throws IOException {
+        byte[] archive = archive();
+        int header = lastCentralHeader(archive);
+        put(archive, header + 16, 0x12345678, 4);
+        BundleArchive bundle = BundleArchive.open(write(archive));
+        try {
+            verify(bundle, bundle.getEntry("stored.bin"));
+            fail("CRC mismatch should be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void declaredSizeIsNotAllocated() throws IOException {
+        byte[] archive = archive();
+        // Uncompressed size of the deflated entry far above its real content
+        put(archive, centralHeader(archive, "lib/plugin.jar") + 24, 200L * 1024 * 1024, 4);
+        BundleArchive bundle = BundleArchive.open(write(archive));
+        try {
+            bundle.read(bundle.getEntry("lib/plugin.jar"));
+            fail("Size mismatch should be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Size mismatch"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void sizeAboveReadLimit() throws IOException {
+        byte[] archive = archive();
+        put(archive, centralHeader(archive, "lib/plugin.jar") + 24, BundleArchive.MAX_READ_SIZE + 1L, 4);
+        BundleArchive bundle = BundleArchive.open(write(archive));
+        bundle.read(bundle.getEntry("lib/plugin.jar"));
+    }
+
+    private void assertRejected(byte[] archive) {
+        try {
+            BundleArchive.open(write(archive));
+            fail("Corrupted archive should be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+        try {
+            BundleArchive.wrap(ByteBuffer.wrap(archive));
+            fail("Corrupted archive should be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static void verify(BundleArchive archive, BundleEntry entry) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try (FileChannel channel = archive.openChannel()) {
+            archive.verify(channel, entry, inflater, new byte[BundleArchive.BUFFER_SIZE], new byte[BundleArchive.BUFFER_SIZE], new CRC32());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private Path write(byte[] content) {
+        try {
+            Path file = folder.newFile("bundle-" + files++ + ".zip").toPath();
+            Files.write(file, content);
+            return file;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return an archive with a deflated descriptor, a deflated entry and a stored entry, in this order
+     */
+    private static byte[] archive() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("dunes-meta-inf.xml"));
+            zip.write(DESCRIPTOR);
+            zip.putNextEntry(new ZipEntry("lib/plugin.jar"));
+            zip.write(CONTENT);
+            ZipEntry stored = new ZipEntry("stored.bin");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(CONTENT.length);
+            CRC32 crc = new CRC32();
+            crc.update(CONTENT);
+            stored.setCrc(crc.getValue());
+            zip.putNextEntry(stored);
+            zip.write(CONTENT);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] content() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            builder.append("line ").append(i * 7919 % 1000).append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int endOfCentralDirectory(byte[] archive) {
+        ByteBuffer buffer = ByteBuffer.wrap(archive).order(ByteOrder.LITTLE_ENDIAN);
+        for (int position = archive.length - 22; position >= 0; position--) {
+            if (buffer.getInt(position) == 0x06054b50) {
+                return position;
+            }
+        }
+        throw new IllegalStateException("No end of central directory");
+    }
+
+    private static int centralDirectory(byte[] archive) {
+        return ByteBuffer.wrap(archive).order(ByteOrder.LITTLE_ENDIAN).getInt(endOfCentralDirectory(archive) + 16);
+    }
+
+    private static int lastCentralHeader(byte[] archive) {
+        ByteBuffer buffer = ByteBuffer.wrap(archive).order(ByteOrder.LITTLE_ENDIAN);
+        for (int position = endOfCentralDirectory(archive) - 46; position >= 0; position--) {
+            if (buffer.getInt(position) == 0x02014b50) {
+                return position;
+            }
+        }
+        throw new IllegalStateException("No central directory header");
+    }
+
+    private static int centralHeader(byte[] archive, String name) {
+        ByteBuffer buffer = ByteBuffer.wrap(archive).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        for (int position = centralDirectory(archive); position < endOfCentralDirectory(archive); position++) {
+            if (buffer.getInt(position) == 0x02014b50 && (buffer.getShort(position + 28) & 0xFFFF) == nameBytes.length
+                    && Arrays.equals(nameBytes, Arrays.copyOfRange(archive, position + 46, position + 46 + nameBytes.length))) {
+                return position;
+            }
+        }
+        throw new IllegalStateException("No central directory header for " + name);
+    }
+
+    private static void put(byte[] archive, int position, long value, int length) {
+        for (int i = 0; i < length; i++) {
+            archive[position + i] = (byte) (value >>> (8 * i));
+        }
+    }
+}
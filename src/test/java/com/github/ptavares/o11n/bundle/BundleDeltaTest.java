@@ -0,0 +1,83 @@
+package com.github.ptavares.o11n.bundle;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link BundleDelta} between two builds of a plugin file
+ *
+ * @author Patrick Tavares
+ */
+public class BundleDeltaTest {
+
+    @Test
+    public void sameBuild() throws IOException {
+        BundleDelta delta = BundleDelta.compare(archive("lib/", "", "lib/plugin.jar", "jar", "a.package", "a"),
+                archive("lib/", "", "lib/plugin.jar", "jar", "a.package", "a"));
+        assertTrue(delta.isEmpty());
+        assertTrue(delta.isPackagesOnly());
+    }
+
+    @Test
+    public void changedPackages() throws IOException {
+        BundleDelta delta = BundleDelta.compare(archive("lib/plugin.jar", "jar", "a.package", "a"),
+                archive("lib/plugin.jar", "jar", "a.package", "a2", "b.package", "b"));
+        assertEquals(Arrays.asList("a.package", "b.package"), names(delta.getChanged()));
+        assertTrue(delta.getRemoved().isEmpty());
+        assertFalse(delta.isEmpty());
+        assertTrue(delta.isPackagesOnly());
+    }
+
+    @Test
+    public void changedPluginFile() throws IOException {
+        BundleDelta delta = BundleDelta.compare(archive("lib/plugin.jar", "jar", "a.package", "a"),
+                archive("lib/plugin.jar", "jar2", "a.package", "a2"));
+        assertEquals(Arrays.asList("lib/plugin.jar", "a.package"), names(delta.getChanged()));
+        assertFalse(delta.isPackagesOnly());
+    }
+
+    @Test
+    public void removedPackage() throws IOException {
+        BundleDelta delta = BundleDelta.compare(archive("lib/", "", "a.package", "a", "b.package", "b"),
+                archive("a.package", "a"));
+        assertTrue(delta.getChanged().isEmpty());
+        // Directories are ignored
+        assertEquals(Arrays.asList("b.package"), names(delta.getRemoved()));
+        assertFalse(delta.isPackagesOnly());
+    }
+
+    /**
+     * @param content entry names and contents, a name ending with <code>/</code> being a directory
+     */
+    private static BundleArchive archive(String... content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (int i = 0; i < content.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(content[i]));
+                zip.write(content[i + 1].getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return BundleArchive.wrap(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    private static List<String> names(List<BundleEntry> entries) {
+        List<String> names = new ArrayList<>();
+        for (BundleEntry entry : entries) {
+            names.add(entry.getName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.ptavares.o11n.bundle;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link BundleMetadata#compareVersions(String, String)}
+ *
+ * @author Patrick Tavares
+ */
+public class BundleMetadataTest {
+
+    @Test
+    public void equalVersions() {
+        assertEquals(0, BundleMetadata.compareVersions("1.2.3", "1.2.3"));
+        assertEquals(0, BundleMetadata.compareVersions("1.02.3", "1.2.003"));
+        assertEquals(0, BundleMetadata.compareVersions(null, ""));
+        assertEquals(0, BundleMetadata.compareVersions("1.0.0", "1"));
+    }
+
+    @Test
+    public void numericSegments() {
+        assertTrue(BundleMetadata.compareVersions("1.2.10", "1.2.9") > 0);
+        assertTrue(BundleMetadata.compareVersions("1.2.9", "1.2.10") < 0);
+        assertTrue(BundleMetadata.compareVersions("2.0", "10.0") < 0);
+    }
+
+    @Test
+    public void longerVersions() {
+        assertTrue(BundleMetadata.compareVersions("1.2.3.1", "1.2.3") > 0);
+        assertTrue(BundleMetadata.compareVersions("1.2", "1.2.0.1") < 0);
+        assertEquals(0, BundleMetadata.compareVersions("1.2", "1.2.0.0"));
+    }
+
+    @Test
+    public void digitRunsLongerThanLong() {
+        // Build numbers made of timestamps can overflow a long
+        assertTrue(BundleMetadata.compareVersions("1.0.123456789012345678901234", "1.0.99999999999999999999999") > 0);
+        assertTrue(BundleMetadata.compareVersions("1.0.99999999999999999999998", "1.0.99999999999999999999999") < 0);
+        assertEquals(0, BundleMetadata.compareVersions("1.0.00099999999999999999999999", "1.0.99999999999999999999999"));
+    }
+
+    @Test
+    public void qualifiers() {
+        assertTrue(BundleMetadata.compareVersions("1.0.0-alpha", "1.0.0-beta") < 0);
+        assertTrue(BundleMetadata.compareVersions("1.0.0_rc2", "1.0.0_rc1") > 0);
+        assertEquals(0, BundleMetadata.compareVersions("1.0.0-SNAPSHOT", "1.0.0.SNAPSHOT"));
+        // A qualifier is compared as text with the numeric segment of the other version
+        assertTrue(BundleMetadata.compareVersions("1.0.0-SNAPSHOT", "1.0.0.1") > 0);
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.ptavares.o11n.bundle;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests of {@link DigestService}
+ *
+ * @author Patrick Tavares
+ */
+public class DigestServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void plainDigestMatchesSha256() throws IOException, NoSuchAlgorithmException {
+        // Larger than the read buffer, not a multiple of it
+        byte[] content = new byte[3 * 1024 * 1024 + 17];
+        new Random(42).nextBytes(content);
+        Path file = folder.newFile("bundle.dar").toPath();
+        Files.write(file, content);
+
+        String digest = new DigestService(new SystemStreamLog(), null, false).digest(file);
+        assertEquals(DigestService.SHA256 + ':' + hex(MessageDigest.getInstance("SHA-256").digest(content)), digest);
+    }
+
+    @Test
+    public void changedFileIsHashedAgain() throws IOException {
+        Path file = folder.newFile("bundle.vmoapp").toPath();
+        Files.write(file, new byte[]{1, 2, 3});
+        DigestService service = new DigestService(new SystemStreamLog(), folder.getRoot().toPath(), false);
+        String first = service.digest(file);
+        Files.write(file, new byte[]{1, 2, 3, 4});
+        assertFalse(first.equals(service.digest(file)));
+        assertEquals(first, new DigestService(new SystemStreamLog(), folder.getRoot().toPath(), false).digest(write(file, new byte[]{1, 2, 3})));
+    }
+
+    @Test
+    public void memoryCacheKeepsOneEntryPerFile() throws IOException {
+        Path file = folder.newFile("watched.dar").toPath();
+        DigestService service = new DigestService(new SystemStreamLog(), null, false);
+        service.digest(write(file, new byte[]{0}));
+        int size = DigestService.memoryCacheSize();
+        // Each rebuild changes size and modification time
+        for (int i = 1; i <= 5; i++) {
+            service.digest(write(file, new byte[i + 1]));
+        }
+        assertEquals(size, DigestService.memoryCacheSize());
+    }
+
+    private static Path write(Path file, byte[] content) throws IOException {
+        Files.write(file, content);
+        return file;
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : bytes) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+}
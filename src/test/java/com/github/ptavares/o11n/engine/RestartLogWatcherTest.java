@@ -0,0 +1,87 @@
+package com.github.ptavares.o11n.engine;
+
+import com.github.ptavares.o11n.rest.RestClient;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the new lines found by {@link RestartLogWatcher} between two reads of the server log
+ *
+ * @author Patrick Tavares
+ */
+public class RestartLogWatcherTest {
+
+    private static final String FAILURE = "ERROR Unable to load plugin o11n-plugin-sample";
+
+    private RestClient restClient;
+
+    private RestartLogWatcher watcher;
+
+    @Before
+    public void setUp() {
+        restClient = new RestClient(new SystemStreamLog());
+        watcher = new RestartLogWatcher(new SystemStreamLog(), restClient, "user", "password",
+                RestartLogWatcher.DEFAULT_LOG_RESOURCE, RestartLogWatcher.DEFAULT_FAILURE_PATTERNS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        restClient.close();
+    }
+
+    @Test
+    public void baselineIsNotMatched() {
+        assertNull(watcher.process(Arrays.asList("starting", FAILURE, "started")));
+        assertNull(watcher.process(Arrays.asList("starting", FAILURE, "started", "stopping")));
+    }
+
+    @Test
+    public void newFailureIsReported() {
+        watcher.process(Arrays.asList("starting", "started"));
+        String excerpt = watcher.process(Arrays.asList("starting", "started", "stopping", FAILURE, "stopped"));
+        assertNotNull(excerpt);
+        assertTrue(excerpt.contains(FAILURE));
+        assertTrue(excerpt.contains("stopping"));
+    }
+
+    @Test
+    public void repeatedLinesAfterLastReadLineAreMatched() {
+        watcher.process(Arrays.asList("starting", FAILURE, "started"));
+        // The same failure logged again by the restart is a new failure
+        assertNotNull(watcher.process(Arrays.asList("starting", FAILURE, "started", "stopping", FAILURE)));
+    }
+
+    @Test
+    public void rotatedLogOnlyMatchesUnseenLines() {
+        watcher.process(Arrays.asList("starting", FAILURE, "started"));
+        // Last read line rotated out : lines already read are not reported again
+        assertNull(watcher.process(Arrays.asList(FAILURE, "stopping", "stopped")));
+        watcher = new RestartLogWatcher(new SystemStreamLog(), restClient, "user", "password",
+                RestartLogWatcher.DEFAULT_LOG_RESOURCE, RestartLogWatcher.DEFAULT_FAILURE_PATTERNS);
+        watcher.process(Arrays.asList("starting", "started"));
+        assertNotNull(watcher.process(Arrays.asList("stopping", FAILURE, "stopped")));
+    }
+
+    @Test
+    public void trimmedLinesAreUnseenAgain() {
+        List<String> lines = new ArrayList<>();
+        lines.add(FAILURE);
+        for (int i = 0; i < RestartLogWatcher.MAX_SEEN_LINES; i++) {
+            lines.add("line " + i);
+        }
+        watcher.process(lines);
+        // Only the last MAX_SEEN_LINES lines are remembered : the oldest line is forgotten
+        assertNull(watcher.process(Arrays.asList("line 0", "line 1")));
+        assertNotNull(watcher.process(Arrays.asList("stopping", FAILURE)));
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.ptavares.o11n.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link LatencyHistogram} buckets, counts and quantiles
+ *
+ * @author Patrick Tavares
+ */
+public class LatencyHistogramTest {
+
+    private static final long MAX_TRACKED = (1L << 41) - 1;
+
+    @Test
+    public void bucketRoundTripsAtPowersOfTwo() {
+        for (int exponent = 0; exponent <= 40; exponent++) {
+            long power = 1L << exponent;
+            for (long value : new long[]{power - 1, power, power + 1}) {
+                int bucket = LatencyHistogram.bucket(value);
+                long upperBound = LatencyHistogram.upperBound(bucket);
+                assertTrue(value + " above its bucket", value <= upperBound);
+                assertEquals(bucket, LatencyHistogram.bucket(upperBound));
+                if (bucket > 0) {
+                    assertTrue(value + " in the previous bucket", LatencyHistogram.upperBound(bucket - 1) < value);
+                }
+                // Relative error below 1/16
+                assertTrue(value + " bucket too wide", upperBound - value <= value / 16);
+            }
+        }
+    }
+
+    @Test
+    public void valuesAboveTrackedRangeAreClamped() {
+        int last = LatencyHistogram.bucket(MAX_TRACKED);
+        assertEquals(MAX_TRACKED, LatencyHistogram.upperBound(last));
+        assertEquals(last, LatencyHistogram.bucket(1L << 41));
+        assertEquals(last, LatencyHistogram.bucket(1L << 50));
+        assertEquals(last, LatencyHistogram.bucket(Long.MAX_VALUE));
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1L << 50);
+        assertEquals(1L << 50, histogram.getMax());
+        assertEquals(MAX_TRACKED, histogram.getQuantile(1));
+        // A clamped value is greater than the bound of its bucket : it is only counted below an unbounded limit
+        assertEquals(0, histogram.countAtOrBelow(MAX_TRACKED - 1));
+        assertEquals(1, histogram.countAtOrBelow(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void negativeValuesAreRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(1, histogram.countAtOrBelow(0));
+        assertEquals(0, histogram.getSum());
+    }
+
+    @Test
+    public void countAtOrBelow() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        assertEquals(0, histogram.countAtOrBelow(0));
+        assertEquals(15, histogram.countAtOrBelow(15));
+        // 48 and 49 share a bucket : 49 is its highest value
+        assertEquals(47, histogram.countAtOrBelow(48));
+        assertEquals(49, histogram.countAtOrBelow(49));
+        assertEquals(100, histogram.countAtOrBelow(103));
+    }
+
+    @Test
+    public void quantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getQuantile(0.5));
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getSum());
+        assertEquals(1, histogram.getQuantile(0));
+        assertEquals(10, histogram.getQuantile(0.1));
+        assertEquals(51, histogram.getQuantile(0.5));
+        assertEquals(95, histogram.getQuantile(0.95));
+        assertEquals(100, histogram.getQuantile(1));
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.ptavares.o11n.packages;
+
+import com.github.ptavares.o11n.enums.PackageDeleteStrategy;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link PackageDeletion} parsing and matching
+ *
+ * @author Patrick Tavares
+ */
+public class PackageDeletionTest {
+
+    @Test
+    public void parseDefaultStrategy() {
+        PackageDeletion deletion = PackageDeletion.parse(" com.company.sample ", PackageDeleteStrategy.DELETE_PACKAGE_KEEPING_SHARED);
+        assertEquals("com.company.sample", deletion.getName());
+        assertEquals(PackageDeleteStrategy.DELETE_PACKAGE_KEEPING_SHARED, deletion.getStrategy());
+        assertFalse(deletion.isPattern());
+    }
+
+    @Test
+    public void parseStrategyByLabelOrName() {
+        assertEquals(PackageDeleteStrategy.DELETE_PACKAGE_WITH_CONTENT,
+                PackageDeletion.parse("com.company.sample:deletePackageWithContent", PackageDeleteStrategy.DELETE_PACKAGE).getStrategy());
+        assertEquals(PackageDeleteStrategy.DELETE_PACKAGE_WITH_CONTENT,
+                PackageDeletion.parse("com.company.sample : delete_package_with_content", PackageDeleteStrategy.DELETE_PACKAGE).getStrategy());
+    }
+
+    @Test
+    public void parseUsesLastSeparator() {
+        PackageDeletion deletion = PackageDeletion.parse("com:company:sample:deletePackage", PackageDeleteStrategy.DELETE_PACKAGE_KEEPING_SHARED);
+        assertEquals("com:company:sample", deletion.getName());
+        assertEquals(PackageDeleteStrategy.DELETE_PACKAGE, deletion.getStrategy());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseUnknownStrategy() {
+        PackageDeletion.parse("com.company.sample:deleteEverything", PackageDeleteStrategy.DELETE_PACKAGE);
+    }
+
+    @Test
+    public void matchesName() {
+        PackageDeletion deletion = new PackageDeletion("com.company.sample", PackageDeleteStrategy.DELETE_PACKAGE);
+        assertTrue(deletion.matches("com.company.sample"));
+        assertFalse(deletion.matches("com.company.sample2"));
+        // Dots are not wildcards
+        assertFalse(deletion.matches("comXcompany.sample"));
+    }
+
+    @Test
+    public void matchesGlob() {
+        PackageDeletion deletion = new PackageDeletion("com.company.*.v?", PackageDeleteStrategy.DELETE_PACKAGE);
+        assertTrue(deletion.isPattern());
+        assertTrue(deletion.matches("com.company.sample.v1"));
+        assertTrue(deletion.matches("com.company.a.b.v2"));
+        assertFalse(deletion.matches("com.company.sample.v10"));
+        assertFalse(deletion.matches("comXcompany.sample.v1"));
+        assertEquals("com.company.*.v?:DELETE_PACKAGE", deletion.toString());
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.ptavares.o11n.repository;
+
+import com.github.ptavares.o11n.enums.FileBundle;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link BundleResolver} coordinates parsing and resolution results
+ *
+ * @author Patrick Tavares
+ */
+public class BundleResolverTest {
+
+    @Test
+    public void parseDefaultType() {
+        Artifact artifact = BundleResolver.parse(" com.company:o11nplugin-sample:1.0.0 ", FileBundle.DAR);
+        assertEquals("com.company", artifact.getGroupId());
+        assertEquals("o11nplugin-sample", artifact.getArtifactId());
+        assertEquals("1.0.0", artifact.getVersion());
+        assertEquals("dar", artifact.getExtension());
+    }
+
+    @Test
+    public void parseMatchingType() {
+        assertEquals("vmoapp", BundleResolver.parse("com.company:sample-app:1.0.0:vmoapp", FileBundle.VMOAPP).getExtension());
+    }
+
+    @Test
+    public void parseInvalidCoordinates() {
+        for (String coordinates : Arrays.asList("com.company:sample", "com.company::1.0.0", "a:b:c:dar:extra", "com.company:sample:1.0.0:vmoapp")) {
+            try {
+                BundleResolver.parse(coordinates, FileBundle.DAR);
+                fail("Coordinates '" + coordinates + "' should be rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void resolveKeepsOrder() throws MojoFailureException {
+        List<Artifact> artifacts = Arrays.asList(BundleResolver.parse("com.company:b:1.0.0", FileBundle.DAR),
+                BundleResolver.parse("com.company:a:1.0.0", FileBundle.DAR));
+        List<Path> files = new BundleResolver(new SystemStreamLog(), repositorySystem(false), null, Collections.emptyList()).resolve(artifacts);
+        assertEquals(Arrays.asList(Paths.get("repository", "b-1.0.0.dar"), Paths.get("repository", "a-1.0.0.dar")), files);
+    }
+
+    @Test
+    public void resolveFailureListsUnresolvedArtifacts() {
+        List<Artifact> artifacts = Arrays.asList(BundleResolver.parse("com.company:a:1.0.0", FileBundle.DAR),
+                BundleResolver.parse("com.company:missing:1.0.0", FileBundle.DAR));
+        try {
+            new BundleResolver(new SystemStreamLog(), repositorySystem(true), null, Collections.emptyList()).resolve(artifacts);
+            fail("Unresolved artifact should fail");
+        } catch (MojoFailureException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("com.company:missing:dar:1.0.0"));
+            assertFalse(e.getMessage(), e.getMessage().contains("com.company:a:"));
+        }
+    }
+
+    /**
+     * @param failMissing <code>true</code> to fail the resolution of artifacts named <code>missing</code>
+     * @return a repository system resolving artifacts to <code>repository/artifactId-version.extension</code>
+     */
+    private static RepositorySystem repositorySystem(final boolean failMissing) {
+        return (RepositorySystem) Proxy.newProxyInstance(BundleResolverTest.class.getClassLoader(), new Class<?>[]{RepositorySystem.class},
+                (proxy, method, args) -> {
+                    if (!"resolveArtifacts".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    List<ArtifactResult> results = new ArrayList<>();
+                    boolean failed = false;
+                    for (Object arg : (List<?>) args[1]) {
+                        ArtifactRequest request = (ArtifactRequest) arg;
+                        Artifact artifact = request.getArtifact();
+                        ArtifactResult result = new ArtifactResult(request);
+                        if (failMissing && "missing".equals(artifact.getArtifactId())) {
+                            result.addException(new IllegalStateException("not found"));
+                            failed = true;
+                        } else {
+                            result.setArtifact(artifact.setFile(new File("repository",
+                                    artifact.getArtifactId() + "-" + artifact.getVersion() + "." + artifact.getExtension())));
+                        }
+                        results.add(result);
+                    }
+                    if (failed) {
+                        throw new ArtifactResolutionException(results);
+                    }
+                    return results;
+                });
+    }
+}
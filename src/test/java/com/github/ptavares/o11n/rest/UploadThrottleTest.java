@@ -0,0 +1,96 @@
+package com.github.ptavares.o11n.rest;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of {@link UploadThrottle} slots and token bucket
+ *
+ * @author Patrick Tavares
+ */
+public class UploadThrottleTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void oneUploadPerHost() throws Exception {
+        final UploadThrottle throttle = new UploadThrottle(0, 0, 1);
+        final SystemStreamLog log = new SystemStreamLog();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            UploadThrottle.Slot first = throttle.acquire(log, "vro1");
+            Future<UploadThrottle.Slot> sameHost = executor.submit(() -> throttle.acquire(log, "vro1"));
+            // Another server is not blocked by the busy one
+            Future<UploadThrottle.Slot> otherHost = executor.submit(() -> throttle.acquire(log, "vro2"));
+            otherHost.get(5, TimeUnit.SECONDS).close();
+            try {
+                sameHost.get(200, TimeUnit.MILLISECONDS);
+                fail("Second upload on the same server should wait for the first one");
+            } catch (TimeoutException e) {
+                // expected
+            }
+            first.close();
+            sameHost.get(5, TimeUnit.SECONDS).close();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void interruptedAcquireReleasesNothing() throws Exception {
+        final UploadThrottle throttle = new UploadThrottle(0, 1, 1);
+        final SystemStreamLog log = new SystemStreamLog();
+        UploadThrottle.Slot first = throttle.acquire(log, "vro1");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<UploadThrottle.Slot> waiting = executor.submit(() -> throttle.acquire(log, "vro2"));
+            try {
+                waiting.get(200, TimeUnit.MILLISECONDS);
+                fail("Upload should wait for the global slot");
+            } catch (TimeoutException e) {
+                waiting.cancel(true);
+            }
+            first.close();
+            // The interrupted upload returned its server slot : both slots are free again
+            throttle.acquire(log, "vro2").close();
+            throttle.acquire(log, "vro1").close();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void tokenBucketRate() {
+        final AtomicLong now = new AtomicLong();
+        // 1 KB/s : the bucket holds one chunk of 8 KB
+        UploadThrottle throttle = new UploadThrottle(1, 0, 0, now::get);
+        assertEquals(0, throttle.reserve(8192));
+        assertEquals(SECOND, throttle.reserve(1024));
+        now.addAndGet(SECOND);
+        // One second refilled 1 KB, paying the debt
+        assertEquals(SECOND, throttle.reserve(1024));
+        now.addAndGet(2 * SECOND);
+        assertEquals(0, throttle.reserve(1024));
+        // A long idle time never refills above the capacity
+        now.addAndGet(3600 * SECOND);
+        assertEquals(0, throttle.reserve(8192));
+        assertEquals(SECOND / 2, throttle.reserve(512));
+    }
+
+    @Test
+    public void noBandwidthLimit() {
+        assertFalse(UploadThrottle.NONE == UploadThrottle.shared(1, 0, 0));
+        assertEquals(UploadThrottle.NONE, UploadThrottle.shared(0, 0, 0));
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.ptavares.o11n.spool;
+
+import com.github.ptavares.o11n.enums.FileBundle;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link DeploySpool} over a temp spool directory
+ *
+ * @author Patrick Tavares
+ */
+public class DeploySpoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DeploySpool spool;
+
+    private Path bundles;
+
+    @Before
+    public void setUp() {
+        Path directory = folder.getRoot().toPath().resolve("spool");
+        spool = new DeploySpool(new SystemStreamLog(), directory);
+        bundles = directory.resolve("bundles");
+    }
+
+    @Test
+    public void addCopiesPluginFile() throws IOException {
+        Path pluginFile = pluginFile("v1");
+        assertFalse(spool.add(entry("vro1", "digest-1"), pluginFile));
+        List<SpoolEntry> entries = spool.list();
+        assertEquals(1, entries.size());
+        SpoolEntry entry = entries.get(0);
+        assertEquals("vro1", entry.getServerHost());
+        assertTrue(entry.getSpoolTime() > 0);
+        assertArrayEquals(Files.readAllBytes(pluginFile), Files.readAllBytes(Paths.get(entry.getPluginFile())));
+    }
+
+    @Test
+    public void addSupersedesEntryOfSameServer() throws Exception {
+        spool.add(entry("vro1", "digest-1"), pluginFile("v1"));
+        spool.add(entry("vro2", "digest-1"), pluginFile("v1"));
+        // Same plugin file spooled again : nothing superseded
+        assertFalse(spool.add(entry("vro1", "digest-1"), pluginFile("v1")));
+        Thread.sleep(5);
+        assertTrue(spool.add(entry("vro1", "digest-2"), pluginFile("v2")));
+
+        List<SpoolEntry> entries = spool.list();
+        assertEquals(2, entries.size());
+        // Oldest first
+        assertEquals("vro2", entries.get(0).getServerHost());
+        assertEquals("digest-2", entries.get(1).getDigest());
+        assertEquals(2, bundleCount());
+    }
+
+    @Test
+    public void removeRefusesNewerEntry() throws Exception {
+        spool.add(entry("vro1", "digest-1"), pluginFile("v1"));
+        SpoolEntry flushed = spool.list().get(0);
+        Thread.sleep(5);
+        // Spooled again while flushing
+        spool.add(entry("vro1", "digest-2"), pluginFile("v2"));
+
+        assertFalse(spool.remove(flushed));
+        assertEquals("digest-2", spool.list().get(0).getDigest());
+        assertTrue(spool.remove(spool.list().get(0)));
+        assertTrue(spool.list().isEmpty());
+    }
+
+    @Test
+    public void updateRecordsFailures() throws Exception {
+        spool.add(entry("vro1", "digest-1"), pluginFile("v1"));
+        SpoolEntry entry = spool.list().get(0);
+        spool.update(entry.recordFailure("Connection refused"));
+        SpoolEntry updated = spool.list().get(0);
+        assertEquals(1, updated.getAttempts());
+        assertEquals("Connection refused", updated.getLastError());
+
+        // Failures of a superseded entry are not recorded on the newer one
+        Thread.sleep(5);
+        spool.add(entry("vro1", "digest-2"), pluginFile("v2"));
+        spool.update(updated.recordFailure("Connection refused"));
+        assertEquals(0, spool.list().get(0).getAttempts());
+    }
+
+    @Test
+    public void pruneBundles() throws Exception {
+        spool.add(entry("vro1", "digest-1"), pluginFile("v1"));
+        spool.add(entry("vro2", "digest-1"), pluginFile("v1"));
+        // One copy per digest
+        assertEquals(1, bundleCount());
+        Thread.sleep(5);
+        spool.add(entry("vro1", "digest-2"), pluginFile("v2"));
+        assertEquals(2, bundleCount());
+
+        // digest-1 is still referenced by vro2
+        spool.remove(spool.list().get(1));
+        assertEquals(1, bundleCount());
+        spool.remove(spool.list().get(0));
+        assertEquals(0, bundleCount());
+    }
+
+    private static SpoolEntry entry(String host, String digest) {
+        return new SpoolEntry().setServerHost(host)
+                .setServicePort(8281)
+                .setConfigPort(8283)
+                .setDigest(digest)
+                .setBundle(FileBundle.DAR)
+                .setRestartService(true);
+    }
+
+    private Path pluginFile(String content) throws IOException {
+        Path file = folder.getRoot().toPath().resolve("plugin-" + content + ".dar");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private int bundleCount() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(bundles)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        return files.size();
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.ptavares.o11n.state;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests of the deploy history saved by concurrent builds, merged by {@link PropertiesStore}
+ *
+ * @author Patrick Tavares
+ */
+public class DeployHistoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void saveAndLoad() {
+        Path directory = folder.getRoot().toPath();
+        DeployHistory history = new DeployHistory(new SystemStreamLog(), directory);
+        String target = DeployHistory.target("vro", 8281);
+        assertNull(history.get(target, DeployHistory.LAST_DIGEST));
+        history.put(target, DeployHistory.LAST_DIGEST, "digest-1");
+        history.save();
+
+        assertEquals("digest-1", new DeployHistory(new SystemStreamLog(), directory).get("vro:8281", DeployHistory.LAST_DIGEST));
+    }
+
+    @Test
+    public void saveKeepsChangesOfOtherBuilds() {
+        Path directory = folder.getRoot().toPath();
+        // Both builds loaded the history before the other one saved
+        DeployHistory first = new DeployHistory(new SystemStreamLog(), directory);
+        DeployHistory second = new DeployHistory(new SystemStreamLog(), directory);
+        first.put("vro1:8281", DeployHistory.LAST_DIGEST, "digest-1");
+        first.put("vro:8281", DeployHistory.LAST_VERSION, "1.0.0");
+        second.put("vro2:8281", DeployHistory.LAST_DIGEST, "digest-2");
+        second.put("vro:8281", DeployHistory.LAST_VERSION, "1.0.1");
+        first.save();
+        second.save();
+
+        // The second build sees the values of the first one after its save, and wins on the key both changed
+        assertEquals("digest-1", second.get("vro1:8281", DeployHistory.LAST_DIGEST));
+        DeployHistory merged = new DeployHistory(new SystemStreamLog(), directory);
+        assertEquals("digest-1", merged.get("vro1:8281", DeployHistory.LAST_DIGEST));
+        assertEquals("digest-2", merged.get("vro2:8281", DeployHistory.LAST_DIGEST));
+        assertEquals("1.0.1", merged.get("vro:8281", DeployHistory.LAST_VERSION));
+        assertEquals(new HashSet<>(Arrays.asList("digest-1", "digest-2")), merged.values(DeployHistory.LAST_DIGEST));
+    }
+
+    @Test
+    public void saveOnlyWritesChanges() {
+        Path directory = folder.getRoot().toPath();
+        DeployHistory first = new DeployHistory(new SystemStreamLog(), directory);
+        first.put("vro:8281", DeployHistory.LAST_DIGEST, "digest-1");
+        first.save();
+        DeployHistory second = new DeployHistory(new SystemStreamLog(), directory);
+        first.put("vro:8281", DeployHistory.LAST_DIGEST, "digest-2");
+        first.save();
+        // Values loaded but not changed by a build are not written back
+        second.put("vro:8281", DeployHistory.UPLOAD_RATE, "1000");
+        second.save();
+
+        assertEquals("digest-2", new DeployHistory(new SystemStreamLog(), directory).get("vro:8281", DeployHistory.LAST_DIGEST));
+    }
+
+    @Test
+    public void concurrentUpdatesAreMerged() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve(DeployHistory.FILE_NAME);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Properties>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                final String key = "vro" + i + ":8281." + DeployHistory.LAST_DIGEST;
+                futures.add(executor.submit(() -> PropertiesStore.update(file, null, Collections.singletonMap(key, "digest"))));
+            }
+            for (Future<Properties> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(32, PropertiesStore.load(file).size());
+    }
+}